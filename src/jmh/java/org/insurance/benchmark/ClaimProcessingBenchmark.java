@@ -0,0 +1,90 @@
+package org.insurance.benchmark;
+
+import org.insurance.Main;
+import org.insurance.claims.ExtractedFields.ClaimRouter;
+import org.insurance.claims.ExtractedFields.FieldExtractor;
+import org.insurance.claims.extractor.PDFExtractor;
+import org.insurance.claims.model.ClaimResult;
+import org.insurance.claims.model.ExtractedFields;
+import org.insurance.claims.validator.ClaimValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for each processing stage on the bundled sample PDFs.
+ * Run with: mvn -Pbench compile exec:exec (allocation rates come from -prof gc)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ClaimProcessingBenchmark {
+
+    @Param({
+            "resources/Automobile_Loss_Notice.pdf",
+            "resources/ACORD_Automobile_Loss_Notice_Sample.pdf"
+    })
+    public String pdfPath;
+
+    private final PDFExtractor pdfExtractor = new PDFExtractor();
+    private final FieldExtractor fieldExtractor = new FieldExtractor();
+    private final ClaimValidator validator = new ClaimValidator();
+    private final ClaimRouter router = new ClaimRouter();
+
+    private String pdfText;
+    private ExtractedFields fields;
+    private List<String> missingFields;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pdfText = pdfExtractor.extractText(pdfPath);
+        fields = fieldExtractor.extractFields(pdfText);
+        missingFields = validator.validateMandatoryFields(fields);
+    }
+
+    @Benchmark
+    public String textExtraction() throws IOException {
+        return pdfExtractor.extractText(pdfPath);
+    }
+
+    @Benchmark
+    public ExtractedFields fieldExtraction() {
+        return fieldExtractor.extractFields(pdfText);
+    }
+
+    @Benchmark
+    public List<String> mandatoryFieldValidation() {
+        return validator.validateMandatoryFields(fields);
+    }
+
+    @Benchmark
+    public List<String> consistencyValidation() {
+        return validator.validateConsistency(fields);
+    }
+
+    @Benchmark
+    public ClaimRouter.RoutingDecision routing() {
+        return router.determineRoute(fields, missingFields);
+    }
+
+    @Benchmark
+    public ClaimResult processClaim() throws IOException {
+        return Main.processClaim(pdfPath, false);
+    }
+}
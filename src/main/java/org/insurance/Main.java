@@ -2,37 +2,156 @@ package org.insurance;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
 import org.insurance.claims.ExtractedFields.ClaimRouter;
+import org.insurance.claims.ExtractedFields.Deadline;
+import org.insurance.claims.ExtractedFields.DeadlineExceededException;
 import org.insurance.claims.ExtractedFields.FieldExtractor;
+import org.insurance.claims.ExtractedFields.FormTemplate;
+import org.insurance.claims.ExtractedFields.KeywordMatcher;
+import org.insurance.claims.batch.BatchJournal;
+import org.insurance.claims.batch.BatchProcessor;
+import org.insurance.claims.batch.ClaimPipeline;
+import org.insurance.claims.batch.InboxLeases;
+import org.insurance.claims.batch.InboxWatcher;
+import org.insurance.claims.batch.ReRouteJob;
+import org.insurance.claims.batch.WorkerThreads;
+import org.insurance.claims.cache.ResultCache;
+import org.insurance.claims.extractor.AcroFormExtractor;
 import org.insurance.claims.extractor.PDFExtractor;
+import org.insurance.claims.metrics.ClaimDocumentEvent;
+import org.insurance.claims.metrics.ClaimMetrics;
 import org.insurance.claims.model.ClaimResult;
 import org.insurance.claims.model.ExtractedFields;
+import org.insurance.claims.queue.RouteQueue;
+import org.insurance.claims.queue.RouteQueues;
+import org.insurance.claims.server.ClaimClient;
+import org.insurance.claims.server.ClaimDaemon;
+import org.insurance.claims.server.ClaimHttpServer;
+import org.insurance.claims.store.ResultStore;
 import org.insurance.claims.validator.ClaimValidator;
+import org.insurance.claims.validator.DuplicateIndex;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
 
+    private static final String DEFAULT_PDF = "resources/Automobile_Loss_Notice.pdf";
+
+    // All processing components are stateless and shared across threads
+    private static final PDFExtractor PDF_EXTRACTOR = new PDFExtractor();
+    private static final AcroFormExtractor ACRO_FORM_EXTRACTOR = new AcroFormExtractor();
+    private static final FieldExtractor FIELD_EXTRACTOR = new FieldExtractor();
+    private static final ClaimValidator VALIDATOR = new ClaimValidator();
+    private static final ClaimRouter ROUTER = new ClaimRouter();
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final ObjectMapper STORE_MAPPER = new ObjectMapper();
+    private static final ClaimMetrics METRICS = new ClaimMetrics();
+
+    // 48 bits of content digest in each claim id; only claims with the same file name can collide
+    private static final int CLAIM_ID_DIGEST_BYTES = 6;
+
+    private static volatile int pageBudget = PDFExtractor.ALL_PAGES;
+    private static volatile boolean earlyExit = false;
+    private static volatile long claimDeadlineMillis = 60_000;
+    private static volatile ResultCache resultCache;
+    private static volatile Path metricsFile;
+    private static volatile RouteQueues routeQueues;
+    private static volatile DuplicateIndex duplicateIndex;
+    // Flight Recorder event of the document being processed on this thread, while recording
+    private static final ThreadLocal<ClaimDocumentEvent> CURRENT_EVENT = new ThreadLocal<>();
+
+    static {
+        // Cached results follow the routing rules, so a reloaded table starts a new cache generation
+        ROUTER.addReloadListener(table -> {
+            ResultCache cache = resultCache;
+            if (cache != null) {
+                cache.setVersion(resultVersion());
+            }
+        });
+    }
+
     public static void main(String[] args) {
+        // Modes whose standard output is machine-readable skip the banner
+        if (args.length > 0 && args[0].equals("--client")) {
+            runClient(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--lookup")) {
+            runLookup(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--queue")) {
+            runQueue(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         System.out.println("========================================");
         System.out.println("Insurance Claims Processing Agent");
         System.out.println("========================================\n");
 
+        try {
+            args = parseProcessingOptions(args);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error in processing options: " + e.getMessage());
+            System.exit(1);
+        }
 
-
-        String pdfPath ="resources/Automobile_Loss_Notice.pdf";
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--watch")) {
+            runWatch(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            runDaemon(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--reroute")) {
+            runReRoute(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            runHttpServer(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        String pdfPath = args.length > 0 ? args[0] : DEFAULT_PDF;
 
         try {
             // Process the claim
             ClaimResult result = processClaim(pdfPath);
+            String claimId = claimIdFor(Paths.get(pdfPath), result);
+            enqueue(claimId, checkDuplicate(claimId, result));
+            closeDuplicateIndex();
 
             // Convert to JSON
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
-            String jsonOutput = mapper.writeValueAsString(result);
+            long start = System.nanoTime();
+            String jsonOutput = MAPPER.writeValueAsString(result);
+            start = METRICS.record(ClaimMetrics.Stage.SERIALIZATION, start);
 
             // Print to console
             System.out.println("\n========================================");
@@ -43,18 +162,442 @@ public class Main {
             // Save to file
             String outputFileName = "claim_result_" + System.currentTimeMillis() + ".json";
             saveToFile(jsonOutput, outputFileName);
+            METRICS.record(ClaimMetrics.Stage.WRITE, start);
+            writeMetrics();
 
             System.out.println("\n========================================");
             System.out.println("Result saved to: " + outputFileName);
+            if (routeQueues != null) {
+                System.out.println("Queued for: " + result.getRecommendedRoute() + " (priority " + result.getPriority() + ")");
+            }
             System.out.println("========================================");
 
         } catch (Exception e) {
+            METRICS.countFailure(e);
+            closeDuplicateIndex();
+            writeMetrics();
             System.err.println("Error processing claim: " + e.getMessage());
             e.printStackTrace();
             System.exit(1);
         }
     }
 
+    /**
+     * Applies the options shared by every mode and removes them from the arguments.
+     * Options: --max-pages N, --early-exit, --cache DIR, --cache-size MB, --metrics FILE,
+     * --deadline MS (total time per claim, 0 for none), --rules FILE (decision table, reloaded on change),
+     * --queues DIR (durable work queue per route), --duplicates DIR (index of earlier claims for duplicate detection)
+     * @param args Command line arguments
+     * @return Remaining arguments
+     * @throws IOException If the cache directory, the decision table, the work queues or the duplicate index
+     *                     cannot be opened
+     */
+    private static String[] parseProcessingOptions(String[] args) throws IOException {
+        List<String> remaining = new ArrayList<>();
+        int maxPages = PDFExtractor.ALL_PAGES;
+        boolean stopWhenComplete = false;
+        String cacheDir = null;
+        long cacheSizeMb = 512;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--max-pages":
+                    maxPages = Integer.parseInt(args[++i]);
+                    break;
+                case "--early-exit":
+                    stopWhenComplete = true;
+                    break;
+                case "--cache":
+                    cacheDir = args[++i];
+                    break;
+                case "--cache-size":
+                    cacheSizeMb = Long.parseLong(args[++i]);
+                    break;
+                case "--metrics":
+                    metricsFile = Paths.get(args[++i]);
+                    break;
+                case "--deadline":
+                    claimDeadlineMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--rules":
+                    ROUTER.watch(Paths.get(args[++i]));
+                    break;
+                case "--queues":
+                    routeQueues = new RouteQueues(Paths.get(args[++i]));
+                    break;
+                case "--duplicates":
+                    duplicateIndex = new DuplicateIndex(Paths.get(args[++i]));
+                    break;
+                default:
+                    remaining.add(args[i]);
+            }
+        }
+        configurePageStreaming(maxPages, stopWhenComplete);
+        if (cacheDir != null) {
+            configureCache(new ResultCache(Paths.get(cacheDir), cacheSizeMb * 1024 * 1024, resultVersion()));
+        }
+        return remaining.toArray(new String[0]);
+    }
+
+    /**
+     * Processes a directory or list of PDF files in parallel.
+     * Usage: --batch [--workers N] [--queue N] [--threads platform|virtual] [--pipeline [--io-threads N]]
+     *        [--out STORE_DIR] [--journal FILE] &lt;dir|file|@list&gt;...
+     * Results are appended to a segmented result store instead of one JSON file per claim.
+     * With a journal, inputs finished by an earlier run that was interrupted are skipped.
+     * @param args Batch arguments
+     */
+    private static void runBatch(String[] args) {
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = -1;
+        int ioThreads = 0;
+        boolean pipeline = false;
+        boolean virtualThreads = false;
+        String outputDir = "results";
+        String journalFile = null;
+        List<String> inputArgs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--workers":
+                        workers = Integer.parseInt(args[++i]);
+                        break;
+                    case "--queue":
+                        queueCapacity = Integer.parseInt(args[++i]);
+                        break;
+                    case "--threads":
+                        virtualThreads = args[++i].equalsIgnoreCase("virtual");
+                        break;
+                    case "--pipeline":
+                        pipeline = true;
+                        break;
+                    case "--io-threads":
+                        ioThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--out":
+                        outputDir = args[++i];
+                        break;
+                    case "--journal":
+                        journalFile = args[++i];
+                        break;
+                    default:
+                        inputArgs.add(args[i]);
+                }
+            }
+            if (inputArgs.isEmpty()) {
+                throw new IllegalArgumentException("No input directory or files given");
+            }
+            if (queueCapacity < 0) {
+                queueCapacity = workers * 4;
+            }
+
+            List<Path> inputs = BatchProcessor.collectInputs(inputArgs);
+            BatchJournal journal = journalFile != null ? new BatchJournal(Paths.get(journalFile)) : null;
+            if (journal != null) {
+                inputs = skipFinished(inputs, journal);
+                // A run stopped with Ctrl-C still keeps its last group of checkpoints
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        journal.flush();
+                    } catch (IOException e) {
+                        // Those documents are processed again next time
+                    }
+                }));
+            }
+            System.out.println("Batch: " + inputs.size() + " documents, " + workers + " workers"
+                    + (virtualThreads ? " (virtual threads)" : ""));
+
+            BatchProcessor.BatchReport report;
+            try (ResultStore store = new ResultStore(Paths.get(outputDir));
+                 BatchJournal checkpoints = journal) {
+                BatchProcessor.ResultListener writer = storeWriter(store, checkpoints);
+
+                if (pipeline) {
+                    // Disk reads and result writes on the I/O pool, PDFBox and regex work on the CPU pool
+                    ClaimPipeline claimPipeline = new ClaimPipeline(
+                            ioThreads > 0 ? ioThreads : Math.max(2, workers / 2), workers, queueCapacity, virtualThreads);
+                    report = claimPipeline.run(inputs,
+                            Files::readAllBytes,
+                            (pdf, content) -> processClaim(content, false),
+                            writer);
+                } else {
+                    BatchProcessor processor = new BatchProcessor(workers, queueCapacity, virtualThreads);
+                    report = processor.run(inputs, pdf -> processClaim(pdf.toString(), false), writer);
+                }
+            }
+            closeDuplicateIndex();
+
+            System.out.println("\n========================================");
+            System.out.println(report);
+            if (resultCache != null) {
+                System.out.println(resultCache);
+            }
+            System.out.println("Results saved to: " + outputDir + " (look up with --lookup " + outputDir + " <claim id>)");
+            System.out.println("========================================");
+            System.out.print(METRICS.summary());
+            writeMetrics();
+
+            if (report.getFailed() > 0) {
+                System.exit(2);
+            }
+        } catch (Exception e) {
+            closeDuplicateIndex();
+            System.err.println("Error running batch: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Drops the inputs a batch journal records as finished
+     * @param inputs Batch inputs
+     * @param journal Journal of earlier runs
+     * @return Inputs still to process
+     */
+    private static List<Path> skipFinished(List<Path> inputs, BatchJournal journal) {
+        List<Path> remaining = new ArrayList<>();
+        for (Path input : inputs) {
+            try {
+                if (journal.isDone(BatchJournal.key(input))) {
+                    continue;
+                }
+            } catch (IOException e) {
+                // Unreadable inputs are left to the run, which reports them as failed
+            }
+            remaining.add(input);
+        }
+        if (remaining.size() < inputs.size()) {
+            System.out.println("Journal: skipping " + (inputs.size() - remaining.size())
+                    + " documents finished by an earlier run");
+        }
+        return remaining;
+    }
+
+    /**
+     * Builds the result callback of batch and watch runs
+     * @param store Store each result is appended to
+     * @param journal Journal finished inputs are recorded in once their result is durable, or null
+     * @return Listener that stores and enqueues results and counts failures
+     */
+    private static BatchProcessor.ResultListener storeWriter(ResultStore store, BatchJournal journal) {
+        return new BatchProcessor.ResultListener() {
+            @Override
+            public void onSuccess(Path pdf, ClaimResult result) throws IOException {
+                String claimId = claimIdFor(pdf, result);
+                checkDuplicate(claimId, result);
+                long start = System.nanoTime();
+                byte[] payload = STORE_MAPPER.writeValueAsBytes(result);
+                start = METRICS.record(ClaimMetrics.Stage.SERIALIZATION, start);
+                store.append(claimId, payload);
+                enqueue(claimId, payload, result);
+                if (journal != null) {
+                    journal.markDone(BatchJournal.key(pdf));
+                }
+                METRICS.record(ClaimMetrics.Stage.WRITE, start);
+            }
+
+            @Override
+            public void onFailure(Path pdf, Exception error) {
+                METRICS.countFailure(error);
+                System.err.println("Error processing claim " + pdf + ": " + error.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Watches an inbox directory and processes PDFs as soon as they are fully written.
+     * Usage: --watch [--workers N] [--settle MS] [--max-batch N] [--processed DIR] [--failed DIR]
+     *        [--out STORE_DIR] [--warmup PDF]... [--lease [--worker-id ID] [--lease-ms MS]] &lt;inbox dir&gt;
+     * Arrivals are gathered into batches and processed in parallel; each file is then moved to
+     * the processed directory (default inbox/processed) or the failed directory (default inbox/failed).
+     * With --lease several processes can watch the same inbox; each claims files before processing them.
+     * @param args Watch arguments
+     */
+    private static void runWatch(String[] args) {
+        int workers = Runtime.getRuntime().availableProcessors();
+        long settleMillis = InboxWatcher.DEFAULT_SETTLE_MILLIS;
+        int maxBatch = -1;
+        boolean lease = false;
+        String workerId = null;
+        long leaseMillis = InboxLeases.DEFAULT_LEASE_MILLIS;
+        String processedDir = null;
+        String failedDir = null;
+        String outputDir = "results";
+        String inboxDir = null;
+        List<String> warmupFiles = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--settle":
+                    settleMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--max-batch":
+                    maxBatch = Integer.parseInt(args[++i]);
+                    break;
+                case "--processed":
+                    processedDir = args[++i];
+                    break;
+                case "--failed":
+                    failedDir = args[++i];
+                    break;
+                case "--out":
+                    outputDir = args[++i];
+                    break;
+                case "--warmup":
+                    warmupFiles.add(args[++i]);
+                    break;
+                case "--lease":
+                    lease = true;
+                    break;
+                case "--worker-id":
+                    workerId = args[++i];
+                    break;
+                case "--lease-ms":
+                    leaseMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    inboxDir = args[i];
+            }
+        }
+        if (inboxDir == null) {
+            System.err.println("Usage: --watch [options] <inbox dir>");
+            System.exit(1);
+        }
+        if (warmupFiles.isEmpty() && new File(DEFAULT_PDF).exists()) {
+            warmupFiles.add(DEFAULT_PDF);
+        }
+        if (maxBatch < 0) {
+            // A worker sharing the inbox claims only about what it can process at once, leaving the rest to the others
+            maxBatch = lease ? workers * 2 : InboxWatcher.DEFAULT_MAX_BATCH;
+        }
+
+        Path inbox = Paths.get(inboxDir);
+        // Counted down once the store and the duplicate index are closed
+        CountDownLatch closed = new CountDownLatch(1);
+        boolean failed = false;
+        try (ResultStore store = new ResultStore(Paths.get(outputDir))) {
+            System.out.println("Warming up...");
+            warmUp(warmupFiles);
+
+            InboxLeases leases = lease
+                    ? new InboxLeases(inbox, workerId != null ? workerId : InboxLeases.defaultWorkerId(), leaseMillis)
+                    : null;
+            InboxWatcher watcher = new InboxWatcher(inbox,
+                    processedDir != null ? Paths.get(processedDir) : inbox.resolve("processed"),
+                    failedDir != null ? Paths.get(failedDir) : inbox.resolve("failed"),
+                    new BatchProcessor(workers, workers * 4, false), settleMillis, maxBatch, leases);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    // Lets the running batch finish and move its files first; run() then returns
+                    watcher.close();
+                    if (leases != null) {
+                        leases.close();
+                    }
+                } catch (IOException e) {
+                    // Exiting anyway
+                }
+                try {
+                    // The main thread closes the store; the JVM halts once this hook returns
+                    closed.await(60, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                System.out.println("Inbox watch stopped: " + watcher.getSucceeded() + " processed, "
+                        + watcher.getFailed() + " failed");
+                writeMetrics();
+            }));
+            System.out.println("Watching " + inbox + " with " + workers + " workers"
+                    + (leases != null ? " as " + leases.getWorkerId() : "") + "; results in " + outputDir);
+            watcher.run(pdf -> processClaim(pdf.toString(), false), storeWriter(store, null));
+        } catch (Exception e) {
+            System.err.println("Error watching inbox: " + e.getMessage());
+            e.printStackTrace();
+            failed = true;
+        } finally {
+            closeDuplicateIndex();
+            closed.countDown();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Re-routes stored batch results under the current routing rules without reading any PDF.
+     * Usage: --reroute [--workers N] [--out STORE_DIR] &lt;store dir&gt;
+     * Only claims whose route changed are written, to a separate store, together with
+     * a tab-separated diff (claim id, old route, new route) in reroute-diff.tsv.
+     * @param args Re-route arguments
+     */
+    private static void runReRoute(String[] args) {
+        int workers = Runtime.getRuntime().availableProcessors();
+        String outputDir = "rerouted";
+        String inputDir = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--workers":
+                        workers = Integer.parseInt(args[++i]);
+                        break;
+                    case "--out":
+                        outputDir = args[++i];
+                        break;
+                    default:
+                        inputDir = args[i];
+                }
+            }
+            if (inputDir == null) {
+                throw new IllegalArgumentException("No result store given");
+            }
+            if (Paths.get(inputDir).toAbsolutePath().normalize().equals(Paths.get(outputDir).toAbsolutePath().normalize())) {
+                throw new IllegalArgumentException("Output store must differ from the input store");
+            }
+
+            System.out.println("Re-route: " + inputDir + " with rules " + ROUTER.getRulesVersion()
+                    + ", " + workers + " workers");
+
+            ReRouteJob.Report report;
+            Path diffFile = Paths.get(outputDir, "reroute-diff.tsv");
+            try (ResultStore input = new ResultStore(Paths.get(inputDir));
+                 ResultStore output = new ResultStore(Paths.get(outputDir));
+                 BufferedWriter diff = Files.newBufferedWriter(diffFile, StandardCharsets.UTF_8)) {
+                diff.write("claimId\tpreviousRoute\trecommendedRoute\n");
+                ReRouteJob job = new ReRouteJob(VALIDATOR, ROUTER, workers, workers * 4);
+                report = job.run(input, new ReRouteJob.ChangeListener() {
+                    @Override
+                    public void onChange(String claimId, ClaimResult before, ClaimResult after) throws IOException {
+                        output.append(claimId, STORE_MAPPER.writeValueAsBytes(after));
+                        synchronized (diff) {
+                            diff.write(claimId + "\t" + before.getRecommendedRoute() + "\t"
+                                    + after.getRecommendedRoute() + "\n");
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String claimId, Exception error) {
+                        System.err.println("Error re-routing claim " + claimId + ": " + error.getMessage());
+                    }
+                });
+            }
+
+            System.out.println("\n========================================");
+            System.out.println(report);
+            System.out.println("Changed results saved to: " + outputDir + ", diff in " + diffFile);
+            System.out.println("========================================");
+
+            if (report.getFailed() > 0) {
+                System.exit(2);
+            }
+        } catch (Exception e) {
+            System.err.println("Error re-routing results: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
     /**
      * Processes a claim from PDF file
      * @param pdfPath Path to the PDF file
@@ -62,43 +605,332 @@ public class Main {
      * @throws IOException If file cannot be read
      */
     public static ClaimResult processClaim(String pdfPath) throws IOException {
-        System.out.println("Step 1: Reading PDF file...");
-        PDFExtractor pdfExtractor = new PDFExtractor();
-        String pdfText = pdfExtractor.extractText(pdfPath);
-        System.out.println(" PDF text extracted successfully");
+        return processClaim(pdfPath, true);
+    }
+
+    /**
+     * Processes a claim from PDF file
+     * @param pdfPath Path to the PDF file
+     * @param verbose true to print progress for each step
+     * @return ClaimResult with all extracted data and routing decision
+     * @throws IOException If file cannot be read
+     */
+    public static ClaimResult processClaim(String pdfPath, boolean verbose) throws IOException {
+        log(verbose, "Step 1: Reading PDF file...");
+        if (resultCache != null) {
+            File pdfFile = new File(pdfPath);
+            if (!pdfFile.exists()) {
+                throw new IOException("PDF file not found: " + pdfPath);
+            }
+            return processCached(Files.readAllBytes(pdfFile.toPath()), verbose);
+        }
+
+        return loadAndProcess(() -> PDF_EXTRACTOR.load(pdfPath), new File(pdfPath).length(), verbose);
+    }
+
+    /**
+     * Processes a claim from PDF content that has already been read
+     * @param pdfContent Raw PDF bytes
+     * @param verbose true to print progress for each step
+     * @return ClaimResult with all extracted data and routing decision
+     * @throws IOException If the content is not a readable PDF
+     */
+    public static ClaimResult processClaim(byte[] pdfContent, boolean verbose) throws IOException {
+        log(verbose, "Step 1: Parsing PDF content...");
+        if (resultCache != null) {
+            return processCached(pdfContent, verbose);
+        }
+
+        ClaimResult result = loadAndProcess(() -> PDF_EXTRACTOR.load(pdfContent), pdfContent.length, verbose);
+        result.setContentSha256(sha256().digest(pdfContent));
+        return result;
+    }
+
+    /**
+     * Processes a claim straight from a stream, e.g. an HTTP upload.
+     * The result cache is not consulted because its key needs the whole document.
+     * @param pdfStream PDF content; closed by the caller
+     * @param verbose true to print progress for each step
+     * @return ClaimResult with all extracted data and routing decision
+     * @throws IOException If the content is not a readable PDF
+     */
+    public static ClaimResult processClaim(InputStream pdfStream, boolean verbose) throws IOException {
+        log(verbose, "Step 1: Parsing PDF stream...");
+        return loadAndProcess(() -> PDF_EXTRACTOR.load(pdfStream), -1, verbose);
+    }
+
+    /**
+     * Enables the persistent result cache; pass null to disable it
+     * @param cache Cache keyed by document digest and extractor/rule-set version
+     */
+    public static void configureCache(ResultCache cache) {
+        Main.resultCache = cache;
+    }
+
+    /**
+     * Version of the extraction and routing logic, part of every cache key
+     * @return Version string
+     */
+    public static String resultVersion() {
+        // A result read from part of a document must not answer a run that reads all of it
+        return "extractor-" + FieldExtractor.VERSION + "/rules-" + ROUTER.getRulesVersion()
+                + "/keywords-" + KeywordMatcher.getDefault().getVersion()
+                + "/pages-" + (pageBudget == PDFExtractor.ALL_PAGES ? "all" : Integer.toString(pageBudget))
+                + (earlyExit ? "-early-exit" : "");
+    }
+
+    private static ClaimResult processCached(byte[] pdfContent, boolean verbose) throws IOException {
+        ResultCache cache = resultCache;
+        // One digest serves as the cache key and, on the result, as the claim id
+        byte[] sha256 = sha256().digest(pdfContent);
+        String key = cache.keyFor(sha256);
+        ClaimResult cached = cache.get(key);
+        if (cached != null) {
+            log(verbose, " Identical document already processed, using cached result");
+            countOutcome(cached);
+            cached.setContentSha256(sha256);
+            return cached;
+        }
+
+        ClaimResult result = loadAndProcess(() -> PDF_EXTRACTOR.load(pdfContent), pdfContent.length, verbose);
+        // A timeout depends on load, not on the document; let the next attempt try again
+        if (result.getReasonCode() == null) {
+            cache.put(key, result);
+        }
+        result.setContentSha256(sha256);
+        return result;
+    }
+
+    /**
+     * Limits text extraction for long documents.
+     * With early exit, pages are stripped one at a time and extraction stops as soon as
+     * every mandatory field is filled; the page budget caps the pages stripped either way.
+     * @param pageBudget Maximum pages to strip, or PDFExtractor.ALL_PAGES
+     * @param earlyExit true to stop once all mandatory fields are present
+     */
+    public static void configurePageStreaming(int pageBudget, boolean earlyExit) {
+        Main.pageBudget = pageBudget;
+        Main.earlyExit = earlyExit;
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.setVersion(resultVersion());
+        }
+    }
+
+    /**
+     * Sets the total time a claim may take; claims that run out are routed to Manual Review
+     * with reason code DEADLINE_EXCEEDED. The check happens between stages and inside field
+     * patterns, so a single PDFBox call can still overrun it.
+     * @param millis Budget per claim, or 0 for none
+     */
+    public static void configureDeadline(long millis) {
+        Main.claimDeadlineMillis = millis;
+    }
+
+    /**
+     * Opens a document for loadAndProcess
+     */
+    private interface DocumentSource {
+        PDDocument load() throws IOException;
+    }
+
+    /**
+     * Loads and processes one document, emitting a Flight Recorder event for it when recording is on
+     * @param source Opens the document
+     * @param fileSize Size of the PDF in bytes, or -1 if unknown
+     * @param verbose true to print progress for each step
+     * @return ClaimResult with all extracted data and routing decision
+     * @throws IOException If the document cannot be read
+     */
+    private static ClaimResult loadAndProcess(DocumentSource source, long fileSize, boolean verbose) throws IOException {
+        ClaimDocumentEvent event = new ClaimDocumentEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            event.fileSize = fileSize;
+            CURRENT_EVENT.set(event);
+        }
+        try {
+            Deadline deadline = Deadline.after(claimDeadlineMillis);
+            long start = System.nanoTime();
+            try (PDDocument document = source.load()) {
+                recordStage(ClaimMetrics.Stage.PDF_LOAD, start);
+                ClaimResult result;
+                try {
+                    deadline.check("PDF load");
+                    result = processDocument(document, deadline, verbose);
+                } catch (DeadlineExceededException e) {
+                    result = timedOut(e, verbose);
+                }
+                if (event.isEnabled()) {
+                    event.pageCount = document.getNumberOfPages();
+                    event.route = result.getRecommendedRoute();
+                    event.commit();
+                }
+                return result;
+            }
+        } finally {
+            CURRENT_EVENT.remove();
+        }
+    }
+
+    /**
+     * Records a stage in the shared metrics and in the current document's event
+     * @return The current System.nanoTime()
+     */
+    private static long recordStage(ClaimMetrics.Stage stage, long startNanos) {
+        long now = METRICS.record(stage, startNanos);
+        ClaimDocumentEvent event = CURRENT_EVENT.get();
+        if (event != null) {
+            event.addStage(stage, now - startNanos);
+        }
+        return now;
+    }
+
+    private static void recordStageDuration(ClaimMetrics.Stage stage, long nanos) {
+        METRICS.recordDuration(stage, nanos);
+        ClaimDocumentEvent event = CURRENT_EVENT.get();
+        if (event != null) {
+            event.addStage(stage, nanos);
+        }
+    }
+
+    /**
+     * Routes a claim that ran out of time; nothing extracted so far is trusted
+     */
+    private static ClaimResult timedOut(DeadlineExceededException e, boolean verbose) {
+        log(verbose, " " + e.getMessage() + ", routing for manual review");
+        METRICS.countFailure(e);
+        ExtractedFields fields = new ExtractedFields();
+        fields.setTimeout(ClaimRouter.REASON_DEADLINE_EXCEEDED,
+                e.getMessage().substring(0, 1).toLowerCase() + e.getMessage().substring(1)
+                        + " (limit " + claimDeadlineMillis + " ms)");
+        return processFields(fields, verbose);
+    }
+
+    private static ClaimResult processDocument(PDDocument document, Deadline deadline, boolean verbose)
+            throws IOException {
+        // Fillable forms: read the field values directly and skip text layout when they are complete
+        long start = System.nanoTime();
+        AcroFormExtractor.FormValues form = ACRO_FORM_EXTRACTOR.read(document);
+        if (form != null) {
+            countTemplate(form.getTemplateName() + " (AcroForm)");
+            ExtractedFields formFields = new ExtractedFields();
+            form.applyTo(formFields);
+            formFields.getOtherFields().setClaimType(FIELD_EXTRACTOR.determineClaimType(form.getAllText()));
+            recordStage(ClaimMetrics.Stage.FIELD_EXTRACTION, start);
+
+            if (VALIDATOR.validateMandatoryFields(formFields).isEmpty()) {
+                log(verbose, " Form fields read directly (" + form.getTemplateName() + ")");
+                return processFields(formFields, verbose);
+            }
+            log(verbose, " Form fields incomplete (" + form.getTemplateName() + "), falling back to text extraction");
+        }
+
+        ExtractedFields fields = extractFromText(document, deadline, verbose);
+        if (form != null) {
+            form.applyTo(fields);
+        }
+        return processFields(fields, verbose);
+    }
+
+    private static ExtractedFields extractFromText(PDDocument document, Deadline deadline, boolean verbose)
+            throws IOException {
+        ExtractedFields fields;
+        FormTemplate template;
+        String pdfText;
+        if (!earlyExit && pageBudget == PDFExtractor.ALL_PAGES) {
+            long start = System.nanoTime();
+            pdfText = PDF_EXTRACTOR.extractText(document);
+            start = recordStage(ClaimMetrics.Stage.TEXT_STRIP, start);
+            log(verbose, " PDF text extracted successfully");
+            deadline.check("text extraction");
 
-        System.out.println("\nStep 2: Extracting fields from text...");
-        FieldExtractor fieldExtractor = new FieldExtractor();
-        ExtractedFields fields = fieldExtractor.extractFields(pdfText);
-        System.out.println(" Fields extracted successfully");
+            log(verbose, "\nStep 2: Extracting fields from text...");
+            template = FIELD_EXTRACTOR.selectTemplate(pdfText);
+            fields = FIELD_EXTRACTOR.extractFields(pdfText, template, deadline);
+            recordStage(ClaimMetrics.Stage.FIELD_EXTRACTION, start);
+        } else {
+            log(verbose, "\nStep 2: Extracting fields page by page...");
+            FieldExtractor.PageByPage extraction = FIELD_EXTRACTOR.extractPages(deadline);
+            int[] pagesRead = new int[1];
+            // Extraction runs inside the page callbacks; strip time is the remainder
+            long[] extractionNanos = new long[1];
+            long start = System.nanoTime();
+            pdfText = PDF_EXTRACTOR.extractText(document, pageBudget, (page, textSoFar) -> {
+                pagesRead[0] = page;
+                if (deadline.isExpired()) {
+                    // Stop stripping; the check below turns this into a timeout
+                    return true;
+                }
+                if (!earlyExit) {
+                    return false;
+                }
+                long extractionStart = System.nanoTime();
+                // Only the new page is searched, and only for fields still missing
+                ExtractedFields soFar = extraction.update(textSoFar);
+                boolean complete = soFar != null && VALIDATOR.validateMandatoryFields(soFar).isEmpty();
+                extractionNanos[0] += System.nanoTime() - extractionStart;
+                return complete;
+            });
+            long stripEnd = System.nanoTime();
+            deadline.check("text extraction");
+            recordStageDuration(ClaimMetrics.Stage.TEXT_STRIP, stripEnd - start - extractionNanos[0]);
+            fields = extraction.finish(pdfText);
+            template = extraction.getTemplate();
+            recordStageDuration(ClaimMetrics.Stage.FIELD_EXTRACTION,
+                    extractionNanos[0] + System.nanoTime() - stripEnd);
+            log(verbose, " Read " + pagesRead[0] + " of " + document.getNumberOfPages() + " pages");
+        }
+        ClaimDocumentEvent event = CURRENT_EVENT.get();
+        if (event != null) {
+            event.textLength = pdfText.length();
+        }
+        countTemplate(template.getName());
+        log(verbose, " Fields extracted successfully (" + template.getName() + " layout)");
+        return fields;
+    }
 
-        System.out.println("\nStep 3: Validating mandatory fields...");
-        ClaimValidator validator = new ClaimValidator();
-        List<String> missingFields = validator.validateMandatoryFields(fields);
+    /**
+     * Counts the template a document was read with; the last one wins on the Flight Recorder event
+     */
+    private static void countTemplate(String template) {
+        METRICS.countTemplate(template);
+        ClaimDocumentEvent event = CURRENT_EVENT.get();
+        if (event != null) {
+            event.template = template;
+        }
+    }
+
+    private static ClaimResult processFields(ExtractedFields fields, boolean verbose) {
+        log(verbose, "\nStep 3: Validating mandatory fields...");
+        long start = System.nanoTime();
+        List<String> missingFields = VALIDATOR.validateMandatoryFields(fields);
 
         if (missingFields.isEmpty()) {
-            System.out.println(" All mandatory fields are present");
+            log(verbose, " All mandatory fields are present");
         } else {
-            System.out.println(" Missing fields detected: " + missingFields.size());
+            log(verbose, " Missing fields detected: " + missingFields.size());
             for (String field : missingFields) {
-                System.out.println("  - " + field);
+                log(verbose, "  - " + field);
             }
         }
 
         // Check consistency
-        List<String> inconsistencies = validator.validateConsistency(fields);
+        List<String> inconsistencies = VALIDATOR.validateConsistency(fields);
         if (!inconsistencies.isEmpty()) {
-            System.out.println(" Inconsistencies detected:");
+            log(verbose, " Inconsistencies detected:");
             for (String issue : inconsistencies) {
-                System.out.println("  - " + issue);
+                log(verbose, "  - " + issue);
             }
         }
 
-        System.out.println("\nStep 4: Determining routing...");
-        ClaimRouter router = new ClaimRouter();
-        ClaimRouter.RoutingDecision decision = router.determineRoute(fields, missingFields);
-        System.out.println(" Route determined: " + decision.getRoute());
-        System.out.println("  Reasoning: " + decision.getReasoning());
+        start = recordStage(ClaimMetrics.Stage.VALIDATION, start);
+
+        log(verbose, "\nStep 4: Determining routing...");
+        ClaimRouter.RoutingDecision decision = ROUTER.determineRoute(fields, missingFields);
+        recordStage(ClaimMetrics.Stage.ROUTING, start);
+        log(verbose, " Route determined: " + decision.getRoute());
+        log(verbose, "  Reasoning: " + decision.getReasoning());
 
         // Build result
         ClaimResult result = new ClaimResult();
@@ -106,10 +938,441 @@ public class Main {
         result.setMissingFields(missingFields);
         result.setRecommendedRoute(decision.getRoute());
         result.setReasoning(decision.getReasoning());
+        result.setPriority(decision.getPriority());
+        result.setReasonCode(decision.getReasonCode());
+        result.setInconsistencies(inconsistencies);
 
+        countOutcome(result);
         return result;
     }
 
+    /**
+     * Processes a PDF named by path, checks it for duplicates and queues it; used by the daemon
+     * @param pdf PDF file
+     * @return ClaimResult with all extracted data and routing decision
+     * @throws IOException If the file cannot be read or the result cannot be queued
+     */
+    private static ClaimResult processAndEnqueue(Path pdf) throws IOException {
+        ClaimResult result = processClaim(pdf.toString(), false);
+        String claimId = claimIdFor(pdf, result);
+        return enqueue(claimId, checkDuplicate(claimId, result));
+    }
+
+    /**
+     * Looks a claim up in the duplicate index when --duplicates is set and re-routes a probable
+     * duplicate to the duplicate rule of the decision table. Runs after the result cache, so
+     * cached results never name another claim.
+     * @param claimId Claim id the claim is recorded under
+     * @param result Processed claim; updated in place
+     * @return The same result
+     * @throws IOException If the index cannot be read or written
+     */
+    private static ClaimResult checkDuplicate(String claimId, ClaimResult result) throws IOException {
+        DuplicateIndex index = duplicateIndex;
+        ExtractedFields fields = result.getExtractedFields();
+        // Timed-out claims keep their route; their fields may be incomplete
+        if (index == null || fields == null || result.getReasonCode() != null) {
+            return result;
+        }
+        String original = index.register(fields, claimId);
+        if (original == null) {
+            return result;
+        }
+
+        fields.setDuplicateOf(original);
+        result.setInconsistencies(VALIDATOR.validateConsistency(fields));
+        ClaimRouter.RoutingDecision decision = ROUTER.determineRoute(fields, result.getMissingFields());
+        METRICS.countDuplicate(result.getRecommendedRoute(), decision.getRoute());
+        result.setRecommendedRoute(decision.getRoute());
+        result.setReasoning(decision.getReasoning());
+        result.setPriority(decision.getPriority());
+        result.setReasonCode(decision.getReasonCode());
+        return result;
+    }
+
+    /**
+     * Closes the duplicate index, if one is open, so the next run can skip rebuilding it
+     */
+    private static void closeDuplicateIndex() {
+        DuplicateIndex index = duplicateIndex;
+        if (index == null) {
+            return;
+        }
+        try {
+            index.close();
+        } catch (IOException e) {
+            System.err.println("Error closing duplicate index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a result to the work queue of its route when --queues is set
+     * @param claimId Claim id
+     * @param result Processed claim
+     * @return The same result
+     * @throws IOException If the queue cannot be written
+     */
+    private static ClaimResult enqueue(String claimId, ClaimResult result) throws IOException {
+        if (routeQueues != null) {
+            enqueue(claimId, STORE_MAPPER.writeValueAsBytes(result), result);
+        }
+        return result;
+    }
+
+    private static void enqueue(String claimId, byte[] payload, ClaimResult result) throws IOException {
+        RouteQueues queues = routeQueues;
+        if (queues == null) {
+            return;
+        }
+        // Results without a priority (stored by older versions) go after everything else
+        int priority = result.getPriority() != null ? result.getPriority() : Byte.MAX_VALUE;
+        queues.enqueue(result.getRecommendedRoute(), claimId, priority, payload);
+    }
+
+    private static void countOutcome(ClaimResult result) {
+        METRICS.countRoute(result.getRecommendedRoute());
+        for (String field : result.getMissingFields()) {
+            METRICS.countMissingField(field);
+        }
+    }
+
+    /**
+     * Stage latencies and route/missing-field/failure counters for this process
+     * @return Shared metrics
+     */
+    public static ClaimMetrics getMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * Writes the Prometheus metrics file if one was requested with --metrics
+     */
+    private static void writeMetrics() {
+        Path file = metricsFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            METRICS.writePrometheus(file);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void log(boolean verbose, String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Runs a resident worker on a localhost port.
+     * Usage: --daemon [--port N] [--workers N] [--warmup PDF]...
+     * @param args Daemon arguments
+     */
+    private static void runDaemon(String[] args) {
+        int port = ClaimDaemon.DEFAULT_PORT;
+        int workers = Runtime.getRuntime().availableProcessors();
+        List<String> warmupFiles = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupFiles.add(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown daemon option: " + args[i]);
+            }
+        }
+        if (warmupFiles.isEmpty() && new File(DEFAULT_PDF).exists()) {
+            warmupFiles.add(DEFAULT_PDF);
+        }
+
+        try {
+            System.out.println("Warming up...");
+            warmUp(warmupFiles);
+
+            ClaimDaemon daemon = new ClaimDaemon(port, workers, Main::processAndEnqueue);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    daemon.close();
+                } catch (IOException e) {
+                    // Exiting anyway
+                }
+                closeDuplicateIndex();
+                writeMetrics();
+            }));
+            System.out.println("Claims daemon listening on localhost:" + daemon.getPort()
+                    + " with " + workers + " workers");
+            daemon.serve();
+        } catch (Exception e) {
+            System.err.println("Error running daemon: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the HTTP intake service.
+     * Usage: --serve [--port N] [--bind ADDR] [--max-concurrent N] [--max-waiting N] [--wait-ms N] [--warmup PDF]...
+     * @param args Server arguments
+     */
+    private static void runHttpServer(String[] args) {
+        int port = 8080;
+        String bind = null;
+        int maxConcurrent = Runtime.getRuntime().availableProcessors();
+        int maxWaiting = 4 * maxConcurrent;
+        long waitMillis = 10_000;
+        List<String> warmupFiles = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--bind":
+                    bind = args[++i];
+                    break;
+                case "--max-concurrent":
+                    maxConcurrent = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-waiting":
+                    maxWaiting = Integer.parseInt(args[++i]);
+                    break;
+                case "--wait-ms":
+                    waitMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupFiles.add(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown server option: " + args[i]);
+            }
+        }
+        if (warmupFiles.isEmpty() && new File(DEFAULT_PDF).exists()) {
+            warmupFiles.add(DEFAULT_PDF);
+        }
+
+        try {
+            System.out.println("Warming up...");
+            warmUp(warmupFiles);
+
+            // No authentication, so only local clients unless an address is given explicitly
+            InetAddress address = bind != null ? InetAddress.getByName(bind) : InetAddress.getLoopbackAddress();
+            ClaimHttpServer server = new ClaimHttpServer(new InetSocketAddress(address, port),
+                    maxConcurrent, maxWaiting, waitMillis,
+                    (fileName, body) -> {
+                        DigestInputStream pdf = new DigestInputStream(body, sha256());
+                        ClaimResult result = processClaim(pdf, false);
+                        // The id covers the whole upload, also any bytes the parser did not need
+                        pdf.transferTo(OutputStream.nullOutputStream());
+                        String claimId = claimIdFor(fileName, pdf.getMessageDigest().digest());
+                        return enqueue(claimId, checkDuplicate(claimId, result));
+                    },
+                    (fileName, pdf) -> {
+                        ClaimResult result = processClaim(pdf, false);
+                        String claimId = claimIdFor(fileName, result.getContentSha256());
+                        return enqueue(claimId, checkDuplicate(claimId, result));
+                    }, METRICS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                closeDuplicateIndex();
+            }));
+            server.start();
+            System.out.println("Claims intake listening on " + server.getAddress()
+                    + " (" + maxConcurrent + " concurrent, " + maxWaiting + " waiting, "
+                    + (WorkerThreads.virtualThreadsAvailable() ? "virtual" : "platform") + " handler threads)");
+        } catch (Exception e) {
+            System.err.println("Error running HTTP server: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Loads the PDFBox font cache and runs the sample documents through the whole
+     * pipeline so classes are loaded and the hot paths are compiled before the first claim
+     * @param samples Documents to process
+     */
+    private static void warmUp(List<String> samples) {
+        FontMappers.instance().getFontBoxFont("Helvetica", null);
+        try {
+            for (int round = 0; round < 20; round++) {
+                for (String sample : samples) {
+                    processClaim(sample, false);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Warm-up stopped: " + e.getMessage());
+        } finally {
+            // Warm-up runs are not real claims
+            METRICS.reset();
+        }
+    }
+
+    /**
+     * Sends documents to a running daemon and prints one JSON result per line.
+     * Usage: --client [--port N] &lt;file&gt;...
+     * @param args Client arguments
+     */
+    private static void runClient(String[] args) {
+        int port = ClaimDaemon.DEFAULT_PORT;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        try (ClaimClient client = new ClaimClient(port)) {
+            for (String file : files) {
+                // The daemon may run in another working directory
+                System.out.println(client.process(new File(file).getAbsolutePath()));
+            }
+        } catch (IOException e) {
+            System.err.println("Error contacting daemon on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds the claim id for an input file: the file name without extension, followed by
+     * the start of the SHA-256 of the content. Two claims filed under the same name get
+     * different ids, while the same document keeps its id when it is processed again.
+     * @param pdf Input PDF
+     * @return Claim id, e.g. "claim-3f2a9c01b7de"
+     * @throws IOException If the file cannot be read
+     */
+    private static String claimIdFor(Path pdf) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(pdf)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return claimIdFor(pdf.getFileName().toString(), digest.digest());
+    }
+
+    /**
+     * Builds the claim id for a processed input file from the digest taken when its content
+     * was read (pipeline, cache, uploads), so the id always matches the bytes that were processed.
+     * Only when PDFBox read the file by path is the file hashed here.
+     * @param pdf Input PDF
+     * @param result Result of processing it
+     * @return Claim id
+     * @throws IOException If the file has to be hashed and cannot be read
+     */
+    private static String claimIdFor(Path pdf, ClaimResult result) throws IOException {
+        byte[] sha256 = result.getContentSha256();
+        return sha256 != null ? claimIdFor(pdf.getFileName().toString(), sha256) : claimIdFor(pdf);
+    }
+
+    /**
+     * Builds the claim id from a file name and the SHA-256 of its content
+     * @param fileName File name as submitted
+     * @param sha256 Digest of the content
+     * @return Claim id
+     */
+    private static String claimIdFor(String fileName, byte[] sha256) {
+        int dot = fileName.lastIndexOf('.');
+        StringBuilder id = new StringBuilder(dot > 0 ? fileName.substring(0, dot) : fileName).append('-');
+        for (int i = 0; i < CLAIM_ID_DIGEST_BYTES; i++) {
+            id.append(Character.forDigit((sha256[i] >> 4) & 0xF, 16));
+            id.append(Character.forDigit(sha256[i] & 0xF, 16));
+        }
+        return id.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Prints a stored batch result.
+     * Usage: --lookup &lt;store dir&gt; &lt;claim id&gt;
+     * @param args Lookup arguments
+     */
+    private static void runLookup(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: --lookup <store dir> <claim id>");
+            System.exit(1);
+        }
+        try (ResultStore store = new ResultStore(Paths.get(args[0]))) {
+            byte[] payload = store.get(args[1]);
+            if (payload == null) {
+                System.err.println("No result stored for claim " + args[1]);
+                System.exit(3);
+            }
+            System.out.println(MAPPER.writeValueAsString(MAPPER.readTree(payload)));
+        } catch (IOException e) {
+            System.err.println("Error reading result store: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Shows or drains the durable work queues.
+     * Usage: --queue &lt;queues dir&gt; [&lt;route&gt; [N]]
+     * Without a route, prints waiting entries per route. With a route, takes up to N entries
+     * (default 1) in priority order, prints one JSON line per entry and acknowledges them
+     * once printed.
+     * @param args Queue arguments
+     */
+    private static void runQueue(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: --queue <queues dir> [<route> [N]]");
+            System.exit(1);
+        }
+        try (RouteQueues queues = new RouteQueues(Paths.get(args[0]))) {
+            if (args.length == 1) {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, RouteQueue> entry : queues.getQueues().entrySet()) {
+                    long oldest = entry.getValue().oldestArrivalMillis();
+                    System.out.printf("%-22s %8d waiting%s%n", entry.getKey(), entry.getValue().size(),
+                            oldest < 0 ? "" : String.format(", oldest %d s", (now - oldest) / 1000));
+                }
+                return;
+            }
+
+            RouteQueue queue = queues.getQueues().get(args[1]);
+            int limit = args.length == 3 ? Integer.parseInt(args[2]) : 1;
+            List<RouteQueue.Entry> taken = new ArrayList<>();
+            RouteQueue.Entry next;
+            while (queue != null && taken.size() < limit && (next = queue.poll()) != null) {
+                ObjectNode line = STORE_MAPPER.createObjectNode();
+                line.put("claimId", next.getClaimId());
+                line.put("priority", next.getPriority());
+                line.put("queuedAt", next.getArrivalMillis());
+                line.set("result", STORE_MAPPER.readTree(next.getPayload()));
+                System.out.println(STORE_MAPPER.writeValueAsString(line));
+                taken.add(next);
+            }
+            System.out.flush();
+            // Printed entries are done; a crash before this point delivers them again
+            for (RouteQueue.Entry entry : taken) {
+                queue.ack(entry.getSequence());
+            }
+            if (queue != null) {
+                queue.sync();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading work queues: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
     /**
      * Saves JSON output to a file
      * @param jsonContent JSON string content
@@ -121,4 +1384,4 @@ public class Main {
             writer.write(jsonContent);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package org.insurance.claims.ExtractedFields;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive multi-pattern matcher (Aho-Corasick automaton).
+ * The automaton is compiled once into a dense transition table so a scan is a
+ * single pass over the text with one table lookup per character.
+ */
+public final class AhoCorasick {
+
+    /**
+     * Callback invoked for every keyword occurrence found during a scan
+     */
+    public interface MatchHandler {
+        /**
+         * @param keywordIndex Index of the keyword in the compiled list
+         * @param start Start offset of the occurrence (inclusive)
+         * @param end End offset of the occurrence (exclusive)
+         */
+        void onMatch(int keywordIndex, int start, int end);
+    }
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final String[] keywords;
+    private final int[] asciiClasses;
+    private final Map<Character, Integer> otherClasses;
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    private AhoCorasick(String[] keywords, int[] asciiClasses, Map<Character, Integer> otherClasses,
+                        int alphabetSize, int[] transitions, int[][] outputs) {
+        this.keywords = keywords;
+        this.asciiClasses = asciiClasses;
+        this.otherClasses = otherClasses;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Compiles the automaton for the given keywords
+     * @param keywords Keywords to search for (matched case-insensitively)
+     * @return Compiled automaton
+     */
+    public static AhoCorasick compile(List<String> keywords) {
+        String[] words = keywords.toArray(new String[0]);
+
+        // Alphabet: class 0 is "any character not used by a keyword"
+        int[] asciiClasses = new int[128];
+        Map<Character, Integer> otherClasses = new HashMap<>();
+        int alphabetSize = 1;
+        for (String word : words) {
+            if (word == null || word.isEmpty()) {
+                throw new IllegalArgumentException("Keywords must not be empty");
+            }
+            for (int i = 0; i < word.length(); i++) {
+                char c = fold(word.charAt(i));
+                if (c < 128) {
+                    if (asciiClasses[c] == 0) {
+                        asciiClasses[c] = alphabetSize++;
+                    }
+                } else if (!otherClasses.containsKey(c)) {
+                    otherClasses.put(c, alphabetSize++);
+                }
+            }
+        }
+
+        // Build the trie
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        gotoTable.add(newRow(alphabetSize));
+        out.add(new ArrayList<>());
+        for (int k = 0; k < words.length; k++) {
+            int state = 0;
+            for (int i = 0; i < words[k].length(); i++) {
+                int cls = classOf(fold(words[k].charAt(i)), asciiClasses, otherClasses);
+                int next = gotoTable.get(state)[cls];
+                if (next < 0) {
+                    next = gotoTable.size();
+                    gotoTable.add(newRow(alphabetSize));
+                    out.add(new ArrayList<>());
+                    gotoTable.get(state)[cls] = next;
+                }
+                state = next;
+            }
+            out.get(state).add(k);
+        }
+
+        // Breadth-first pass computes failure links and turns the trie into a DFA
+        int stateCount = gotoTable.size();
+        int[] fail = new int[stateCount];
+        int[] transitions = new int[stateCount * alphabetSize];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            int next = gotoTable.get(0)[cls];
+            if (next < 0) {
+                transitions[cls] = 0;
+            } else {
+                transitions[cls] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            out.get(state).addAll(out.get(fail[state]));
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                int next = gotoTable.get(state)[cls];
+                if (next < 0) {
+                    transitions[state * alphabetSize + cls] = transitions[fail[state] * alphabetSize + cls];
+                } else {
+                    transitions[state * alphabetSize + cls] = next;
+                    fail[next] = transitions[fail[state] * alphabetSize + cls];
+                    queue.add(next);
+                }
+            }
+        }
+
+        int[][] outputs = new int[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            List<Integer> ids = out.get(s);
+            if (ids.isEmpty()) {
+                outputs[s] = NO_OUTPUT;
+            } else {
+                outputs[s] = new int[ids.size()];
+                for (int i = 0; i < ids.size(); i++) {
+                    outputs[s][i] = ids.get(i);
+                }
+            }
+        }
+
+        return new AhoCorasick(words, asciiClasses, otherClasses, alphabetSize, transitions, outputs);
+    }
+
+    /**
+     * Scans the text once and reports every keyword occurrence in order of end offset
+     * @param text Text to scan
+     * @param handler Receives each occurrence
+     */
+    public void scan(CharSequence text, MatchHandler handler) {
+        scan(text, 0, text.length(), handler);
+    }
+
+    /**
+     * Scans a range of the text once and reports every keyword occurrence
+     * @param text Text to scan
+     * @param from Start offset (inclusive)
+     * @param to End offset (exclusive)
+     * @param handler Receives each occurrence
+     */
+    public void scan(CharSequence text, int from, int to, MatchHandler handler) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            char c = fold(text.charAt(i));
+            state = transitions[state * alphabetSize + classOf(c, asciiClasses, otherClasses)];
+            int[] found = outputs[state];
+            for (int k = 0; k < found.length; k++) {
+                int id = found[k];
+                handler.onMatch(id, i + 1 - keywords[id].length(), i + 1);
+            }
+        }
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    public String getKeyword(int index) {
+        return keywords[index];
+    }
+
+    private static int[] newRow(int alphabetSize) {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int classOf(char c, int[] asciiClasses, Map<Character, Integer> otherClasses) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        if (otherClasses.isEmpty()) {
+            return 0;
+        }
+        Integer cls = otherClasses.get(c);
+        return cls != null ? cls : 0;
+    }
+
+    private static char fold(char c) {
+        if (c < 128) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -4,120 +4,123 @@ package org.insurance.claims.ExtractedFields;
 
 import org.insurance.claims.model.ExtractedFields;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class ClaimRouter {
 
-    private static final double FAST_TRACK_THRESHOLD = 25000.0;
+    /** Bump whenever the decision table language or the routing output changes (invalidates cached results) */
+    public static final String RULES_VERSION = "6";
 
+    /** Reason code: at least one field pattern exceeded its match budget */
+    public static final String REASON_EXTRACTION_TIMEOUT = "EXTRACTION_TIMEOUT";
+    /** Reason code: the claim ran past its total processing deadline */
+    public static final String REASON_DEADLINE_EXCEEDED = "DEADLINE_EXCEEDED";
 
-    public RoutingDecision determineRoute(ExtractedFields fields, List<String> missingFields) {
-        String route;
-        StringBuilder reasoning = new StringBuilder();
-        int priority = 0;
-
-        // Rule 1: Missing mandatory fields → Manual Review (Highest Priority)
-        if (!missingFields.isEmpty()) {
-            route = "Manual Review";
-            reasoning.append("Missing mandatory fields: ")
-                    .append(String.join(", ", missingFields))
-                    .append(". ");
-            priority = 1;
-            return new RoutingDecision(route, reasoning.toString(), priority);
-        }
-
-        // Rule 2: Check for fraud indicators → Investigation Queue
-        if (containsFraudIndicators(fields)) {
-            route = "Investigation Queue";
-            reasoning.append("Description contains potential fraud indicators (words like 'fraud', 'inconsistent', or 'staged'). ");
-            priority = 2;
-            return new RoutingDecision(route, reasoning.toString(), priority);
-        }
-
-        // Rule 3: Injury claims → Specialist Queue
-        if (isInjuryClaim(fields)) {
-            route = "Specialist Queue";
-            reasoning.append("Claim involves injuries and requires specialist review. ");
-            priority = 3;
+    /** How often a watched decision table file is checked for changes */
+    public static final long RELOAD_INTERVAL_MILLIS = 2000;
 
-            // Also mention damage amount if available
-            if (fields.getAssetDetails().getEstimatedDamage() != null) {
-                reasoning.append(String.format("Estimated damage: $%.2f. ",
-                        fields.getAssetDetails().getEstimatedDamage()));
-            }
 
-            return new RoutingDecision(route, reasoning.toString(), priority);
-        }
+    private final KeywordMatcher keywords;
+    // Each claim reads the table once, so a reload never mixes two rule sets in one decision
+    private final AtomicReference<DecisionTable> table;
+    private final List<Consumer<DecisionTable>> reloadListeners = new CopyOnWriteArrayList<>();
 
-        // Rule 4: Estimated damage < $25,000 → Fast-track
-        Double estimatedDamage = fields.getAssetDetails().getEstimatedDamage();
-        if (estimatedDamage != null && estimatedDamage < FAST_TRACK_THRESHOLD) {
-            route = "Fast-track";
-            reasoning.append(String.format("Estimated damage ($%.2f) is below the $%.2f threshold. ",
-                            estimatedDamage, FAST_TRACK_THRESHOLD))
-                    .append("All mandatory fields are present. ")
-                    .append("No fraud indicators or injuries detected. ");
-            priority = 4;
-            return new RoutingDecision(route, reasoning.toString(), priority);
-        }
+    public ClaimRouter() {
+        this(KeywordMatcher.getDefault(), DecisionTable.loadDefault());
+    }
 
-        // Rule 5: High value claims (>= $25,000) → Standard Review
-        if (estimatedDamage != null && estimatedDamage >= FAST_TRACK_THRESHOLD) {
-            route = "Standard Review";
-            reasoning.append(String.format("Estimated damage ($%.2f) exceeds the fast-track threshold of $%.2f. ",
-                            estimatedDamage, FAST_TRACK_THRESHOLD))
-                    .append("Requires standard review process. ");
-            priority = 5;
-            return new RoutingDecision(route, reasoning.toString(), priority);
-        }
+    /**
+     * @param keywords Keyword set providing the fraud and injury categories
+     */
+    public ClaimRouter(KeywordMatcher keywords) {
+        this(keywords, DecisionTable.loadDefault());
+    }
 
-        // Default: Standard Review (if damage amount is missing but all other fields present)
-        route = "Standard Review";
-        reasoning.append("Standard processing route - all mandatory fields present except damage estimate. ");
-        priority = 6;
+    /**
+     * @param keywords Keyword set providing the fraud and injury categories
+     * @param table Routing rules
+     */
+    public ClaimRouter(KeywordMatcher keywords, DecisionTable table) {
+        this.keywords = keywords;
+        this.table = new AtomicReference<>(table);
+    }
 
-        return new RoutingDecision(route, reasoning.toString(), priority);
+    public RoutingDecision determineRoute(ExtractedFields fields, List<String> missingFields) {
+        return table.get().evaluate(fields, missingFields, keywords);
     }
 
+    public DecisionTable getTable() {
+        return table.get();
+    }
 
-    private boolean containsFraudIndicators(ExtractedFields fields) {
-        String description = fields.getIncidentInfo().getDescription();
-        if (description == null || description.isEmpty()) {
-            return false;
+    /**
+     * Replaces the routing rules; claims already being routed finish with the old table
+     * @param newTable Compiled table
+     */
+    public void setTable(DecisionTable newTable) {
+        table.set(newTable);
+        for (Consumer<DecisionTable> listener : reloadListeners) {
+            listener.accept(newTable);
         }
-
-        String lowerDesc = description.toLowerCase();
-
-        // Check for fraud-related keywords
-        return lowerDesc.contains("fraud") ||
-                lowerDesc.contains("fraudulent") ||
-                lowerDesc.contains("inconsistent") ||
-                lowerDesc.contains("staged") ||
-                lowerDesc.contains("suspicious") ||
-                lowerDesc.contains("fake");
     }
 
+    /**
+     * @return Version of the rule language and of the active decision table
+     */
+    public String getRulesVersion() {
+        return RULES_VERSION + "/table-" + table.get().getVersion();
+    }
 
-    private boolean isInjuryClaim(ExtractedFields fields) {
-        String claimType = fields.getOtherFields().getClaimType();
-
-        if (claimType != null && claimType.toLowerCase().contains("injury")) {
-            return true;
-        }
-
-        // Also check description for injury mentions
-        String description = fields.getIncidentInfo().getDescription();
-        if (description != null) {
-            String lowerDesc = description.toLowerCase();
-            return lowerDesc.contains("injury") ||
-                    lowerDesc.contains("injured") ||
-                    lowerDesc.contains("hurt") ||
-                    lowerDesc.contains("hospital") ||
-                    lowerDesc.contains("ambulance") ||
-                    lowerDesc.contains("medical");
-        }
+    /**
+     * @param listener Called with the new table after every replacement
+     */
+    public void addReloadListener(Consumer<DecisionTable> listener) {
+        reloadListeners.add(listener);
+    }
 
-        return false;
+    /**
+     * Loads a decision table file and reloads it whenever its modification time changes.
+     * A table that fails to load or compile is reported and the previous rules stay active.
+     * @param file JSON decision table
+     * @return Scheduler polling the file; shut it down to stop watching
+     * @throws IOException If the initial table cannot be read
+     * @throws IllegalArgumentException If the initial table is invalid
+     */
+    public ScheduledExecutorService watch(Path file) throws IOException {
+        FileTime[] loaded = {Files.getLastModifiedTime(file)};
+        setTable(DecisionTable.load(file));
+
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "routing-table-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.equals(loaded[0])) {
+                    return;
+                }
+                loaded[0] = modified;
+                DecisionTable reloaded = DecisionTable.load(file);
+                setTable(reloaded);
+                System.out.println("Reloaded routing rules " + reloaded.getVersion()
+                        + " (" + reloaded.getRuleCount() + " rules) from " + file);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Keeping previous routing rules, cannot load " + file + ": " + e.getMessage());
+            }
+        }, RELOAD_INTERVAL_MILLIS, RELOAD_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return poller;
     }
 
     /**
@@ -127,11 +130,17 @@ public class ClaimRouter {
         private String route;
         private String reasoning;
         private int priority;
+        private String reasonCode;
 
         public RoutingDecision(String route, String reasoning, int priority) {
+            this(route, reasoning, priority, null);
+        }
+
+        public RoutingDecision(String route, String reasoning, int priority, String reasonCode) {
             this.route = route;
             this.reasoning = reasoning;
             this.priority = priority;
+            this.reasonCode = reasonCode;
         }
 
         public String getRoute() {
@@ -145,5 +154,12 @@ public class ClaimRouter {
         public int getPriority() {
             return priority;
         }
+
+        /**
+         * @return Reason code for exceptional routes, or null
+         */
+        public String getReasonCode() {
+            return reasonCode;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package org.insurance.claims.ExtractedFields;
+
+/**
+ * Point in time by which a piece of work must finish, based on System.nanoTime().
+ * Immutable; one instance is shared by all stages of a claim.
+ */
+public final class Deadline {
+
+    /** No time limit */
+    public static final Deadline NONE = new Deadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+
+    private Deadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * @param millis Budget from now; 0 or less means no limit
+     * @return Deadline that expires after the budget
+     */
+    public static Deadline after(long millis) {
+        return millis > 0 ? new Deadline(System.nanoTime() + millis * 1_000_000L, true) : NONE;
+    }
+
+    /**
+     * Narrows this deadline to a budget starting now
+     * @param budgetNanos Budget in nanoseconds; 0 or less means no extra limit
+     * @return The earlier of this deadline and now + budget
+     */
+    public Deadline within(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            return this;
+        }
+        long candidate = System.nanoTime() + budgetNanos;
+        if (bounded && deadlineNanos - candidate <= 0) {
+            return this;
+        }
+        return new Deadline(candidate, true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Fails if the deadline has passed
+     * @param activity What was being done, for the exception message
+     * @throws DeadlineExceededException If the deadline has passed
+     */
+    public void check(String activity) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Time budget exhausted during " + activity);
+        }
+    }
+}
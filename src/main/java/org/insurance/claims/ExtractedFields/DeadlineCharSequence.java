@@ -0,0 +1,46 @@
+package org.insurance.claims.ExtractedFields;
+
+/**
+ * CharSequence view that aborts whoever is reading it once a deadline passes.
+ * A runaway regex reads characters constantly, so checking the clock every
+ * CHECK_INTERVAL reads stops it within microseconds of the deadline.
+ */
+final class DeadlineCharSequence implements CharSequence {
+
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence text;
+    private final Deadline deadline;
+    private int reads;
+
+    DeadlineCharSequence(CharSequence text, Deadline deadline) {
+        this.text = text;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++reads == CHECK_INTERVAL) {
+            reads = 0;
+            if (deadline.isExpired()) {
+                throw new DeadlineExceededException("Pattern match ran out of time");
+            }
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package org.insurance.claims.ExtractedFields;
+
+/**
+ * Thrown when a claim or a single pattern match runs past its Deadline.
+ * Unchecked so it can escape java.util.regex, which only sees a CharSequence.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        // Thrown from deep inside regex backtracking; the stack trace is noise
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,503 @@
+package org.insurance.claims.ExtractedFields;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.insurance.claims.model.ExtractedFields;
+import org.insurance.claims.model.FieldId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routing rules loaded from a JSON decision table.
+ *
+ * Rules are evaluated top to bottom and the first rule whose conditions all hold
+ * decides the route. The table is compiled once into condition and text-template
+ * objects, so evaluating a claim involves no parsing, lookups by name or reflection.
+ * Tables are immutable; ClaimRouter swaps whole tables on reload.
+ *
+ * Conditions (all optional, combined with AND):
+ *   timedOut           true/false - extraction was cut short by a time budget
+ *   duplicate          true/false - the duplicate index found an earlier claim for the same loss
+ *   missingFields      "any", "none", or a list of field names of which any is missing
+ *   keywords           list of KeywordMatcher categories of which any occurs in the description
+ *   claimTypeContains  text the claim type contains (case-insensitive)
+ *   damage             {"atLeast": n, "below": n} - estimated damage band, both bounds optional
+ *   damageKnown        true/false
+ *   present / absent   lists of field paths such as "assetDetails.vin"
+ *   anyOf              list of condition objects of which any holds
+ *
+ * Reasoning and reasonCode are templates: {missingFields}, {damage}, {damage.atLeast},
+ * {damage.below}, {timeoutCode}, {timeoutDetail}, {duplicateOf} or any field path. Text inside [[ ]]
+ * is left out when one of its placeholders has no value.
+ */
+public final class DecisionTable {
+
+    /** Route used when no rule matches */
+    public static final String NO_MATCH_ROUTE = "Manual Review";
+    public static final String REASON_NO_RULE_MATCHED = "NO_RULE_MATCHED";
+
+    private static final String DEFAULT_RESOURCE = "/routing/decision-table.json";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String version;
+    private final List<Rule> rules;
+    private final boolean usesKeywords;
+
+    private DecisionTable(String version, List<Rule> rules, boolean usesKeywords) {
+        this.version = version;
+        this.rules = rules;
+        this.usesKeywords = usesKeywords;
+    }
+
+    /**
+     * Loads the table bundled with the application
+     * @return Compiled table
+     */
+    public static DecisionTable loadDefault() {
+        try (InputStream in = DecisionTable.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing decision table: " + DEFAULT_RESOURCE);
+            }
+            return load(in.readAllBytes());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read decision table: " + DEFAULT_RESOURCE, e);
+        }
+    }
+
+    /**
+     * Loads and compiles a table file
+     * @param file JSON decision table
+     * @return Compiled table
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the table is invalid
+     */
+    public static DecisionTable load(Path file) throws IOException {
+        return load(Files.readAllBytes(file));
+    }
+
+    /**
+     * Compiles a table from its JSON content
+     * @param content JSON decision table
+     * @return Compiled table
+     * @throws IOException If the content is not JSON
+     * @throws IllegalArgumentException If the table is invalid
+     */
+    static DecisionTable load(byte[] content) throws IOException {
+        JsonNode root = MAPPER.readTree(content);
+        JsonNode ruleNodes = root.path("rules");
+        if (!ruleNodes.isArray() || ruleNodes.size() == 0) {
+            throw new IllegalArgumentException("Decision table has no rules");
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        boolean[] usesKeywords = new boolean[1];
+        for (JsonNode node : ruleNodes) {
+            String name = node.path("name").asText("rule " + (rules.size() + 1));
+            try {
+                rules.add(compileRule(name, node, usesKeywords));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Rule '" + name + "': " + e.getMessage(), e);
+            }
+        }
+        String version = root.path("version").asText("unversioned") + "-" + digest(content);
+        return new DecisionTable(version, Collections.unmodifiableList(rules), usesKeywords[0]);
+    }
+
+    /**
+     * Routes a claim
+     * @param fields Extracted fields
+     * @param missingFields Missing mandatory fields
+     * @param keywords Keyword set for keyword conditions
+     * @return Decision of the first matching rule
+     */
+    public ClaimRouter.RoutingDecision evaluate(ExtractedFields fields, List<String> missingFields,
+                                               KeywordMatcher keywords) {
+        Set<String> indicators = usesKeywords
+                ? keywords.match(fields.getIncidentInfo().getDescription())
+                : Collections.emptySet();
+        Facts facts = new Facts(fields, missingFields, indicators);
+
+        for (Rule rule : rules) {
+            if (rule.condition.test(facts)) {
+                String reasonCode = rule.reasonCode != null ? rule.reasonCode.render(facts) : null;
+                return new ClaimRouter.RoutingDecision(rule.route, rule.reasoning.render(facts), rule.priority,
+                        reasonCode == null || reasonCode.isEmpty() ? null : reasonCode);
+            }
+        }
+        return new ClaimRouter.RoutingDecision(NO_MATCH_ROUTE,
+                "No routing rule matched this claim (decision table " + version + "). ", 1, REASON_NO_RULE_MATCHED);
+    }
+
+    /**
+     * @return Declared version plus a digest of the table content
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    // ---- compilation ----
+
+    private static Rule compileRule(String name, JsonNode node, boolean[] usesKeywords) {
+        String route = node.path("route").asText(null);
+        if (route == null || route.isEmpty()) {
+            throw new IllegalArgumentException("missing route");
+        }
+        Map<String, String> constants = new HashMap<>();
+        Condition condition = compileCondition(node.path("when"), constants, usesKeywords);
+        Template reasoning = Template.compile(node.path("reasoning").asText(""), constants);
+        Template reasonCode = node.hasNonNull("reasonCode")
+                ? Template.compile(node.get("reasonCode").asText(), constants)
+                : null;
+        return new Rule(route, node.path("priority").asInt(0), condition, reasoning, reasonCode);
+    }
+
+    private static Condition compileCondition(JsonNode when, Map<String, String> constants, boolean[] usesKeywords) {
+        if (when.isMissingNode() || when.isNull()) {
+            return facts -> true;
+        }
+        if (!when.isObject()) {
+            throw new IllegalArgumentException("'when' must be an object");
+        }
+
+        List<Condition> all = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> entries = when.fields();
+        while (entries.hasNext()) {
+            Map.Entry<String, JsonNode> entry = entries.next();
+            JsonNode value = entry.getValue();
+            switch (entry.getKey()) {
+                case "timedOut": {
+                    boolean expected = value.asBoolean();
+                    all.add(facts -> (facts.fields.getTimeoutCode() != null) == expected);
+                    break;
+                }
+                case "duplicate": {
+                    boolean expected = value.asBoolean();
+                    all.add(facts -> (facts.fields.getDuplicateOf() != null) == expected);
+                    break;
+                }
+                case "missingFields":
+                    all.add(compileMissingFields(value));
+                    break;
+                case "keywords": {
+                    String[] categories = textList(value, "keywords");
+                    usesKeywords[0] = true;
+                    all.add(facts -> {
+                        for (String category : categories) {
+                            if (facts.indicators.contains(category)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    });
+                    break;
+                }
+                case "claimTypeContains": {
+                    String needle = value.asText().toLowerCase();
+                    all.add(facts -> {
+                        String claimType = facts.fields.getOtherFields().getClaimType();
+                        return claimType != null && claimType.toLowerCase().contains(needle);
+                    });
+                    break;
+                }
+                case "damage":
+                    all.add(compileDamageBand(value, constants));
+                    break;
+                case "damageKnown": {
+                    boolean expected = value.asBoolean();
+                    all.add(facts -> (facts.fields.getAssetDetails().getEstimatedDamage() != null) == expected);
+                    break;
+                }
+                case "present":
+                case "absent": {
+                    boolean expected = entry.getKey().equals("present");
+                    long mask = 0;
+                    for (String path : textList(value, entry.getKey())) {
+                        mask |= field(path).bit();
+                    }
+                    long fieldMask = mask;
+                    // Present: none of the fields is missing; absent: all of them are
+                    all.add(expected
+                            ? facts -> facts.fields.missing(fieldMask) == 0
+                            : facts -> facts.fields.missing(fieldMask) == fieldMask);
+                    break;
+                }
+                case "anyOf": {
+                    if (!value.isArray() || value.size() == 0) {
+                        throw new IllegalArgumentException("'anyOf' must be a non-empty list");
+                    }
+                    List<Condition> any = new ArrayList<>();
+                    for (JsonNode alternative : value) {
+                        any.add(compileCondition(alternative, constants, usesKeywords));
+                    }
+                    Condition[] alternatives = any.toArray(new Condition[0]);
+                    all.add(facts -> {
+                        for (Condition alternative : alternatives) {
+                            if (alternative.test(facts)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    });
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("unknown condition '" + entry.getKey() + "'");
+            }
+        }
+
+        if (all.isEmpty()) {
+            return facts -> true;
+        }
+        if (all.size() == 1) {
+            return all.get(0);
+        }
+        Condition[] conditions = all.toArray(new Condition[0]);
+        return facts -> {
+            for (Condition condition : conditions) {
+                if (!condition.test(facts)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static Condition compileMissingFields(JsonNode value) {
+        if (value.isTextual() && value.asText().equals("any")) {
+            return facts -> !facts.missingFields.isEmpty();
+        }
+        if (value.isTextual() && value.asText().equals("none")) {
+            return facts -> facts.missingFields.isEmpty();
+        }
+        String[] names = textList(value, "missingFields");
+        return facts -> {
+            for (String name : names) {
+                if (facts.missingFields.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static Condition compileDamageBand(JsonNode band, Map<String, String> constants) {
+        if (!band.isObject()) {
+            throw new IllegalArgumentException("'damage' must be an object with atLeast and/or below");
+        }
+        double atLeast = band.has("atLeast") ? band.get("atLeast").asDouble() : Double.NEGATIVE_INFINITY;
+        double below = band.has("below") ? band.get("below").asDouble() : Double.POSITIVE_INFINITY;
+        if (band.has("atLeast")) {
+            constants.put("damage.atLeast", formatAmount(atLeast));
+        }
+        if (band.has("below")) {
+            constants.put("damage.below", formatAmount(below));
+        }
+        return facts -> {
+            Double damage = facts.fields.getAssetDetails().getEstimatedDamage();
+            return damage != null && damage >= atLeast && damage < below;
+        };
+    }
+
+    private static String[] textList(JsonNode value, String name) {
+        if (value.isTextual()) {
+            return new String[]{value.asText()};
+        }
+        if (!value.isArray()) {
+            throw new IllegalArgumentException("'" + name + "' must be a string or a list");
+        }
+        String[] items = new String[value.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = value.get(i).asText();
+        }
+        return items;
+    }
+
+    private static FieldId field(String path) {
+        FieldId id = FieldId.forPath(path);
+        if (id == null) {
+            throw new IllegalArgumentException("unknown field '" + path + "'");
+        }
+        return id;
+    }
+
+    private static String formatAmount(double amount) {
+        return String.format("%.2f", amount);
+    }
+
+    private static String digest(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ---- compiled form ----
+
+    /**
+     * What a claim's rules are evaluated against; built once per claim
+     */
+    private static final class Facts {
+        final ExtractedFields fields;
+        final List<String> missingFields;
+        final Set<String> indicators;
+
+        Facts(ExtractedFields fields, List<String> missingFields, Set<String> indicators) {
+            this.fields = fields;
+            this.missingFields = missingFields;
+            this.indicators = indicators;
+        }
+    }
+
+    private interface Condition {
+        boolean test(Facts facts);
+    }
+
+    private static final class Rule {
+        final String route;
+        final int priority;
+        final Condition condition;
+        final Template reasoning;
+        final Template reasonCode;
+
+        Rule(String route, int priority, Condition condition, Template reasoning, Template reasonCode) {
+            this.route = route;
+            this.priority = priority;
+            this.condition = condition;
+            this.reasoning = reasoning;
+            this.reasonCode = reasonCode;
+        }
+    }
+
+    /**
+     * Text with placeholders, pre-split into literal and value parts
+     */
+    private static final class Template {
+        // A part returns null when its value is unavailable
+        private interface Part {
+            String render(Facts facts);
+        }
+
+        private final Part[] parts;
+        // Optional groups: a null part drops the whole group instead of rendering "null"
+        private final boolean optional;
+
+        private Template(Part[] parts, boolean optional) {
+            this.parts = parts;
+            this.optional = optional;
+        }
+
+        static Template compile(String text, Map<String, String> constants) {
+            List<Part> parts = new ArrayList<>();
+            int i = 0;
+            while (i < text.length()) {
+                int group = text.indexOf("[[", i);
+                int next = group < 0 ? text.length() : group;
+                addParts(text.substring(i, next), constants, parts);
+                if (group < 0) {
+                    break;
+                }
+                int close = text.indexOf("]]", group);
+                if (close < 0) {
+                    throw new IllegalArgumentException("unclosed [[ in '" + text + "'");
+                }
+                List<Part> groupParts = new ArrayList<>();
+                addParts(text.substring(group + 2, close), constants, groupParts);
+                Template inner = new Template(groupParts.toArray(new Part[0]), true);
+                parts.add(facts -> {
+                    String rendered = inner.render(facts);
+                    return rendered != null ? rendered : "";
+                });
+                i = close + 2;
+            }
+            return new Template(parts.toArray(new Part[0]), false);
+        }
+
+        private static void addParts(String text, Map<String, String> constants, List<Part> parts) {
+            int i = 0;
+            while (i < text.length()) {
+                int open = text.indexOf('{', i);
+                if (open < 0) {
+                    String literal = text.substring(i);
+                    parts.add(facts -> literal);
+                    return;
+                }
+                int close = text.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("unclosed { in '" + text + "'");
+                }
+                if (open > i) {
+                    String literal = text.substring(i, open);
+                    parts.add(facts -> literal);
+                }
+                parts.add(placeholder(text.substring(open + 1, close).trim(), constants));
+                i = close + 1;
+            }
+        }
+
+        private static Part placeholder(String name, Map<String, String> constants) {
+            switch (name) {
+                case "missingFields":
+                    return facts -> String.join(", ", facts.missingFields);
+                case "damage":
+                    return facts -> {
+                        Double damage = facts.fields.getAssetDetails().getEstimatedDamage();
+                        return damage != null ? formatAmount(damage) : null;
+                    };
+                case "timeoutCode":
+                    return facts -> facts.fields.getTimeoutCode();
+                case "timeoutDetail":
+                    return facts -> facts.fields.getTimeoutDetail();
+                case "duplicateOf":
+                    return facts -> facts.fields.getDuplicateOf();
+                default:
+                    break;
+            }
+            if (name.startsWith("damage.")) {
+                String constant = constants.get(name);
+                if (constant == null) {
+                    throw new IllegalArgumentException("{" + name + "} needs a matching 'damage' condition");
+                }
+                return facts -> constant;
+            }
+            FieldId id = field(name);
+            return facts -> facts.fields.get(id);
+        }
+
+        String render(Facts facts) {
+            StringBuilder out = new StringBuilder();
+            for (Part part : parts) {
+                String value = part.render(facts);
+                if (value == null) {
+                    if (optional) {
+                        return null;
+                    }
+                    value = "";
+                }
+                out.append(value);
+            }
+            return out.toString();
+        }
+    }
+}
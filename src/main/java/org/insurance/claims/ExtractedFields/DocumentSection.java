@@ -0,0 +1,39 @@
+package org.insurance.claims.ExtractedFields;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sections of an ACORD loss notice, each recognized by its heading lines.
+ * A heading counts only at the start of a line and when followed by the end of the
+ * line, a colon, "(" or "/", so labels such as "INSURED'S MAILING ADDRESS" or
+ * "DATE OF LOSS" inside a section do not start a new one.
+ */
+public enum DocumentSection {
+    /** No restriction: the rule searches the whole document */
+    ANY(),
+    /** Form header with the policy block: everything before the first heading */
+    POLICY(),
+    AGENCY("AGENCY"),
+    INSURED("INSURED"),
+    LOSS("LOSS", "LOCATION OF LOSS", "DESCRIPTION OF ACCIDENT"),
+    INSURED_VEHICLE("INSURED VEHICLE"),
+    OTHER_VEHICLE("OTHER VEHICLE", "PROPERTY DAMAGED"),
+    INJURED("INJURED", "INJURIES"),
+    WITNESSES("WITNESSES", "WITNESS", "WITNESSES OR PASSENGERS"),
+    REMARKS("REMARKS");
+
+    private final List<String> headings;
+
+    DocumentSection(String... headings) {
+        this.headings = Collections.unmodifiableList(Arrays.asList(headings));
+    }
+
+    /**
+     * @return Heading texts that start this section (matched case-insensitively)
+     */
+    public List<String> getHeadings() {
+        return headings;
+    }
+}
@@ -0,0 +1,476 @@
+package org.insurance.claims.ExtractedFields;
+
+import org.insurance.claims.metrics.FieldExtractionEvent;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Compiled set of field rules.
+ * All label anchors and section headings are located in a single pass with an
+ * Aho-Corasick automaton, then each value pattern is matched only at its own anchor
+ * positions, starting inside its section when the rule names one.
+ * Plans are immutable and safe to share between threads; a Session follows one document
+ * that is read page by page.
+ */
+public final class ExtractionPlan {
+
+    private final FieldRule[] rules;
+    private final Map<String, Integer> ruleIndex;
+    private final AhoCorasick anchors;
+    private final int[] ruleAnchor;
+    // Section each automaton keyword is a heading of, or null for pure field labels
+    private final DocumentSection[] headingSection;
+    private final int longestAnchor;
+
+    // Flags of one rule's match, see tryAnchors()
+    private static final int IN_SECTION = 1;
+    private static final int REACHED_END = 2;
+
+    public ExtractionPlan(List<FieldRule> rules) {
+        this.rules = rules.toArray(new FieldRule[0]);
+        this.ruleIndex = new HashMap<>();
+        this.ruleAnchor = new int[this.rules.length];
+
+        // Rules sharing a label share one automaton keyword
+        Map<String, Integer> anchorIds = new LinkedHashMap<>();
+        for (int i = 0; i < this.rules.length; i++) {
+            FieldRule rule = this.rules[i];
+            if (ruleIndex.put(rule.getName(), i) != null) {
+                throw new IllegalArgumentException("Duplicate rule name: " + rule.getName());
+            }
+            String key = rule.getAnchor().toLowerCase();
+            Integer id = anchorIds.get(key);
+            if (id == null) {
+                id = anchorIds.size();
+                anchorIds.put(key, id);
+            }
+            ruleAnchor[i] = id;
+        }
+
+        // Headings join the same automaton; a label that is also a heading ("AGENCY") is one keyword
+        Map<String, DocumentSection> headings = new HashMap<>();
+        for (DocumentSection section : DocumentSection.values()) {
+            for (String heading : section.getHeadings()) {
+                String key = heading.toLowerCase();
+                headings.put(key, section);
+                if (!anchorIds.containsKey(key)) {
+                    anchorIds.put(key, anchorIds.size());
+                }
+            }
+        }
+        this.headingSection = new DocumentSection[anchorIds.size()];
+        for (Map.Entry<String, Integer> keyword : anchorIds.entrySet()) {
+            headingSection[keyword.getValue()] = headings.get(keyword.getKey());
+        }
+        this.anchors = AhoCorasick.compile(new ArrayList<>(anchorIds.keySet()));
+        int longest = 0;
+        for (String keyword : anchorIds.keySet()) {
+            longest = Math.max(longest, keyword.length());
+        }
+        this.longestAnchor = longest;
+    }
+
+    /**
+     * Runs every rule of the plan against the text
+     * @param text Document text
+     * @return Extracted values, one per rule
+     */
+    public Result execute(CharSequence text) {
+        return execute(text, Deadline.NONE, 0);
+    }
+
+    /**
+     * Runs every rule of the plan against the text under a time limit.
+     * A rule whose match exceeds its own budget yields no value and is reported in
+     * Result.getTimedOutRules(); the remaining rules still run.
+     * @param text Document text
+     * @param deadline Deadline of the whole claim
+     * @param matchBudgetNanos Budget per rule, or 0 for none
+     * @return Extracted values, one per rule
+     * @throws DeadlineExceededException If the claim deadline passes
+     */
+    public Result execute(CharSequence text, Deadline deadline, long matchBudgetNanos) {
+        int[][] positions = findAnchors(text);
+        SectionIndex sections = indexSections(text, positions, null);
+        // Value i is text[spans[2i], spans[2i+1]); an empty span means no value
+        int[] spans = new int[rules.length * 2];
+        List<String> timedOut = new ArrayList<>(0);
+        boolean guarded = deadline.isBounded() || matchBudgetNanos > 0;
+
+        for (int i = 0; i < rules.length; i++) {
+            // Without its section in this document a rule searches the whole text as before
+            SectionIndex scope = sections.contains(rules[i].getSection()) ? sections : null;
+            int[] starts = positions[ruleAnchor[i]];
+            if (!guarded) {
+                matchRule(rules[i], text, starts, starts.length, scope, spans, null, i);
+                continue;
+            }
+            try {
+                CharSequence guardedText = new DeadlineCharSequence(text, deadline.within(matchBudgetNanos));
+                matchRule(rules[i], guardedText, starts, starts.length, scope, spans, null, i);
+            } catch (DeadlineExceededException e) {
+                deadline.check("field extraction (" + rules[i].getName() + ")");
+                spans[2 * i] = 0;
+                spans[2 * i + 1] = 0;
+                timedOut.add(rules[i].getName());
+            }
+        }
+        return new Result(text, spans, timedOut, sections);
+    }
+
+    public List<FieldRule> getRules() {
+        return Arrays.asList(rules);
+    }
+
+    /**
+     * Starts an execution over a text that grows at its end, e.g. one page at a time
+     * @param deadline Deadline of the whole claim
+     * @param matchBudgetNanos Budget per rule, or 0 for none
+     * @return Session; call extend() after each page
+     */
+    public Session newSession(Deadline deadline, long matchBudgetNanos) {
+        return new Session(deadline, matchBudgetNanos);
+    }
+
+    /**
+     * Collects the start offsets of every anchor occurrence in one scan
+     */
+    private int[][] findAnchors(CharSequence text) {
+        int anchorCount = anchors.size();
+        int[][] positions = new int[anchorCount][];
+        int[] counts = new int[anchorCount];
+        for (int i = 0; i < anchorCount; i++) {
+            positions[i] = new int[4];
+        }
+
+        anchors.scan(text, (keywordIndex, start, end) -> {
+            int[] list = positions[keywordIndex];
+            if (counts[keywordIndex] == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                positions[keywordIndex] = list;
+            }
+            list[counts[keywordIndex]++] = start;
+        });
+
+        for (int i = 0; i < anchorCount; i++) {
+            positions[i] = Arrays.copyOf(positions[i], counts[i]);
+        }
+        return positions;
+    }
+
+    /**
+     * Builds the section index from the heading occurrences of the anchor scan.
+     * A keyword occurrence is a heading only at the start of a line and when the
+     * line ends after it or continues with ':', '(' or '/'.
+     */
+    private SectionIndex indexSections(CharSequence text, int[][] positions, int[] counts) {
+        int count = 0;
+        int[] starts = new int[8];
+        DocumentSection[] sections = new DocumentSection[8];
+        for (int keyword = 0; keyword < positions.length; keyword++) {
+            DocumentSection section = headingSection[keyword];
+            if (section == null) {
+                continue;
+            }
+            int length = anchors.getKeyword(keyword).length();
+            int occurrences = counts != null ? counts[keyword] : positions[keyword].length;
+            for (int n = 0; n < occurrences; n++) {
+                int start = positions[keyword][n];
+                if (!isHeading(text, start, start + length)) {
+                    continue;
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    sections = Arrays.copyOf(sections, count * 2);
+                }
+                starts[count] = start;
+                sections[count++] = section;
+            }
+        }
+        return SectionIndex.build(text.length(), starts, sections, count);
+    }
+
+    private static boolean isHeading(CharSequence text, int start, int end) {
+        int before = start - 1;
+        while (before >= 0 && (text.charAt(before) == ' ' || text.charAt(before) == '\t')) {
+            before--;
+        }
+        if (before >= 0 && text.charAt(before) != '\n') {
+            return false;
+        }
+        int after = end;
+        while (after < text.length() && (text.charAt(after) == ' ' || text.charAt(after) == '\t')) {
+            after++;
+        }
+        if (after == text.length()) {
+            return true;
+        }
+        char next = text.charAt(after);
+        return next == '\n' || next == '\r' || next == ':' || next == '(' || next == '/';
+    }
+
+    /**
+     * Matches a rule, recording a sampled Flight Recorder event when recording is on
+     * @param starts Anchor occurrences of the rule; the first count are used
+     * @param scope Sections to stay within, or null to search the whole text
+     * @param flags Receives IN_SECTION and REACHED_END for the rule, or null
+     */
+    private void matchRule(FieldRule rule, CharSequence text, int[] starts, int count, SectionIndex scope,
+                           int[] spans, int[] flags, int index) {
+        if (count == 0) {
+            return;
+        }
+        FieldExtractionEvent event = new FieldExtractionEvent();
+        if (!event.isEnabled()) {
+            findValue(rule, text, starts, count, scope, spans, flags, index);
+            return;
+        }
+
+        long begin = System.nanoTime();
+        event.begin();
+        findValue(rule, text, starts, count, scope, spans, flags, index);
+        event.end();
+        event.field = rule.getName();
+        event.matched = spans[2 * index + 1] > spans[2 * index];
+        event.anchors = count;
+        event.commitSampled(System.nanoTime() - begin);
+    }
+
+    /**
+     * Tries the rule at each anchor occurrence in document order; the first
+     * occurrence that matches is the same match a full-text find() would return.
+     * With a section scope, the occurrences inside the rule's section are tried first,
+     * with the window cut at the section end; the others only when none of them matches.
+     * Stores the trimmed group bounds instead of copying the value out.
+     */
+    private void findValue(FieldRule rule, CharSequence text, int[] starts, int count, SectionIndex scope,
+                           int[] spans, int[] flags, int index) {
+        try {
+            Matcher m = rule.getPattern().matcher(text);
+            m.useTransparentBounds(true);
+            m.useAnchoringBounds(false);
+
+            if (scope != null && tryAnchors(rule, m, text, starts, count, scope, true, spans, flags, index)) {
+                if (flags != null) {
+                    flags[index] |= IN_SECTION;
+                }
+                return;
+            }
+            tryAnchors(rule, m, text, starts, count, scope, false, spans, flags, index);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            // Pattern matching failed, return empty
+        }
+    }
+
+    /**
+     * @param inSection true to try only occurrences inside the rule's section, false for the rest
+     * @param flags Receives REACHED_END when an attempt ran into the end of the text, which more text could change
+     * @return true when the search is over
+     */
+    private boolean tryAnchors(FieldRule rule, Matcher m, CharSequence text, int[] starts, int count,
+                               SectionIndex scope, boolean inSection, int[] spans, int[] flags, int index) {
+        for (int n = 0; n < count; n++) {
+            int start = starts[n];
+            int limit = rule.getWindow() == FieldRule.UNBOUNDED
+                    ? text.length()
+                    : (int) Math.min((long) start + rule.getWindow(), text.length());
+            if (scope != null) {
+                int range = scope.rangeAt(start);
+                boolean inside = range >= 0 && scope.getSection(range) == rule.getSection();
+                if (inside != inSection) {
+                    // e.g. "STATE" of the other vehicle while looking in the insured vehicle
+                    continue;
+                }
+                if (inside) {
+                    limit = Math.min(limit, scope.getEnd(range));
+                }
+            }
+            m.region(start, limit);
+            boolean matched = m.lookingAt();
+            if (flags != null && limit == text.length() && m.hitEnd()) {
+                flags[index] |= REACHED_END;
+            }
+            if (matched) {
+                int valueStart = m.start(rule.getGroupIndex());
+                int valueEnd = m.end(rule.getGroupIndex());
+                if (valueStart < 0) {
+                    return true;
+                }
+                // Same bounds as String.trim()
+                while (valueStart < valueEnd && text.charAt(valueStart) <= ' ') {
+                    valueStart++;
+                }
+                while (valueEnd > valueStart && text.charAt(valueEnd - 1) <= ' ') {
+                    valueEnd--;
+                }
+                spans[2 * index] = valueStart;
+                spans[2 * index + 1] = valueEnd;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Execution over a text that grows at its end.
+     * Each extend() scans only the new text for anchors (plus an overlap for labels cut by
+     * the previous end) and reruns only the rules whose value is not settled yet, and only when
+     * they have new anchor occurrences, their last attempt ran into the end of the text, or
+     * their section has just appeared. A value is settled once it was found without touching
+     * the end of the text, inside the rule's section if it has one. Reading a document in
+     * pieces thus costs about one pass instead of one pass per piece, and yields the values a
+     * single execute() over the final text would.
+     */
+    public final class Session {
+        private final Deadline deadline;
+        private final long matchBudgetNanos;
+        private final int[][] positions = new int[anchors.size()][];
+        private final int[] counts = new int[anchors.size()];
+        private final int[] spans = new int[rules.length * 2];
+        private final int[] flags = new int[rules.length];
+        // Anchor occurrences of each rule when it was last tried
+        private final int[] triedAnchors = new int[rules.length];
+        private final boolean[] settled = new boolean[rules.length];
+        private final List<String> timedOut = new ArrayList<>(0);
+        private SectionIndex sections = SectionIndex.NONE;
+        private int scannedTo;
+
+        private Session(Deadline deadline, long matchBudgetNanos) {
+            this.deadline = deadline;
+            this.matchBudgetNanos = matchBudgetNanos;
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = new int[4];
+            }
+        }
+
+        /**
+         * Finds values in the text added since the last call
+         * @param text Whole text so far; the earlier text must be unchanged
+         * @throws DeadlineExceededException If the claim deadline passes
+         */
+        public void extend(CharSequence text) {
+            int scanned = scannedTo;
+            anchors.scan(text, Math.max(0, scanned - longestAnchor + 1), text.length(), (keyword, start, end) -> {
+                // Occurrences ending in the text scanned before were found then
+                if (end <= scanned) {
+                    return;
+                }
+                int[] list = positions[keyword];
+                if (counts[keyword] == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    positions[keyword] = list;
+                }
+                list[counts[keyword]++] = start;
+            });
+            scannedTo = text.length();
+
+            SectionIndex before = sections;
+            sections = indexSections(text, positions, counts);
+            boolean guarded = deadline.isBounded() || matchBudgetNanos > 0;
+            for (int i = 0; i < rules.length; i++) {
+                FieldRule rule = rules[i];
+                int anchorCount = counts[ruleAnchor[i]];
+                boolean sectionAppeared = sections.contains(rule.getSection()) && !before.contains(rule.getSection());
+                if (settled[i] || (anchorCount == triedAnchors[i] && (flags[i] & REACHED_END) == 0 && !sectionAppeared)) {
+                    continue;
+                }
+                triedAnchors[i] = anchorCount;
+                spans[2 * i] = 0;
+                spans[2 * i + 1] = 0;
+                flags[i] = 0;
+                SectionIndex scope = sections.contains(rule.getSection()) ? sections : null;
+                if (!guarded) {
+                    matchRule(rule, text, positions[ruleAnchor[i]], anchorCount, scope, spans, flags, i);
+                } else {
+                    try {
+                        CharSequence guardedText = new DeadlineCharSequence(text, deadline.within(matchBudgetNanos));
+                        matchRule(rule, guardedText, positions[ruleAnchor[i]], anchorCount, scope, spans, flags, i);
+                    } catch (DeadlineExceededException e) {
+                        deadline.check("field extraction (" + rule.getName() + ")");
+                        spans[2 * i] = 0;
+                        spans[2 * i + 1] = 0;
+                        timedOut.add(rule.getName());
+                        settled[i] = true;
+                        continue;
+                    }
+                }
+                boolean found = spans[2 * i + 1] > spans[2 * i];
+                settled[i] = found && (flags[i] & REACHED_END) == 0
+                        && (rule.getSection() == DocumentSection.ANY || (flags[i] & IN_SECTION) != 0);
+            }
+        }
+
+        /**
+         * @param text Text passed to the last extend(), or an unchanged copy of it
+         * @return Values found so far
+         */
+        public Result result(CharSequence text) {
+            return new Result(text, spans.clone(), new ArrayList<>(timedOut), sections);
+        }
+    }
+
+    /**
+     * Values produced by one plan execution
+     */
+    public final class Result {
+        private final CharSequence text;
+        private final int[] spans;
+        private final List<String> timedOutRules;
+        private final SectionIndex sections;
+
+        private Result(CharSequence text, int[] spans, List<String> timedOutRules, SectionIndex sections) {
+            this.text = text;
+            this.spans = spans;
+            this.timedOutRules = timedOutRules;
+            this.sections = sections;
+        }
+
+        /**
+         * @return Sections found in the document
+         */
+        public SectionIndex getSections() {
+            return sections;
+        }
+
+        /**
+         * @return Names of the rules whose match was aborted by the match budget
+         */
+        public List<String> getTimedOutRules() {
+            return timedOutRules;
+        }
+
+        /**
+         * @param ruleName Name of the rule
+         * @return Trimmed value, or empty string when the rule did not match or is not part of this plan
+         */
+        public String get(String ruleName) {
+            Integer index = ruleIndex.get(ruleName);
+            if (index == null) {
+                return "";
+            }
+            return text.subSequence(spans[2 * index], spans[2 * index + 1]).toString();
+        }
+
+        /**
+         * View of the value without copying it; only valid while the text is unchanged
+         * @param ruleName Name of the rule
+         * @return Trimmed value, empty when the rule did not match or is not part of this plan
+         */
+        public CharSequence slice(String ruleName) {
+            Integer index = ruleIndex.get(ruleName);
+            if (index == null) {
+                return "";
+            }
+            return CharBuffer.wrap(text, spans[2 * index], spans[2 * index + 1]);
+        }
+    }
+}
@@ -1,152 +1,388 @@
 package org.insurance.claims.ExtractedFields;
 
 
+import org.insurance.claims.extractor.TextNormalizer;
 import org.insurance.claims.model.ExtractedFields;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class FieldExtractor {
 
+    /** Bump whenever a rule change can alter extracted values (invalidates cached results) */
+    public static final String VERSION = "4";
+
+    /** Time one field pattern may spend on a document before it is abandoned */
+    public static final long DEFAULT_MATCH_BUDGET_MILLIS = 200;
+
+    private static final String PHONE_PATTERN = "\\(?([0-9]{3})\\)?[-\\s]?([0-9]{3})[-\\s]?([0-9]{4})";
+
+    /**
+     * Rules of the printed ACORD 2 Automobile Loss Notice: every label and section heading
+     * is located in a single pass over the text, and each rule searches the ACORD section
+     * its label belongs to first
+     */
+    private static final List<FieldRule> ACORD_2_RULES = Arrays.asList(
+            // Policy Information
+            new FieldRule("policyNumber",
+                    "POLICY NUMBER[:\\s]*([A-Z0-9-]+)", 1, DocumentSection.POLICY),
+            new FieldRule("policyholderName",
+                    "NAME OF INSURED[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|DATE)", 1, DocumentSection.INSURED),
+            new FieldRule("naicCode",
+                    "CARRIER NAIC CODE[:\\s]*([0-9]+)", 1, DocumentSection.POLICY),
+            new FieldRule("lineOfBusiness",
+                    "LINE OF BUSINESS[:\\s]*([A-Za-z\\s]+?)(?:\\n|$)", 1, DocumentSection.POLICY),
+
+            // Incident Information
+            new FieldRule("dateOfLoss",
+                    "DATE OF LOSS[^\\n]*?([0-9]{1,2}[/-][0-9]{1,2}[/-][0-9]{2,4})", 1, DocumentSection.POLICY),
+            new FieldRule("timeOfLoss",
+                    "TIME[:\\s]*([0-9]{1,2}:[0-9]{2}\\s*(?:AM|PM)?)", 1, DocumentSection.POLICY),
+            new FieldRule("street",
+                    "STREET[:\\s]*([^\\n]+?)(?:CITY|\\n)", 1, DocumentSection.LOSS),
+            new FieldRule("cityStateZip",
+                    "CITY, STATE, ZIP[:\\s]*([^\\n]+?)(?:COUNTRY|\\n)", 1, DocumentSection.LOSS),
+            new FieldRule("description",
+                    "DESCRIPTION OF ACCIDENT[^\\n]*\\n([^\\n]+(?:\\n[^A-Z][^\\n]+)*)", 1, FieldRule.UNBOUNDED,
+                    DocumentSection.LOSS),
+            new FieldRule("reportNumber",
+                    "REPORT NUMBER[:\\s]*([A-Z0-9-]+)", 1, DocumentSection.LOSS),
+            new FieldRule("policeDepartmentContacted",
+                    "POLICE OR FIRE DEPARTMENT CONTACTED[:\\s]*([^\\n]+)", 1, DocumentSection.LOSS),
+
+            // Involved Parties
+            new FieldRule("driverName",
+                    "DRIVER'S NAME AND ADDRESS[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|PHONE|$)", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("ownerName",
+                    "OWNER'S NAME AND ADDRESS[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|PHONE|$)", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("driverPhone",
+                    "DRIVER'S NAME[^\\n]*(?:\\n[^\\n]*){1,3}PHONE[^\\n]*" + PHONE_PATTERN, 0, FieldRule.UNBOUNDED,
+                    DocumentSection.INSURED_VEHICLE),
+
+            // Asset Details
+            new FieldRule("vin",
+                    "V\\.I\\.N\\.?[:\\s]*([A-HJ-NPR-Z0-9]{17})", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("year",
+                    "YEAR[:\\s]*([12][0-9]{3})", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("make",
+                    "MAKE[:\\s]*([A-Za-z]+)", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("model",
+                    "MODEL[:\\s]*([A-Za-z0-9\\s]+?)(?:BODY|TYPE|\\n)", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("plateNumber",
+                    "PLATE NUMBER[:\\s]*([A-Z0-9]+)", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("state",
+                    "PLATE NUMBER[^\\n]*STATE[:\\s]*([A-Z]{2})", 1, DocumentSection.INSURED_VEHICLE),
+            new FieldRule("damageDescription",
+                    "DESCRIBE DAMAGE[^\\n]*\\n([^\\n]+(?:\\n[^A-Z][^\\n]+)*)", 1, FieldRule.UNBOUNDED,
+                    DocumentSection.INSURED_VEHICLE),
+            new FieldRule("estimateAmount",
+                    "ESTIMATE AMOUNT[:\\s]*\\$?([0-9,]+(?:\\.[0-9]{2})?)", 1, DocumentSection.INSURED_VEHICLE),
+
+            // Other Fields
+            new FieldRule("agencyName",
+                    "AGENCY[\\s\\n]+NAME[:\\s]*([^\\n]+)", 1, DocumentSection.AGENCY),
+            new FieldRule("agencyContact",
+                    "CONTACT[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|PHONE|$)", 1, DocumentSection.AGENCY)
+    );
+
+    /**
+     * Rules of carrier forms printed as one "Label: value" line per field; values never
+     * continue onto the next line, so the patterns stop at the end of the label's line
+     */
+    private static final List<FieldRule> LABELLED_RULES = Arrays.asList(
+            // Policy Information
+            new FieldRule("policyNumber", "POLICY NUMBER:[ \\t]*([A-Z0-9-]+)", 1),
+            new FieldRule("policyholderName", "INSURED NAME:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("naicCode", "NAIC CODE:[ \\t]*([0-9]+)", 1),
+            new FieldRule("lineOfBusiness", "LINE OF BUSINESS:[ \\t]*([^\\n]+)", 1),
+
+            // Incident Information
+            new FieldRule("dateOfLoss", "DATE OF LOSS:[ \\t]*([0-9]{1,2}[/-][0-9]{1,2}[/-][0-9]{2,4})", 1),
+            new FieldRule("timeOfLoss", "TIME OF LOSS:[ \\t]*([0-9]{1,2}:[0-9]{2}\\s*(?:AM|PM)?)", 1),
+            new FieldRule("street", "LOSS STREET:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("cityStateZip", "CITY STATE ZIP:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("description", "DESCRIPTION OF ACCIDENT:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("reportNumber", "REPORT NUMBER:[ \\t]*([A-Z0-9-]+)", 1),
+            new FieldRule("policeDepartmentContacted", "POLICE DEPARTMENT:[ \\t]*([^\\n]+)", 1),
+
+            // Involved Parties
+            new FieldRule("driverName", "DRIVER NAME:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("ownerName", "OWNER NAME:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("driverPhone", "DRIVER PHONE:[ \\t]*(" + PHONE_PATTERN + ")", 1),
+
+            // Asset Details
+            new FieldRule("vin", "VIN:[ \\t]*([A-HJ-NPR-Z0-9]{17})", 1),
+            new FieldRule("year", "VEHICLE YEAR:[ \\t]*([12][0-9]{3})", 1),
+            new FieldRule("make", "VEHICLE MAKE:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("model", "VEHICLE MODEL:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("plateNumber", "PLATE NUMBER:[ \\t]*([A-Z0-9]+)", 1),
+            new FieldRule("state", "PLATE STATE:[ \\t]*([A-Z]{2})", 1),
+            new FieldRule("damageDescription", "DAMAGE DESCRIPTION:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("estimateAmount", "ESTIMATE AMOUNT:[ \\t]*\\$?([0-9,]+(?:\\.[0-9]{2})?)", 1),
+
+            // Other Fields
+            new FieldRule("agencyName", "AGENCY NAME:[ \\t]*([^\\n]+)", 1),
+            new FieldRule("agencyContact", "CONTACT NAME:[ \\t]*([^\\n]+)", 1)
+    );
+
+    /** Used for documents that match no template; the ACORD 2 rules are the most tolerant set */
+    public static final FormTemplate GENERIC_TEMPLATE =
+            new FormTemplate("Generic", Collections.emptyList(), ACORD_2_RULES);
+
+    /** Plans are compiled on the first document of each layout and shared by the later ones */
+    private static final TemplateSelector TEMPLATES = new TemplateSelector(Arrays.asList(
+            new FormTemplate("ACORD 2 Automobile Loss Notice",
+                    Arrays.asList("AUTOMOBILE LOSS NOTICE", "LOCATION OF LOSS"), ACORD_2_RULES),
+            new FormTemplate("Labelled Loss Notice",
+                    Arrays.asList("LOSS NOTICE", "INSURED NAME:", "DATE OF LOSS:"), LABELLED_RULES)
+    ), GENERIC_TEMPLATE);
+
+    private final long matchBudgetNanos;
+
+    public FieldExtractor() {
+        this(DEFAULT_MATCH_BUDGET_MILLIS);
+    }
+
+    /**
+     * @param matchBudgetMillis Time one field pattern may spend on a document, or 0 for no limit
+     */
+    public FieldExtractor(long matchBudgetMillis) {
+        this.matchBudgetNanos = matchBudgetMillis * 1_000_000L;
+    }
+
+    public ExtractedFields extractFields(CharSequence text) {
+        return extractFields(text, Deadline.NONE);
+    }
+
+    public ExtractedFields extractFields(CharSequence text, Deadline deadline) {
+        return extractFields(text, selectTemplate(text), deadline);
+    }
+
+    /**
+     * Recognizes the layout of a document from the start of its first page
+     * @param text Document text, or at least its first page
+     * @return Matching template, or GENERIC_TEMPLATE
+     */
+    public FormTemplate selectTemplate(CharSequence text) {
+        return TEMPLATES.select(text);
+    }
+
+    /**
+     * @return Templates that can be selected, without the generic fallback
+     */
+    public List<FormTemplate> getTemplates() {
+        return TEMPLATES.getTemplates();
+    }
+
+    /**
+     * Extracts all fields with the rules of one template, giving up on any pattern that exceeds
+     * the match budget. Abandoned patterns are recorded on the result with
+     * ClaimRouter.REASON_EXTRACTION_TIMEOUT.
+     * Values are cleaned straight from slices of the text; only cleaned values become Strings.
+     * @param text Document text
+     * @param template Layout of the document, see selectTemplate()
+     * @param deadline Deadline of the whole claim
+     * @return Extracted fields
+     * @throws DeadlineExceededException If the claim deadline passes
+     */
+    public ExtractedFields extractFields(CharSequence text, FormTemplate template, Deadline deadline) {
+        return toFields(template.getPlan().execute(text, deadline, matchBudgetNanos), text);
+    }
+
+    /**
+     * Starts extracting a document that is read page by page, see PageByPage
+     * @param deadline Deadline of the whole claim
+     * @return Extraction to feed with the text after each page
+     */
+    public PageByPage extractPages(Deadline deadline) {
+        return new PageByPage(deadline);
+    }
 
-    public ExtractedFields extractFields(String text) {
+    /**
+     * @param values Plan values
+     * @param text Document text the claim type is determined from, or null to leave the default
+     */
+    private ExtractedFields toFields(ExtractionPlan.Result values, CharSequence text) {
         ExtractedFields fields = new ExtractedFields();
+        if (!values.getTimedOutRules().isEmpty()) {
+            fields.setTimeout(ClaimRouter.REASON_EXTRACTION_TIMEOUT,
+                    "patterns for " + String.join(", ", values.getTimedOutRules())
+                            + " exceeded the " + matchBudgetNanos / 1_000_000L + " ms match budget");
+        }
 
         // Extract Policy Information
-        extractPolicyInfo(text, fields);
+        extractPolicyInfo(values, fields);
 
         // Extract Incident Information
-        extractIncidentInfo(text, fields);
+        extractIncidentInfo(values, fields);
 
         // Extract Involved Parties
-        extractInvolvedParties(text, fields);
+        extractInvolvedParties(values, fields);
 
         // Extract Asset Details
-        extractAssetDetails(text, fields);
+        extractAssetDetails(values, fields);
 
         // Extract Other Fields
-        extractOtherFields(text, fields);
+        extractOtherFields(text, values, fields);
 
         return fields;
     }
 
-    private void extractPolicyInfo(String text, ExtractedFields fields) {
+    /**
+     * Extraction of a document whose text arrives one page at a time.
+     * The template is selected once, as soon as the fingerprint prefix has been read; after
+     * that each page only runs the rules still without a value over the new text (see
+     * ExtractionPlan.Session), so a document costs about one extraction pass however many
+     * pages are read. Not thread-safe; one per document.
+     */
+    public final class PageByPage {
+        private final Deadline deadline;
+        private FormTemplate template;
+        private ExtractionPlan.Session session;
+
+        private PageByPage(Deadline deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Extracts from the text added since the last call
+         * @param textSoFar Text of all pages read so far
+         * @return Fields found so far, without the claim type; null while the fingerprint prefix is incomplete
+         * @throws DeadlineExceededException If the claim deadline passes
+         */
+        public ExtractedFields update(CharSequence textSoFar) {
+            if (template == null) {
+                if (textSoFar.length() < TemplateSelector.FINGERPRINT_CHARS) {
+                    return null;
+                }
+                start(textSoFar);
+            }
+            session.extend(textSoFar);
+            return toFields(session.result(textSoFar), null);
+        }
+
+        /**
+         * @param text Complete text that was read
+         * @return Extracted fields
+         * @throws DeadlineExceededException If the claim deadline passes
+         */
+        public ExtractedFields finish(String text) {
+            if (template == null) {
+                start(text);
+            }
+            session.extend(text);
+            return toFields(session.result(text), text);
+        }
+
+        /**
+         * @return Template of the document, or null before it is known
+         */
+        public FormTemplate getTemplate() {
+            return template;
+        }
+
+        private void start(CharSequence text) {
+            template = selectTemplate(text);
+            session = template.getPlan().newSession(deadline, matchBudgetNanos);
+        }
+    }
+
+    private void extractPolicyInfo(ExtractionPlan.Result values, ExtractedFields fields) {
         // Policy Number - looking for pattern after "POLICY NUMBER"
-        String policyNumber = extractWithPattern(text,
-                "POLICY NUMBER[:\\s]*([A-Z0-9-]+)", 1);
+        String policyNumber = values.get("policyNumber");
         fields.getPolicyInfo().setPolicyNumber(policyNumber);
 
         // Policyholder Name - after "NAME OF INSURED"
-        String policyholderName = extractWithPattern(text,
-                "NAME OF INSURED[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|DATE)", 1);
+        CharSequence policyholderName = values.slice("policyholderName");
         fields.getPolicyInfo().setPolicyholderName(cleanValue(policyholderName));
 
         // NAIC Code
-        String naicCode = extractWithPattern(text,
-                "CARRIER NAIC CODE[:\\s]*([0-9]+)", 1);
+        String naicCode = values.get("naicCode");
         fields.getPolicyInfo().setNaicCode(naicCode);
 
         // Line of Business
-        String lineOfBusiness = extractWithPattern(text,
-                "LINE OF BUSINESS[:\\s]*([A-Za-z\\s]+?)(?:\\n|$)", 1);
+        CharSequence lineOfBusiness = values.slice("lineOfBusiness");
         fields.getPolicyInfo().setLineOfBusiness(cleanValue(lineOfBusiness));
     }
 
-    private void extractIncidentInfo(String text, ExtractedFields fields) {
+    private void extractIncidentInfo(ExtractionPlan.Result values, ExtractedFields fields) {
         // Date of Loss
-        String dateOfLoss = extractWithPattern(text,
-                "DATE OF LOSS[^\\n]*?([0-9]{1,2}[/-][0-9]{1,2}[/-][0-9]{2,4})", 1);
+        String dateOfLoss = values.get("dateOfLoss");
         fields.getIncidentInfo().setDateOfLoss(dateOfLoss);
 
         // Time of Loss
-        String timeOfLoss = extractWithPattern(text,
-                "TIME[:\\s]*([0-9]{1,2}:[0-9]{2}\\s*(?:AM|PM)?)", 1);
+        String timeOfLoss = values.get("timeOfLoss");
         fields.getIncidentInfo().setTimeOfLoss(timeOfLoss);
 
         // Location - Street, City, State, ZIP
-        String street = extractWithPattern(text,
-                "STREET[:\\s]*([^\\n]+?)(?:CITY|\\n)", 1);
-        String cityStateZip = extractWithPattern(text,
-                "CITY, STATE, ZIP[:\\s]*([^\\n]+?)(?:COUNTRY|\\n)", 1);
-
-        String location = (street + ", " + cityStateZip).trim();
-        if (location.length() > 2) {
-            fields.getIncidentInfo().setLocation(cleanValue(location));
-        }
+        String street = values.get("street");
+        String cityStateZip = values.get("cityStateZip");
+
+        // Either part may be missing, e.g. forms without a street line
+        String location = street.isEmpty() || cityStateZip.isEmpty()
+                ? street + cityStateZip
+                : street + ", " + cityStateZip;
+        fields.getIncidentInfo().setLocation(cleanValue(location));
 
         // Description of Accident
-        String description = extractWithPattern(text,
-                "DESCRIPTION OF ACCIDENT[^\\n]*\\n([^\\n]+(?:\\n[^A-Z][^\\n]+)*)", 1);
+        CharSequence description = values.slice("description");
         fields.getIncidentInfo().setDescription(cleanValue(description));
 
         // Report Number
-        String reportNumber = extractWithPattern(text,
-                "REPORT NUMBER[:\\s]*([A-Z0-9-]+)", 1);
+        String reportNumber = values.get("reportNumber");
         fields.getIncidentInfo().setReportNumber(reportNumber);
 
         // Police Department Contacted
-        String policeContacted = extractWithPattern(text,
-                "POLICE OR FIRE DEPARTMENT CONTACTED[:\\s]*([^\\n]+)", 1);
+        CharSequence policeContacted = values.slice("policeDepartmentContacted");
         fields.getIncidentInfo().setPoliceDepartmentContacted(cleanValue(policeContacted));
     }
 
-    private void extractInvolvedParties(String text, ExtractedFields fields) {
+    private void extractInvolvedParties(ExtractionPlan.Result values, ExtractedFields fields) {
         // Driver's Name
-        String driverName = extractWithPattern(text,
-                "DRIVER'S NAME AND ADDRESS[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|PHONE|$)", 1);
+        CharSequence driverName = values.slice("driverName");
         fields.getInvolvedParties().setDriverName(cleanValue(driverName));
 
         // Owner's Name
-        String ownerName = extractWithPattern(text,
-                "OWNER'S NAME AND ADDRESS[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|PHONE|$)", 1);
+        CharSequence ownerName = values.slice("ownerName");
         fields.getInvolvedParties().setOwnerName(cleanValue(ownerName));
 
         // Extract phone numbers if available
-        String phonePattern = "\\(?([0-9]{3})\\)?[-\\s]?([0-9]{3})[-\\s]?([0-9]{4})";
-        String driverPhone = extractWithPattern(text,
-                "DRIVER'S NAME[^\\n]*(?:\\n[^\\n]*){1,3}PHONE[^\\n]*" + phonePattern, 0);
+        CharSequence driverPhone = values.slice("driverPhone");
         fields.getInvolvedParties().setDriverPhone(cleanValue(driverPhone));
     }
 
-    private void extractAssetDetails(String text, ExtractedFields fields) {
+    private void extractAssetDetails(ExtractionPlan.Result values, ExtractedFields fields) {
         // VIN
-        String vin = extractWithPattern(text,
-                "V\\.I\\.N\\.?[:\\s]*([A-HJ-NPR-Z0-9]{17})", 1);
+        String vin = values.get("vin");
         fields.getAssetDetails().setVin(vin);
 
         // Year
-        String year = extractWithPattern(text,
-                "YEAR[:\\s]*([12][0-9]{3})", 1);
+        String year = values.get("year");
         fields.getAssetDetails().setYear(year);
 
         // Make
-        String make = extractWithPattern(text,
-                "MAKE[:\\s]*([A-Za-z]+)", 1);
+        CharSequence make = values.slice("make");
         fields.getAssetDetails().setMake(cleanValue(make));
 
         // Model
-        String model = extractWithPattern(text,
-                "MODEL[:\\s]*([A-Za-z0-9\\s]+?)(?:BODY|TYPE|\\n)", 1);
+        CharSequence model = values.slice("model");
         fields.getAssetDetails().setModel(cleanValue(model));
 
         // Plate Number
-        String plateNumber = extractWithPattern(text,
-                "PLATE NUMBER[:\\s]*([A-Z0-9]+)", 1);
+        String plateNumber = values.get("plateNumber");
         fields.getAssetDetails().setPlateNumber(plateNumber);
 
         // State
-        String state = extractWithPattern(text,
-                "PLATE NUMBER[^\\n]*STATE[:\\s]*([A-Z]{2})", 1);
+        String state = values.get("state");
         fields.getAssetDetails().setState(state);
 
         // Damage Description
-        String damageDesc = extractWithPattern(text,
-                "DESCRIBE DAMAGE[^\\n]*\\n([^\\n]+(?:\\n[^A-Z][^\\n]+)*)", 1);
+        CharSequence damageDesc = values.slice("damageDescription");
         fields.getAssetDetails().setDamageDescription(cleanValue(damageDesc));
 
         // Estimated Damage Amount
-        String estimateStr = extractWithPattern(text,
-                "ESTIMATE AMOUNT[:\\s]*\\$?([0-9,]+(?:\\.[0-9]{2})?)", 1);
+        String estimateStr = values.get("estimateAmount");
         if (!estimateStr.isEmpty()) {
             try {
                 // Remove commas and parse
@@ -159,63 +395,36 @@ public class FieldExtractor {
         }
     }
 
-    private void extractOtherFields(String text, ExtractedFields fields) {
+    private void extractOtherFields(CharSequence text, ExtractionPlan.Result values, ExtractedFields fields) {
         // Agency Name
-        String agencyName = extractWithPattern(text,
-                "AGENCY[\\s\\n]+NAME[:\\s]*([^\\n]+)", 1);
+        CharSequence agencyName = values.slice("agencyName");
         fields.getOtherFields().setAgencyName(cleanValue(agencyName));
 
         // Agency Contact
-        String agencyContact = extractWithPattern(text,
-                "CONTACT[^\\n]*\\n([A-Za-z\\s,\\.]+?)(?:\\n|PHONE|$)", 1);
+        CharSequence agencyContact = values.slice("agencyContact");
         fields.getOtherFields().setAgencyContact(cleanValue(agencyContact));
 
         // Check for injury-related content
-        if (text.toLowerCase().contains("injured") ||
-                text.toLowerCase().contains("injury") ||
-                text.toLowerCase().contains("extent of injury")) {
-            fields.getOtherFields().setClaimType("Automobile - Injury");
-        } else {
-            fields.getOtherFields().setClaimType("Automobile - Property Damage");
+        if (text != null) {
+            fields.getOtherFields().setClaimType(determineClaimType(text));
         }
     }
 
-
-    private String extractWithPattern(String text, String pattern, int groupIndex) {
-        try {
-            Pattern p = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-            Matcher m = p.matcher(text);
-
-            if (m.find()) {
-                String value = m.group(groupIndex);
-                return value != null ? value.trim() : "";
-            }
-        } catch (Exception e) {
-            // Pattern matching failed, return empty
+    /**
+     * Classifies the claim from the document content
+     * @param text Document text (or form values)
+     * @return "Automobile - Injury" or "Automobile - Property Damage"
+     */
+    public String determineClaimType(CharSequence text) {
+        if (KeywordMatcher.getDefault().matches(text, KeywordMatcher.INJURY_DOCUMENT)) {
+            return "Automobile - Injury";
         }
-        return "";
+        return "Automobile - Property Damage";
     }
 
 
-    private String cleanValue(String value) {
-        if (value == null || value.isEmpty()) {
-            return null;
-        }
-
-        // Remove multiple spaces
-        value = value.replaceAll("\\s+", " ").trim();
-
-        // Remove trailing colons and commas
-        value = value.replaceAll("[,:]+$", "").trim();
-
-        // Return null for empty or placeholder values
-        if (value.isEmpty() ||
-                value.equals("-") ||
-                value.equals("_") ||
-                value.matches("^[\\s._-]+$")) {
-            return null;
-        }
-
-        return value;
+    private String cleanValue(CharSequence value) {
+        // Collapses whitespace, drops trailing colons/commas and placeholder values in one pass
+        return TextNormalizer.normalizeValue(value);
     }
 }
@@ -0,0 +1,119 @@
+package org.insurance.claims.ExtractedFields;
+
+import java.util.regex.Pattern;
+
+/**
+ * A single value pattern of the extraction plan.
+ * Every pattern starts with a literal label ("POLICY NUMBER", "V.I.N", ...) which is
+ * used as the anchor; the regex itself only runs in the window after that anchor.
+ * A rule may name the form section its label belongs to; when the document has that
+ * section, the anchors inside it are tried first and the window ends with the section.
+ * Anchors elsewhere are only tried when none inside the section matches.
+ */
+public final class FieldRule {
+
+    /** Window size for patterns that may span many lines */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    /** Default window: enough for a label and the rest of its line */
+    public static final int DEFAULT_WINDOW = 512;
+
+    private static final String META_CHARS = "[](){}.*+?^$|\\";
+
+    private final String name;
+    private final String anchor;
+    private final Pattern pattern;
+    private final int groupIndex;
+    private final int window;
+    private final DocumentSection section;
+
+    public FieldRule(String name, String regex, int groupIndex) {
+        this(name, regex, groupIndex, DEFAULT_WINDOW, DocumentSection.ANY);
+    }
+
+    public FieldRule(String name, String regex, int groupIndex, int window) {
+        this(name, regex, groupIndex, window, DocumentSection.ANY);
+    }
+
+    public FieldRule(String name, String regex, int groupIndex, DocumentSection section) {
+        this(name, regex, groupIndex, DEFAULT_WINDOW, section);
+    }
+
+    /**
+     * @param name Rule name
+     * @param regex Pattern starting with a literal label
+     * @param groupIndex Group holding the value
+     * @param window Characters after the anchor the pattern may read, or UNBOUNDED
+     * @param section Section the label belongs to, or DocumentSection.ANY
+     */
+    public FieldRule(String name, String regex, int groupIndex, int window, DocumentSection section) {
+        this.name = name;
+        this.pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+        this.anchor = leadingLiteral(regex);
+        this.groupIndex = groupIndex;
+        this.window = window;
+        this.section = section;
+
+        if (anchor.isEmpty()) {
+            throw new IllegalArgumentException("Pattern for '" + name + "' must start with a literal label: " + regex);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAnchor() {
+        return anchor;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public int getGroupIndex() {
+        return groupIndex;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public DocumentSection getSection() {
+        return section;
+    }
+
+    /**
+     * Returns the literal text every match of the regex must start with
+     * @param regex Regular expression
+     * @return Literal prefix (may be empty)
+     */
+    static String leadingLiteral(String regex) {
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && META_CHARS.indexOf(regex.charAt(i + 1)) >= 0) {
+                    literal.append(regex.charAt(i + 1));
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            if (c == '?' || c == '*' || c == '{') {
+                // Quantifier makes the previous character optional
+                if (literal.length() > 0) {
+                    literal.setLength(literal.length() - 1);
+                }
+                break;
+            }
+            if (META_CHARS.indexOf(c) >= 0) {
+                break;
+            }
+            literal.append(c);
+            i++;
+        }
+        return literal.toString();
+    }
+}
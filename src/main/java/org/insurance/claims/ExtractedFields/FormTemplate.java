@@ -0,0 +1,80 @@
+package org.insurance.claims.ExtractedFields;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One printed loss-notice layout and the field rules that apply to it.
+ * A template is recognized by marker phrases that must all occur at the top of the
+ * first page. Its extraction plan is compiled the first time a document of that layout
+ * is seen and then shared by every later one.
+ */
+public final class FormTemplate {
+
+    private final String name;
+    private final List<String> markers;
+    private final List<FieldRule> rules;
+    private volatile ExtractionPlan plan;
+
+    /**
+     * @param name Template name, reported in statistics
+     * @param markers Phrases that must all occur at the top of the first page (matched case-insensitively);
+     *                none for the fallback template
+     * @param rules Field rules of this layout
+     */
+    public FormTemplate(String name, List<String> markers, List<FieldRule> rules) {
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("Template '" + name + "' has no rules");
+        }
+        this.name = name;
+        this.markers = Collections.unmodifiableList(new ArrayList<>(markers));
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    public FormTemplate(String name, List<String> markers, FieldRule... rules) {
+        this(name, markers, Arrays.asList(rules));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getMarkers() {
+        return markers;
+    }
+
+    public List<FieldRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return true once the plan has been compiled
+     */
+    public boolean isCompiled() {
+        return plan != null;
+    }
+
+    /**
+     * @return Compiled plan of this template's rules, built on first use
+     */
+    public ExtractionPlan getPlan() {
+        ExtractionPlan compiled = plan;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = plan;
+                if (compiled == null) {
+                    compiled = new ExtractionPlan(rules);
+                    plan = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,176 @@
+package org.insurance.claims.ExtractedFields;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keyword categories (fraud, injury, ...) compiled into one Aho-Corasick automaton.
+ * A single case-insensitive pass over the text reports every category that occurs,
+ * however many keywords are configured. Keywords match whole words; a keyword ending
+ * in '*' also matches as a word prefix. Immutable and safe to share between threads.
+ */
+public final class KeywordMatcher {
+
+    public static final String FRAUD = "fraud";
+    public static final String INJURY = "injury";
+    public static final String INJURY_DOCUMENT = "injury.document";
+
+    private static final String DEFAULT_RESOURCE = "/keywords/indicators.properties";
+
+    private final AhoCorasick automaton;
+    private final String[] categories;
+    // Per automaton keyword: category index and whether it may be followed by more letters
+    private final int[] keywordCategory;
+    private final boolean[] keywordPrefix;
+    private final String version;
+
+    private KeywordMatcher(Properties properties, String version) {
+        Set<String> names = new TreeSet<>(properties.stringPropertyNames());
+        this.categories = names.toArray(new String[0]);
+        this.version = version;
+
+        List<String> keywords = new ArrayList<>();
+        List<Integer> categoryOf = new ArrayList<>();
+        List<Boolean> prefixOf = new ArrayList<>();
+        for (int c = 0; c < categories.length; c++) {
+            for (String entry : properties.getProperty(categories[c]).split(",")) {
+                String keyword = entry.trim();
+                boolean prefix = keyword.endsWith("*");
+                if (prefix) {
+                    keyword = keyword.substring(0, keyword.length() - 1).trim();
+                }
+                if (keyword.isEmpty()) {
+                    continue;
+                }
+                keywords.add(keyword);
+                categoryOf.add(c);
+                prefixOf.add(prefix);
+            }
+        }
+
+        this.automaton = AhoCorasick.compile(keywords);
+        this.keywordCategory = new int[keywords.size()];
+        this.keywordPrefix = new boolean[keywords.size()];
+        for (int i = 0; i < keywords.size(); i++) {
+            keywordCategory[i] = categoryOf.get(i);
+            keywordPrefix[i] = prefixOf.get(i);
+        }
+    }
+
+    /**
+     * The keyword set shared by router and extractor: the file named by the
+     * claims.keywords system property, or the bundled indicators.properties
+     * @return Shared matcher
+     */
+    public static KeywordMatcher getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Compiles a keyword set
+     * @param in Properties content, one category per key
+     * @return Compiled matcher
+     * @throws IOException If the content cannot be read
+     */
+    public static KeywordMatcher load(InputStream in) throws IOException {
+        byte[] content = in.readAllBytes();
+        Properties properties = new Properties();
+        properties.load(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+        return new KeywordMatcher(properties, fingerprint(content));
+    }
+
+    /**
+     * Finds every category with at least one keyword in the text
+     * @param text Text to scan; null is treated as empty
+     * @return Matched category names
+     */
+    public Set<String> match(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return Collections.emptySet();
+        }
+        boolean[] found = new boolean[categories.length];
+        automaton.scan(text, (keywordIndex, start, end) -> {
+            if (isWordStart(text, start) && (keywordPrefix[keywordIndex] || isWordEnd(text, end))) {
+                found[keywordCategory[keywordIndex]] = true;
+            }
+        });
+
+        Set<String> matched = new LinkedHashSet<>();
+        for (int c = 0; c < categories.length; c++) {
+            if (found[c]) {
+                matched.add(categories[c]);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @param text Text to scan; null is treated as empty
+     * @param category Category name
+     * @return true if any keyword of the category occurs in the text
+     */
+    public boolean matches(CharSequence text, String category) {
+        return match(text).contains(category);
+    }
+
+    /**
+     * @return Short digest of the keyword configuration, for cache keys
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    private static boolean isWordStart(CharSequence text, int start) {
+        return start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1));
+    }
+
+    private static boolean isWordEnd(CharSequence text, int end) {
+        return end == text.length() || !Character.isLetterOrDigit(text.charAt(end));
+    }
+
+    private static String fingerprint(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class DefaultHolder {
+        static final KeywordMatcher INSTANCE = loadDefault();
+
+        private static KeywordMatcher loadDefault() {
+            String override = System.getProperty("claims.keywords");
+            try (InputStream in = override != null
+                    ? Files.newInputStream(Paths.get(override))
+                    : KeywordMatcher.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing keyword list: " + DEFAULT_RESOURCE);
+                }
+                return load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read keyword list: "
+                        + (override != null ? override : DEFAULT_RESOURCE), e);
+            }
+        }
+    }
+}
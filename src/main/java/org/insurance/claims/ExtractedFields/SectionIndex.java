@@ -0,0 +1,117 @@
+package org.insurance.claims.ExtractedFields;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Offsets of the sections found in one document.
+ * Built from the heading occurrences of the anchor scan, so it costs no extra pass
+ * over the text. Consecutive headings of the same section (e.g. "LOCATION OF LOSS"
+ * followed by "DESCRIPTION OF ACCIDENT") form one range.
+ */
+public final class SectionIndex {
+
+    /** Index of a document without recognizable headings */
+    static final SectionIndex NONE = new SectionIndex(new int[0], new DocumentSection[0], 0);
+
+    // Range i is [starts[i], starts[i + 1]), the last one ends at the text length
+    private final int[] starts;
+    private final DocumentSection[] sections;
+    private final int textLength;
+    private final Set<DocumentSection> present = EnumSet.noneOf(DocumentSection.class);
+
+    private SectionIndex(int[] starts, DocumentSection[] sections, int textLength) {
+        this.starts = starts;
+        this.sections = sections;
+        this.textLength = textLength;
+        present.addAll(Arrays.asList(sections));
+    }
+
+    /**
+     * Builds the index from heading occurrences
+     * @param textLength Length of the document text
+     * @param headingStarts Start offsets of the headings, any order
+     * @param headingSections Section of each heading
+     * @param count Number of headings
+     * @return Section index
+     */
+    static SectionIndex build(int textLength, int[] headingStarts, DocumentSection[] headingSections, int count) {
+        if (count == 0) {
+            return NONE;
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(headingStarts[a], headingStarts[b]));
+
+        List<Integer> starts = new ArrayList<>();
+        List<DocumentSection> sections = new ArrayList<>();
+        if (headingStarts[order[0]] > 0) {
+            starts.add(0);
+            sections.add(DocumentSection.POLICY);
+        }
+        for (int i : order) {
+            if (!sections.isEmpty() && sections.get(sections.size() - 1) == headingSections[i]) {
+                continue;
+            }
+            starts.add(headingStarts[i]);
+            sections.add(headingSections[i]);
+        }
+
+        int[] startArray = new int[starts.size()];
+        for (int i = 0; i < startArray.length; i++) {
+            startArray[i] = starts.get(i);
+        }
+        return new SectionIndex(startArray, sections.toArray(new DocumentSection[0]), textLength);
+    }
+
+    /**
+     * @param section Section
+     * @return true when the document has at least one range of that section
+     */
+    public boolean contains(DocumentSection section) {
+        return present.contains(section);
+    }
+
+    /**
+     * @param offset Text offset
+     * @return Number of the range containing the offset, or -1 before the first range
+     */
+    public int rangeAt(int offset) {
+        int i = Arrays.binarySearch(starts, offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    public DocumentSection getSection(int range) {
+        return sections[range];
+    }
+
+    public int getStart(int range) {
+        return starts[range];
+    }
+
+    /**
+     * @param range Range number
+     * @return End offset (exclusive)
+     */
+    public int getEnd(int range) {
+        return range + 1 < starts.length ? starts[range + 1] : textLength;
+    }
+
+    public int getRangeCount() {
+        return starts.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < starts.length; i++) {
+            description.append(sections[i]).append('[').append(starts[i]).append(',').append(getEnd(i)).append(") ");
+        }
+        return description.toString().trim();
+    }
+}
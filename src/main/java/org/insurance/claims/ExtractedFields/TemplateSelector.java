@@ -0,0 +1,114 @@
+package org.insurance.claims.ExtractedFields;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the form template of a document from a fingerprint of its first page.
+ * The fingerprint is the set of template markers found in the first
+ * FINGERPRINT_CHARS characters, taken in one automaton pass over that prefix only.
+ * Documents of the same layout share a fingerprint, so the template lookup is cached
+ * for the first MAX_CACHED_FINGERPRINTS distinct fingerprints; fingerprints seen after
+ * the cache is full are resolved again on every call, which costs one pass over the
+ * template masks. A document that matches no template gets the fallback template.
+ * Safe to share between threads.
+ */
+public final class TemplateSelector {
+
+    /** Characters at the start of the text the fingerprint is taken from */
+    public static final int FINGERPRINT_CHARS = 2048;
+
+    // Distinct fingerprints remembered, first come first kept; more only happen with garbled text
+    private static final int MAX_CACHED_FINGERPRINTS = 1024;
+
+    private final List<FormTemplate> templates;
+    private final FormTemplate fallback;
+    private final AhoCorasick markers;
+    // Per template: mask of the marker keywords it needs
+    private final long[] requiredMarkers;
+    private final Map<Long, FormTemplate> byFingerprint = new ConcurrentHashMap<>();
+
+    /**
+     * @param templates Templates with markers; when several match, the one with the most markers wins
+     * @param fallback Template used when no other matches
+     */
+    public TemplateSelector(List<FormTemplate> templates, FormTemplate fallback) {
+        this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+        this.fallback = fallback;
+
+        Map<String, Integer> markerIds = new LinkedHashMap<>();
+        this.requiredMarkers = new long[templates.size()];
+        for (int t = 0; t < templates.size(); t++) {
+            FormTemplate template = templates.get(t);
+            if (template.getMarkers().isEmpty()) {
+                throw new IllegalArgumentException("Template '" + template.getName() + "' has no markers");
+            }
+            for (String marker : template.getMarkers()) {
+                Integer id = markerIds.get(marker.toLowerCase());
+                if (id == null) {
+                    id = markerIds.size();
+                    markerIds.put(marker.toLowerCase(), id);
+                }
+                requiredMarkers[t] |= 1L << id;
+            }
+        }
+        if (markerIds.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " distinct template markers are supported");
+        }
+        this.markers = AhoCorasick.compile(new ArrayList<>(markerIds.keySet()));
+    }
+
+    /**
+     * Selects the template for a document
+     * @param text Document text, or at least its first page
+     * @return Matching template, or the fallback
+     */
+    public FormTemplate select(CharSequence text) {
+        long fingerprint = fingerprint(text);
+        FormTemplate template = byFingerprint.get(fingerprint);
+        if (template == null) {
+            template = resolve(fingerprint);
+            if (byFingerprint.size() < MAX_CACHED_FINGERPRINTS) {
+                byFingerprint.put(fingerprint, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * @param text Document text
+     * @return Mask of the template markers found at the start of the text
+     */
+    long fingerprint(CharSequence text) {
+        long[] found = new long[1];
+        markers.scan(text, 0, Math.min(text.length(), FINGERPRINT_CHARS),
+                (keyword, start, end) -> found[0] |= 1L << keyword);
+        return found[0];
+    }
+
+    // The template with the most markers wins when several match
+    private FormTemplate resolve(long fingerprint) {
+        FormTemplate best = fallback;
+        int bestMarkers = 0;
+        for (int t = 0; t < templates.size(); t++) {
+            if ((fingerprint & requiredMarkers[t]) == requiredMarkers[t]
+                    && Long.bitCount(requiredMarkers[t]) > bestMarkers) {
+                best = templates.get(t);
+                bestMarkers = Long.bitCount(requiredMarkers[t]);
+            }
+        }
+        return best;
+    }
+
+    public List<FormTemplate> getTemplates() {
+        return templates;
+    }
+
+    public FormTemplate getFallback() {
+        return fallback;
+    }
+}
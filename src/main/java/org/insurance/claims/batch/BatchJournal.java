@@ -0,0 +1,238 @@
+package org.insurance.claims.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint journal of a batch run, so a run that was killed halfway can be restarted
+ * without processing finished documents again.
+ *
+ * Each finished input is recorded as a 64-bit key of its absolute path, size and
+ * modification time, so an input that was replaced since is processed again. A record is
+ * [long key][int crc32 of the key] (12 bytes). Records are buffered and written and
+ * synced in groups; a crash loses at most the last group, whose documents are simply
+ * processed again. On open the journal is read into an open-addressing long set
+ * (about 16 bytes per document at most), so checking an input costs one stat and one probe.
+ * A torn or corrupt tail is cut off. Distinct inputs could in principle share a key; at
+ * 64 bits this is negligible for backlogs of millions of documents.
+ */
+public class BatchJournal implements Closeable {
+
+    private static final int RECORD_BYTES = 8 + 4;
+    // Records written and synced together
+    private static final int GROUP_RECORDS = 512;
+    private static final long GROUP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD = 0.6;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer group = ByteBuffer.allocate(GROUP_RECORDS * RECORD_BYTES);
+    private long groupStartNanos;
+
+    // Guarded by this
+    private long[] keys = new long[1024];
+    private int size;
+    private boolean closed;
+
+    /**
+     * Opens or creates a journal and loads the inputs it records as finished
+     * @param file Journal file
+     * @throws IOException If the journal cannot be opened or read
+     */
+    public BatchJournal(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        load();
+    }
+
+    /**
+     * Computes the journal key of an input
+     * @param pdf Input file
+     * @return Key of the file's absolute path, size and modification time
+     * @throws IOException If the file cannot be read
+     */
+    public static long key(Path pdf) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(pdf, BasicFileAttributes.class);
+        long hash = 0xcbf29ce484222325L;
+        String path = pdf.toAbsolutePath().normalize().toString();
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = mix(hash ^ attributes.size());
+        hash = mix(hash ^ attributes.lastModifiedTime().toMillis());
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    /**
+     * @param key Key from key()
+     * @return true if the input was recorded as finished
+     */
+    public synchronized boolean isDone(long key) {
+        int mask = keys.length - 1;
+        for (int slot = (int) mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == EMPTY) {
+                return false;
+            }
+            if (keys[slot] == key) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records an input as finished. Call it only once the input's result is durable.
+     * @param key Key from key()
+     * @throws IOException If a full group cannot be written
+     */
+    public synchronized void markDone(long key) throws IOException {
+        if (closed) {
+            throw new IOException("Batch journal is closed");
+        }
+        if (!add(key)) {
+            return;
+        }
+        if (group.position() == 0) {
+            groupStartNanos = System.nanoTime();
+        }
+        group.putLong(key).putInt(checksum(key));
+        if (!group.hasRemaining() || System.nanoTime() - groupStartNanos >= GROUP_INTERVAL_NANOS) {
+            flush();
+        }
+    }
+
+    /**
+     * @return Number of inputs recorded as finished
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Writes and syncs the buffered records
+     * @throws IOException If the journal cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (group.position() == 0) {
+            return;
+        }
+        group.flip();
+        long offset = channel.size();
+        while (group.hasRemaining()) {
+            offset += channel.write(group, offset);
+        }
+        group.clear();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads every record into the set; a torn or corrupt tail is cut off
+     */
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        long offset = 0;
+        ByteBuffer chunk = ByteBuffer.allocate(4096 * RECORD_BYTES);
+        read:
+        while (offset + RECORD_BYTES <= fileSize) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunk.capacity(), (fileSize - offset) / RECORD_BYTES * RECORD_BYTES));
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, offset + chunk.position()) < 0) {
+                    break read;
+                }
+            }
+            chunk.flip();
+            while (chunk.remaining() >= RECORD_BYTES) {
+                long key = chunk.getLong();
+                if (chunk.getInt() != checksum(key) || key == EMPTY) {
+                    break read;
+                }
+                add(key);
+                offset += RECORD_BYTES;
+            }
+        }
+
+        if (offset < fileSize) {
+            System.err.println("Batch journal " + file + ": dropping " + (fileSize - offset)
+                    + " bytes of incomplete records at offset " + offset);
+            channel.truncate(offset);
+        }
+    }
+
+    /**
+     * @return true if the key was not in the set yet
+     */
+    private boolean add(long key) {
+        if (size + 1 > keys.length * MAX_LOAD) {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            for (long k : old) {
+                if (k != EMPTY) {
+                    insert(keys, k);
+                }
+            }
+        }
+        if (insert(keys, key)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean insert(long[] keys, long key) {
+        int mask = keys.length - 1;
+        for (int slot = (int) mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                return true;
+            }
+            if (keys[slot] == key) {
+                return false;
+            }
+        }
+    }
+
+    private static int checksum(long key) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, key));
+        return (int) crc.getValue();
+    }
+
+    // Spreads the key bits before masking (finalizer of MurmurHash3)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
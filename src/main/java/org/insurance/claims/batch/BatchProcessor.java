@@ -0,0 +1,196 @@
+package org.insurance.claims.batch;
+
+import org.insurance.claims.model.ClaimResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs claim processing over many documents in parallel.
+ * Inputs are fed through a bounded queue to a fixed number of workers, so the
+ * producer blocks instead of buffering the whole backlog in memory.
+ */
+public class BatchProcessor {
+
+    /**
+     * Processes a single document
+     */
+    public interface ClaimTask {
+        ClaimResult process(Path pdf) throws Exception;
+    }
+
+    /**
+     * Receives results on the worker thread that produced them
+     */
+    public interface ResultListener {
+        void onSuccess(Path pdf, ClaimResult result) throws Exception;
+
+        default void onFailure(Path pdf, Exception error) {
+        }
+    }
+
+    private static final Path END_OF_INPUT = Paths.get("");
+
+    private final int workers;
+    private final int queueCapacity;
+    private final boolean virtualThreads;
+
+    public BatchProcessor(int workers, int queueCapacity, boolean virtualThreads) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Processes all inputs and waits for completion
+     * @param inputs PDF files to process
+     * @param task Processing function
+     * @param listener Result callback
+     * @return Summary of the run
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public BatchReport run(List<Path> inputs, ClaimTask task, ResultListener listener)
+            throws InterruptedException {
+        BlockingQueue<Path> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ThreadFactory threadFactory = WorkerThreads.factory("claim-worker", virtualThreads);
+
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Thread thread = threadFactory.newThread(() -> {
+                try {
+                    Path pdf;
+                    while ((pdf = queue.take()) != END_OF_INPUT) {
+                        try {
+                            listener.onSuccess(pdf, task.process(pdf));
+                            succeeded.incrementAndGet();
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            listener.onFailure(pdf, e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Path input : inputs) {
+                queue.put(input);
+            }
+            for (int i = 0; i < workers; i++) {
+                queue.put(END_OF_INPUT);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw e;
+        }
+
+        return new BatchReport(succeeded.get(), failed.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Expands command line inputs into a list of PDF files.
+     * Directories contribute their *.pdf files, "@file" reads one path per line.
+     * @param args Input arguments
+     * @return Sorted list of PDF paths
+     * @throws IOException If a directory or list file cannot be read
+     */
+    public static List<Path> collectInputs(List<String> args) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("@")) {
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1)), StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty()) {
+                        inputs.add(Paths.get(line.trim()));
+                    }
+                }
+                continue;
+            }
+
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                List<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, "*.{pdf,PDF}")) {
+                    for (Path file : dir) {
+                        files.add(file);
+                    }
+                }
+                Collections.sort(files);
+                inputs.addAll(files);
+            } else {
+                inputs.add(path);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Summary of a batch run
+     */
+    public static class BatchReport {
+        private final int succeeded;
+        private final int failed;
+        private final long elapsedNanos;
+
+        public BatchReport(int succeeded, int failed, long elapsedNanos) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getTotal() {
+            return succeeded + failed;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+
+        public double getDocumentsPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds > 0 ? getTotal() / seconds : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Processed %d documents (%d succeeded, %d failed) in %.2f s - %.1f docs/sec",
+                    getTotal(), succeeded, failed, getElapsedSeconds(), getDocumentsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.insurance.claims.batch;
+
+import org.insurance.claims.model.ClaimResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Staged claim pipeline: read (I/O) -&gt; parse, extract, validate, route (CPU) -&gt; write (I/O).
+ * Stages are joined by bounded queues, so a slow writer blocks the CPU stage,
+ * which in turn stops the reader from loading more documents into memory.
+ */
+public class ClaimPipeline {
+
+    /**
+     * Reads the raw document on the I/O pool
+     */
+    public interface DocumentReader {
+        byte[] read(Path pdf) throws Exception;
+    }
+
+    /**
+     * Turns raw document bytes into a claim result on the CPU pool
+     */
+    public interface DocumentProcessor {
+        ClaimResult process(Path pdf, byte[] content) throws Exception;
+    }
+
+    private final int ioThreads;
+    private final int cpuThreads;
+    private final int queueCapacity;
+    private final boolean virtualIoThreads;
+
+    public ClaimPipeline(int ioThreads, int cpuThreads, int queueCapacity, boolean virtualIoThreads) {
+        if (ioThreads < 1 || cpuThreads < 1) {
+            throw new IllegalArgumentException("Each pool needs at least one thread");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.ioThreads = ioThreads;
+        this.cpuThreads = cpuThreads;
+        this.queueCapacity = queueCapacity;
+        this.virtualIoThreads = virtualIoThreads;
+    }
+
+    /**
+     * Runs all inputs through the pipeline and waits until the last result is written
+     * @param inputs PDF files to process
+     * @param reader Read stage
+     * @param processor CPU stage
+     * @param writer Write stage; onSuccess runs on the I/O pool
+     * @return Summary of the run
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public BatchProcessor.BatchReport run(List<Path> inputs, DocumentReader reader,
+                                          DocumentProcessor processor,
+                                          BatchProcessor.ResultListener writer) throws InterruptedException {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        BlockingQueue<Item<Void>> pending = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item<byte[]>> loaded = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item<ClaimResult>> processed = new ArrayBlockingQueue<>(queueCapacity);
+
+        ThreadFactory ioFactory = WorkerThreads.factory("claim-io", virtualIoThreads);
+        ThreadFactory cpuFactory = WorkerThreads.factory("claim-cpu", false);
+
+        List<Thread> threads = new ArrayList<>();
+        Stage<Void, byte[]> readStage = new Stage<>(pending, loaded, ioThreads,
+                item -> reader.read(item.pdf), failed, writer);
+        Stage<byte[], ClaimResult> cpuStage = new Stage<>(loaded, processed, cpuThreads,
+                item -> processor.process(item.pdf, item.value), failed, writer);
+        Stage<ClaimResult, Void> writeStage = new Stage<>(processed, null, ioThreads,
+                item -> {
+                    writer.onSuccess(item.pdf, item.value);
+                    succeeded.incrementAndGet();
+                    return null;
+                }, failed, writer);
+        readStage.then(cpuStage).then(writeStage);
+
+        long start = System.nanoTime();
+        threads.addAll(readStage.start(ioFactory));
+        threads.addAll(cpuStage.start(cpuFactory));
+        threads.addAll(writeStage.start(ioFactory));
+
+        try {
+            for (Path input : inputs) {
+                pending.put(new Item<>(input, null));
+            }
+            readStage.finishInput();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw e;
+        }
+
+        return new BatchProcessor.BatchReport(succeeded.get(), failed.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Document moving through the pipeline with the output of the previous stage
+     */
+    private static final class Item<T> {
+        private final Path pdf;
+        private final T value;
+
+        private Item(Path pdf, T value) {
+            this.pdf = pdf;
+            this.value = value;
+        }
+    }
+
+    private interface StageFunction<I, O> {
+        O apply(Item<I> item) throws Exception;
+    }
+
+    /**
+     * A pool of threads draining one queue into the next.
+     * End of input is signalled with one marker item per worker; the last worker
+     * of a stage to finish forwards the markers to the next stage.
+     */
+    private static final class Stage<I, O> {
+        private final Item<I> endMarker = new Item<>(null, null);
+        private final BlockingQueue<Item<I>> input;
+        private final BlockingQueue<Item<O>> output;
+        private final int workers;
+        private final StageFunction<I, O> function;
+        private final AtomicInteger failed;
+        private final BatchProcessor.ResultListener listener;
+        private final AtomicInteger running;
+        private Stage<O, ?> next;
+
+        private Stage(BlockingQueue<Item<I>> input, BlockingQueue<Item<O>> output, int workers,
+                      StageFunction<I, O> function, AtomicInteger failed,
+                      BatchProcessor.ResultListener listener) {
+            this.input = input;
+            this.output = output;
+            this.workers = workers;
+            this.function = function;
+            this.failed = failed;
+            this.listener = listener;
+            this.running = new AtomicInteger(workers);
+        }
+
+        private List<Thread> start(ThreadFactory factory) {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                Thread thread = factory.newThread(this::work);
+                threads.add(thread);
+                thread.start();
+            }
+            return threads;
+        }
+
+        private <N> Stage<O, N> then(Stage<O, N> nextStage) {
+            this.next = nextStage;
+            return nextStage;
+        }
+
+        private void finishInput() throws InterruptedException {
+            for (int i = 0; i < workers; i++) {
+                input.put(endMarker);
+            }
+        }
+
+        private void work() {
+            try {
+                Item<I> item;
+                while ((item = input.take()) != endMarker) {
+                    O result;
+                    try {
+                        result = function.apply(item);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        listener.onFailure(item.pdf, e);
+                        continue;
+                    }
+                    if (output != null) {
+                        output.put(new Item<>(item.pdf, result));
+                    }
+                }
+                if (running.decrementAndGet() == 0 && next != null) {
+                    next.finishInput();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
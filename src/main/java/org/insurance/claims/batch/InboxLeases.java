@@ -0,0 +1,236 @@
+package org.insurance.claims.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets several processes, on one host or on hosts sharing a filesystem, work off the same
+ * inbox without processing a document twice and without a coordination service.
+ *
+ * A worker claims a file by renaming it into its own lease directory, inbox/.leases/WORKER/.
+ * The rename is atomic, so exactly one worker wins each file. While the worker runs, a
+ * background thread touches WORKER/heartbeat every third of the lease time. The same
+ * thread watches the other workers' heartbeats. A heartbeat whose modification time has not
+ * changed for a whole lease (measured on the local clock, so clocks of other hosts do not
+ * matter) belongs to a crashed worker, and its claimed files are renamed back into the inbox
+ * for anyone to take. A worker that was only paused and comes back finds its files gone and
+ * reports the lease as lost. Delivery is therefore at-least-once: a document whose lease was
+ * lost may be processed by two workers. Each worker writes its own result store and work
+ * queues (they have a single writer), so both results reach downstream consumers, under the
+ * same claim id; consumers that must not act twice should drop a claim id they have seen.
+ */
+public class InboxLeases implements Closeable {
+
+    public static final long DEFAULT_LEASE_MILLIS = 30_000;
+
+    /** Directory under the inbox holding one lease directory per worker */
+    public static final String LEASES_DIR = ".leases";
+
+    private static final String HEARTBEAT_FILE = "heartbeat";
+
+    private final Path inbox;
+    private final Path leasesRoot;
+    private final Path ownDir;
+    private final String workerId;
+    private final long leaseNanos;
+    private final ScheduledExecutorService heartbeat;
+    // Last heartbeat seen of each other worker; only touched by the heartbeat thread
+    private final Map<Path, Beat> lastBeats = new HashMap<>();
+
+    /**
+     * Creates the worker's lease directory and starts its heartbeat
+     * @param inbox Shared inbox
+     * @param workerId Name of this worker, unique among the workers sharing the inbox
+     * @param leaseMillis How long a silent worker keeps its claims
+     * @throws IOException If the lease directory cannot be created
+     */
+    public InboxLeases(Path inbox, String workerId, long leaseMillis) throws IOException {
+        if (workerId.isEmpty() || workerId.startsWith(".") || workerId.contains("/") || workerId.contains("\\")) {
+            throw new IllegalArgumentException("Worker id must be a plain file name: " + workerId);
+        }
+        this.inbox = inbox;
+        this.leasesRoot = inbox.resolve(LEASES_DIR);
+        this.ownDir = leasesRoot.resolve(workerId);
+        this.workerId = workerId;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        if (Files.isDirectory(ownDir)) {
+            // Left over by an earlier run under the same id that did not shut down cleanly
+            int returned = giveBack(ownDir);
+            if (returned > 0) {
+                System.out.println("Returned " + returned + " documents left in " + ownDir + " to the inbox");
+            }
+        }
+        beat();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(WorkerThreads.factory("inbox-lease", false));
+        long interval = Math.max(1, leaseMillis / 3);
+        heartbeat.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Default worker id, host name and process id
+     */
+    public static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        // "pid@host" on HotSpot
+        String process = ManagementFactory.getRuntimeMXBean().getName();
+        int at = process.indexOf('@');
+        return host + "-" + (at > 0 ? process.substring(0, at) : process);
+    }
+
+    /**
+     * Claims an inbox file for this worker
+     * @param file File in the inbox
+     * @return Path of the claimed file in the lease directory, or null if another worker claimed it first
+     * @throws IOException If the rename fails for another reason
+     */
+    public Path claim(Path file) throws IOException {
+        Path leased = ownDir.resolve(file.getFileName());
+        try {
+            return Files.move(file, leased, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Renames every file claimed by a silent worker back into the inbox
+     * @return Number of files given back
+     */
+    public int reclaimExpired() {
+        int reclaimed = 0;
+        long now = System.nanoTime();
+        try (DirectoryStream<Path> workers = Files.newDirectoryStream(leasesRoot, Files::isDirectory)) {
+            for (Path worker : workers) {
+                if (worker.equals(ownDir)) {
+                    continue;
+                }
+                FileTime modified;
+                try {
+                    modified = Files.getLastModifiedTime(worker.resolve(HEARTBEAT_FILE));
+                } catch (IOException e) {
+                    // Never beat or already reclaimed; judged by the directory itself
+                    modified = Files.getLastModifiedTime(worker);
+                }
+                Beat beat = lastBeats.get(worker);
+                if (beat == null || !beat.modified.equals(modified)) {
+                    lastBeats.put(worker, new Beat(modified, now));
+                } else if (now - beat.seenNanos >= leaseNanos) {
+                    int count = giveBack(worker);
+                    removeLeaseDirectory(worker);
+                    lastBeats.remove(worker);
+                    if (count > 0) {
+                        System.out.println("Reclaimed " + count + " documents leased by silent worker "
+                                + worker.getFileName());
+                    }
+                    reclaimed += count;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error checking inbox leases: " + e.getMessage());
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Renames the claimed files in a lease directory back into the inbox
+     * @return Number of files given back
+     */
+    private int giveBack(Path worker) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(worker)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().equals(HEARTBEAT_FILE)) {
+                    continue;
+                }
+                try {
+                    InboxWatcher.moveTo(inbox, file);
+                    count++;
+                } catch (NoSuchFileException e) {
+                    // Another worker gave it back first, or its owner finished it after all
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void removeLeaseDirectory(Path worker) throws IOException {
+        Files.deleteIfExists(worker.resolve(HEARTBEAT_FILE));
+        try {
+            Files.deleteIfExists(worker);
+        } catch (IOException e) {
+            // Not empty: the worker is back and claimed something; it will be judged again
+        }
+    }
+
+    private void maintain() {
+        try {
+            beat();
+        } catch (IOException e) {
+            System.err.println("Inbox lease heartbeat failed: " + e.getMessage());
+        }
+        reclaimExpired();
+    }
+
+    // Also recreates the lease directory if another worker reclaimed it while this one was paused
+    private void beat() throws IOException {
+        Files.createDirectories(ownDir);
+        Path file = ownDir.resolve(HEARTBEAT_FILE);
+        if (!Files.exists(file)) {
+            Files.createFile(file);
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Stops the heartbeat and gives back any claims that were not finished
+     */
+    @Override
+    public void close() throws IOException {
+        heartbeat.shutdownNow();
+        try {
+            heartbeat.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int returned = giveBack(ownDir);
+        if (returned > 0) {
+            System.out.println("Returned " + returned + " unfinished documents to the inbox");
+        }
+        removeLeaseDirectory(ownDir);
+    }
+
+    /**
+     * Heartbeat modification time of a worker and when it was first seen with that value
+     */
+    private static final class Beat {
+        final FileTime modified;
+        final long seenNanos;
+
+        Beat(FileTime modified, long seenNanos) {
+            this.modified = modified;
+            this.seenNanos = seenNanos;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package org.insurance.claims.batch;
+
+import org.insurance.claims.model.ClaimResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches an inbox directory and processes PDFs as they arrive.
+ *
+ * A file is taken once its size and modification time have not changed for the settle
+ * interval and it ends with the PDF trailer, so documents still being copied in are left
+ * alone. Arrivals are debounced: a batch is started once the inbox has been quiet for the
+ * settle interval (or a steady trickle has waited ten intervals, or a full batch is ready),
+ * and the whole batch goes through a BatchProcessor in parallel. Afterwards each file is
+ * moved to the processed or failed directory; a failed file gets a ".error" note with the
+ * reason next to it. Files already in the inbox at startup are picked up too.
+ *
+ * With InboxLeases, several processes can share one inbox: each settled file is claimed
+ * by an atomic rename before it is processed, a batch holds at most the worker's share, and
+ * the inbox is also rescanned every second because writes by other hosts on a shared
+ * filesystem raise no watch events.
+ */
+public class InboxWatcher implements Closeable {
+
+    public static final long DEFAULT_SETTLE_MILLIS = 500;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    // A stable file without the PDF trailer is taken after this long anyway, and will most likely fail
+    private static final long INCOMPLETE_GRACE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // The trailer is searched for in this many bytes at the end of the file
+    private static final int TRAILER_SEARCH_BYTES = 1024;
+    private static final byte[] PDF_TRAILER = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+    private static final long RESCAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path inbox;
+    private final Path processedDir;
+    private final Path failedDir;
+    private final BatchProcessor processor;
+    private final long settleNanos;
+    private final int maxBatch;
+    private final InboxLeases leases;
+    private final WatchService watchService;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean closed;
+
+    // Files seen but not yet taken, in arrival order; only touched by the watching thread
+    private final Map<Path, Observation> pending = new LinkedHashMap<>();
+    private long lastEventNanos;
+    private long waitingSinceNanos;
+    private long lastScanNanos;
+
+    private int succeeded;
+    private int failed;
+
+    public InboxWatcher(Path inbox, Path processedDir, Path failedDir, BatchProcessor processor,
+                        long settleMillis, int maxBatch) throws IOException {
+        this(inbox, processedDir, failedDir, processor, settleMillis, maxBatch, null);
+    }
+
+    /**
+     * Registers the watch; call run() to start processing
+     * @param inbox Directory new PDFs are written to
+     * @param processedDir Directory successful files are moved to
+     * @param failedDir Directory failed files are moved to
+     * @param processor Runs each batch in parallel
+     * @param settleMillis How long a file must stay unchanged (and the inbox quiet) before it is processed
+     * @param maxBatch Most documents per batch; with leases, the most a worker claims at a time
+     * @param leases Leases of this worker when other workers share the inbox, or null
+     * @throws IOException If the directories cannot be created or watched
+     */
+    public InboxWatcher(Path inbox, Path processedDir, Path failedDir, BatchProcessor processor,
+                        long settleMillis, int maxBatch, InboxLeases leases) throws IOException {
+        if (!Files.isDirectory(inbox)) {
+            throw new NoSuchFileException(inbox.toString(), null, "Inbox is not a directory");
+        }
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.inbox = inbox;
+        this.processedDir = Files.createDirectories(processedDir);
+        this.failedDir = Files.createDirectories(failedDir);
+        this.processor = processor;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.maxBatch = maxBatch;
+        this.leases = leases;
+        this.watchService = inbox.getFileSystem().newWatchService();
+        inbox.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Processes arriving documents until the watcher is closed
+     * @param task Processing function
+     * @param listener Result callback; runs before the file is moved
+     * @throws IOException If the inbox can no longer be watched
+     */
+    public void run(BatchProcessor.ClaimTask task, BatchProcessor.ResultListener listener) throws IOException {
+        BatchProcessor.ResultListener mover = new BatchProcessor.ResultListener() {
+            @Override
+            public void onSuccess(Path pdf, ClaimResult result) throws Exception {
+                listener.onSuccess(pdf, result);
+                try {
+                    moveTo(processedDir, pdf);
+                } catch (NoSuchFileException e) {
+                    if (leases == null) {
+                        throw e;
+                    }
+                    leaseLost(pdf);
+                }
+            }
+
+            @Override
+            public void onFailure(Path pdf, Exception error) {
+                listener.onFailure(pdf, error);
+                if (leases != null && !Files.exists(pdf)) {
+                    leaseLost(pdf);
+                } else {
+                    fail(pdf, error);
+                }
+            }
+        };
+
+        try {
+            scan();
+            boolean more = false;
+            while (!closed) {
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(settleNanos) + 1;
+                WatchKey key;
+                if (more) {
+                    key = watchService.poll();
+                } else if (leases != null) {
+                    key = watchService.poll(Math.min(waitMillis, TimeUnit.NANOSECONDS.toMillis(RESCAN_INTERVAL_NANOS)),
+                            TimeUnit.MILLISECONDS);
+                } else {
+                    key = pending.isEmpty() ? watchService.take() : watchService.poll(waitMillis, TimeUnit.MILLISECONDS);
+                }
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scan();
+                        } else {
+                            observe(inbox.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Inbox is no longer accessible: " + inbox);
+                    }
+                    key = watchService.poll();
+                }
+
+                if (leases != null && System.nanoTime() - lastScanNanos >= RESCAN_INTERVAL_NANOS) {
+                    scan();
+                }
+
+                List<Path> batch = takeSettled(System.nanoTime());
+                // Settled files left over because the batch was full are taken right away
+                more = !batch.isEmpty() && !pending.isEmpty();
+                if (!batch.isEmpty()) {
+                    BatchProcessor.BatchReport report = processor.run(batch, task, mover);
+                    succeeded += report.getSucceeded();
+                    failed += report.getFailed();
+                    System.out.println("Inbox: " + report);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed while waiting for events
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    // Records every PDF already in the inbox, e.g. after a restart or an event overflow
+    private void scan() throws IOException {
+        lastScanNanos = System.nanoTime();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(inbox, "*.{pdf,PDF}")) {
+            for (Path file : dir) {
+                observe(file);
+            }
+        }
+    }
+
+    private void observe(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if (!name.endsWith(".pdf") || name.startsWith(".")) {
+            return;
+        }
+        long now = System.nanoTime();
+        Observation previous = pending.get(file);
+        Observation current = Observation.of(file, now);
+        if (current == null) {
+            pending.remove(file);
+        } else if (previous == null || !previous.sameAs(current)) {
+            // Only real changes count as activity, so rescans do not keep the inbox from settling
+            if (pending.isEmpty()) {
+                waitingSinceNanos = now;
+            }
+            lastEventNanos = now;
+            pending.put(file, current);
+        }
+    }
+
+    /**
+     * Removes and returns the files that are ready, once the current burst of arrivals is over
+     * @param now Current System.nanoTime()
+     * @return Files to process now, possibly none
+     */
+    private List<Path> takeSettled(long now) {
+        List<Path> batch = new ArrayList<>();
+        boolean quiet = now - lastEventNanos >= settleNanos;
+        boolean waitedLong = now - waitingSinceNanos >= 10 * settleNanos;
+        if (pending.isEmpty() || (!quiet && !waitedLong && pending.size() < maxBatch)) {
+            return batch;
+        }
+
+        Iterator<Map.Entry<Path, Observation>> it = pending.entrySet().iterator();
+        while (it.hasNext() && batch.size() < maxBatch) {
+            Map.Entry<Path, Observation> entry = it.next();
+            Observation current = Observation.of(entry.getKey(), now);
+            if (current == null) {
+                // Deleted or renamed away before it settled
+                it.remove();
+            } else if (!entry.getValue().sameAs(current)) {
+                entry.setValue(current);
+            } else {
+                long stableNanos = now - entry.getValue().sinceNanos;
+                if (stableNanos >= settleNanos
+                        && (stableNanos >= INCOMPLETE_GRACE_NANOS || hasTrailer(entry.getKey(), current.size))) {
+                    it.remove();
+                    Path taken = claim(entry.getKey());
+                    if (taken != null) {
+                        batch.add(taken);
+                    }
+                }
+            }
+        }
+        waitingSinceNanos = now;
+        return batch;
+    }
+
+    /**
+     * @param file Settled file in the inbox
+     * @return Path to process, or null if another worker claimed the file first
+     */
+    private Path claim(Path file) {
+        if (leases == null) {
+            return file;
+        }
+        try {
+            return leases.claim(file);
+        } catch (IOException e) {
+            // Left in the inbox; the next rescan sees it again
+            System.err.println("Could not claim " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void leaseLost(Path pdf) {
+        System.err.println("Lease on " + pdf.getFileName() + " was lost while it was processed;"
+                + " it was given back to the inbox");
+    }
+
+    // A complete PDF ends with "%%EOF", possibly followed by a line break or some padding
+    private static boolean hasTrailer(Path file, long size) {
+        int length = (int) Math.min(size, TRAILER_SEARCH_BYTES);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (tail.hasRemaining() && channel.read(tail, size - length + tail.position()) > 0) {
+                // Keep reading
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        byte[] bytes = tail.array();
+        outer:
+        for (int i = tail.position() - PDF_TRAILER.length; i >= 0; i--) {
+            for (int j = 0; j < PDF_TRAILER.length; j++) {
+                if (bytes[i + j] != PDF_TRAILER[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void fail(Path pdf, Exception error) {
+        try {
+            Path target = moveTo(failedDir, pdf);
+            String reason = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+            Files.write(target.resolveSibling(target.getFileName() + ".error"),
+                    (reason + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Could not move failed claim " + pdf + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves a file out of the inbox without overwriting an earlier file of the same name
+     * @param directory Target directory
+     * @param file File to move
+     * @return New location
+     * @throws IOException If the file cannot be moved
+     */
+    static Path moveTo(Path directory, Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int attempt = 0; ; attempt++) {
+            Path target = directory.resolve(attempt == 0 ? name : base + "-" + attempt + extension);
+            if (Files.exists(target)) {
+                continue;
+            }
+            try {
+                return Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Different file system
+                try {
+                    return Files.move(file, target);
+                } catch (FileAlreadyExistsException raced) {
+                    // Taken in the meantime, try the next name
+                }
+            }
+        }
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Stops watching; waits for the running batch to finish and its files to be moved
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        try {
+            stopped.await(60, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Size and modification time of a file, and since when they have been unchanged
+     */
+    private static final class Observation {
+        final long size;
+        final long modifiedMillis;
+        final long sinceNanos;
+
+        private Observation(long size, long modifiedMillis, long sinceNanos) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.sinceNanos = sinceNanos;
+        }
+
+        // null if the file is gone or not a regular file
+        static Observation of(Path file, long now) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    return null;
+                }
+                return new Observation(attributes.size(), attributes.lastModifiedTime().toMillis(), now);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        boolean sameAs(Observation other) {
+            return size == other.size && modifiedMillis == other.modifiedMillis;
+        }
+    }
+}
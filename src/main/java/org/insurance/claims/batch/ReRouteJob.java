@@ -0,0 +1,251 @@
+package org.insurance.claims.batch;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.insurance.claims.ExtractedFields.ClaimRouter;
+import org.insurance.claims.model.ClaimResult;
+import org.insurance.claims.store.ResultStore;
+import org.insurance.claims.validator.ClaimValidator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-routes stored claim results under the current routing rules.
+ * The extracted fields saved with each result are validated and routed again, so no
+ * PDF is read. The store is scanned once on the calling thread and the records are
+ * fed through a bounded queue to the workers, like BatchProcessor does with files.
+ * Results that stopped on a time budget (EXTRACTION_TIMEOUT or DEADLINE_EXCEEDED) are
+ * skipped: their fields may be incomplete and only re-extraction can fix them. Every other
+ * result is routed again, including NO_RULE_MATCHED ones and probable duplicates, whose
+ * stored duplicateOf lets the duplicate rule of the current table fire again.
+ */
+public class ReRouteJob {
+
+    /**
+     * Receives claims whose route changed, on the worker thread that re-routed them
+     */
+    public interface ChangeListener {
+        void onChange(String claimId, ClaimResult before, ClaimResult after) throws Exception;
+
+        default void onFailure(String claimId, Exception error) {
+        }
+    }
+
+    private static final StoredRecord END_OF_INPUT = new StoredRecord(null, null);
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ClaimValidator validator;
+    private final ClaimRouter router;
+    private final int workers;
+    private final int queueCapacity;
+
+    public ReRouteJob(ClaimValidator validator, ClaimRouter router, int workers, int queueCapacity) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.validator = validator;
+        this.router = router;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Re-routes the latest result of every claim in the store and waits for completion
+     * @param store Store holding the previous results
+     * @param listener Change callback
+     * @return Summary of the run
+     * @throws IOException If the store cannot be read
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public Report run(ResultStore store, ChangeListener listener) throws IOException, InterruptedException {
+        BlockingQueue<StoredRecord> queue = new ArrayBlockingQueue<>(queueCapacity);
+        LongAdder unchanged = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        LongAdder failed = new LongAdder();
+        Map<String, AtomicInteger> transitions = new ConcurrentHashMap<>();
+        ThreadFactory threadFactory = WorkerThreads.factory("reroute-worker", false);
+
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Thread thread = threadFactory.newThread(() -> {
+                try {
+                    StoredRecord record;
+                    while ((record = queue.take()) != END_OF_INPUT) {
+                        try {
+                            ClaimResult before = mapper.readValue(record.payload, ClaimResult.class);
+                            if (isTimedOut(before) || before.getExtractedFields() == null) {
+                                skipped.increment();
+                                continue;
+                            }
+                            ClaimResult after = reRoute(before);
+                            if (after.getRecommendedRoute().equals(before.getRecommendedRoute())) {
+                                unchanged.increment();
+                                continue;
+                            }
+                            listener.onChange(record.claimId, before, after);
+                            transitions.computeIfAbsent(before.getRecommendedRoute() + " -> " + after.getRecommendedRoute(),
+                                    key -> new AtomicInteger()).incrementAndGet();
+                        } catch (Exception e) {
+                            failed.increment();
+                            listener.onFailure(record.claimId, e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            try {
+                store.scanLatest((claimId, payload) -> {
+                    try {
+                        queue.put(new StoredRecord(claimId, payload));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while scanning the result store", e);
+                    }
+                });
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    queue.put(END_OF_INPUT);
+                }
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw e;
+        }
+
+        Map<String, Integer> counts = new TreeMap<>();
+        transitions.forEach((transition, count) -> counts.put(transition, count.get()));
+        return new Report(counts, unchanged.intValue(), skipped.intValue(), failed.intValue(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * @param result Stored result
+     * @return true if the result stopped on a time budget, so its fields may be incomplete
+     */
+    static boolean isTimedOut(ClaimResult result) {
+        String reasonCode = result.getReasonCode();
+        return ClaimRouter.REASON_EXTRACTION_TIMEOUT.equals(reasonCode)
+                || ClaimRouter.REASON_DEADLINE_EXCEEDED.equals(reasonCode);
+    }
+
+    /**
+     * Validates and routes the stored fields again
+     * @param before Stored result
+     * @return New result with the same extracted fields
+     */
+    public ClaimResult reRoute(ClaimResult before) {
+        List<String> missingFields = validator.validateMandatoryFields(before.getExtractedFields());
+        ClaimRouter.RoutingDecision decision = router.determineRoute(before.getExtractedFields(), missingFields);
+
+        ClaimResult after = new ClaimResult();
+        after.setExtractedFields(before.getExtractedFields());
+        after.setMissingFields(missingFields);
+        after.setRecommendedRoute(decision.getRoute());
+        after.setReasoning(decision.getReasoning());
+        after.setPriority(decision.getPriority());
+        after.setReasonCode(decision.getReasonCode());
+        after.setInconsistencies(validator.validateConsistency(before.getExtractedFields()));
+        return after;
+    }
+
+    private static final class StoredRecord {
+        private final String claimId;
+        private final byte[] payload;
+
+        private StoredRecord(String claimId, byte[] payload) {
+            this.claimId = claimId;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Summary of a re-route run
+     */
+    public static class Report {
+        private final Map<String, Integer> transitions;
+        private final int unchanged;
+        private final int skipped;
+        private final int failed;
+        private final long elapsedNanos;
+
+        public Report(Map<String, Integer> transitions, int unchanged, int skipped, int failed, long elapsedNanos) {
+            this.transitions = transitions;
+            this.unchanged = unchanged;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return Number of changed claims per "old route -> new route" transition
+         */
+        public Map<String, Integer> getTransitions() {
+            return transitions;
+        }
+
+        public int getChanged() {
+            int changed = 0;
+            for (int count : transitions.values()) {
+                changed += count;
+            }
+            return changed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getTotal() {
+            return getChanged() + unchanged + skipped + failed;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder(String.format(
+                    "Re-routed %d claims (%d changed, %d unchanged, %d skipped after timeouts, %d failed) in %.2f s",
+                    getTotal(), getChanged(), unchanged, skipped, failed, getElapsedSeconds()));
+            for (Map.Entry<String, Integer> transition : transitions.entrySet()) {
+                summary.append(String.format("%n  %-45s %d", transition.getKey(), transition.getValue()));
+            }
+            return summary.toString();
+        }
+    }
+}
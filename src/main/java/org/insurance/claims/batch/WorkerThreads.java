@@ -0,0 +1,60 @@
+package org.insurance.claims.batch;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories for the worker pools.
+ * Virtual threads are looked up reflectively because the build targets Java 11;
+ * on runtimes without them the factory falls back to platform threads.
+ */
+public final class WorkerThreads {
+
+    private WorkerThreads() {
+    }
+
+    /**
+     * Creates a thread factory
+     * @param namePrefix Prefix for thread names
+     * @param virtual true to request virtual threads
+     * @return Thread factory producing daemon platform threads or virtual threads
+     */
+    public static ThreadFactory factory(String namePrefix, boolean virtual) {
+        if (virtual) {
+            ThreadFactory virtualFactory = virtualThreadFactory(namePrefix);
+            if (virtualFactory != null) {
+                return virtualFactory;
+            }
+            System.err.println("Virtual threads are not available on Java "
+                    + System.getProperty("java.version") + ", using platform threads");
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return true when the running JVM supports virtual threads
+     */
+    public static boolean virtualThreadsAvailable() {
+        return virtualThreadFactory("probe") != null;
+    }
+
+    private static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class)
+                    .invoke(builder, namePrefix + "-", 1L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.insurance.claims.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.insurance.claims.model.ClaimResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed, size-bounded disk cache of claim results.
+ * Entries are keyed by the SHA-256 of the PDF bytes plus the extractor/rule-set
+ * version, so resubmitted documents skip PDF parsing entirely. The least recently
+ * used entries are evicted once the cache exceeds its size limit; recency survives
+ * restarts through the entry files' modification times.
+ */
+public class ResultCache {
+
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Temp files older than this were left by a process that died in put(); younger ones may be in use
+    private static final long ORPHAN_AGE_MILLIS = 60_000;
+
+    private final Path directory;
+    private final long maxBytes;
+    private volatile String version;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Key -> entry size, in access order (eldest first)
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Opens (or creates) a cache directory
+     * @param directory Cache directory
+     * @param maxBytes Size limit for all entries together
+     * @param version Extractor and rule-set version; results of other versions are never returned
+     * @throws IOException If the directory cannot be created or scanned
+     */
+    public ResultCache(Path directory, long maxBytes, String version) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.version = version;
+        loadIndex();
+    }
+
+    /**
+     * Switches to another extractor or rule-set version; entries of the old version
+     * are no longer returned and age out through normal eviction
+     * @param version New version
+     */
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Computes the cache key for a document from the digest its caller already took,
+     * so the document bytes are hashed only once
+     * @param contentSha256 SHA-256 of the raw PDF bytes
+     * @return Hex key
+     */
+    public String keyFor(byte[] contentSha256) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(version.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(contentSha256);
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Looks up a stored result
+     * @param key Key from keyFor
+     * @return Stored result, or null on a miss
+     */
+    public ClaimResult get(String key) {
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+
+        Path file = entryPath(key);
+        try {
+            ClaimResult result = mapper.readValue(file.toFile(), ClaimResult.class);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (IOException e) {
+            // Entry vanished or is corrupt; drop it and treat as a miss
+            synchronized (this) {
+                remove(key);
+                hits--;
+                misses++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores a result and evicts least recently used entries beyond the size limit
+     * @param key Key from keyFor
+     * @param result Result to store
+     * @throws IOException If the entry cannot be written
+     */
+    public void put(String key, ClaimResult result) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(result);
+        Path file = entryPath(key);
+        Files.createDirectories(file.getParent());
+
+        Path temp = Files.createTempFile(file.getParent(), key, TEMP_SUFFIX);
+        try {
+            Files.write(temp, json);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        synchronized (this) {
+            Long previous = entries.put(key, (long) json.length);
+            totalBytes += json.length - (previous != null ? previous : 0L);
+            evict();
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Result cache: %d entries, %.1f MB, %d hits, %d misses",
+                entries.size(), totalBytes / (1024.0 * 1024.0), hits, misses);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            try {
+                Files.deleteIfExists(entryPath(entry.getKey()));
+            } catch (IOException e) {
+                // Left on disk; it is no longer indexed and is cleaned up on the next scan
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        try {
+            Files.deleteIfExists(entryPath(key));
+        } catch (IOException e) {
+            // Ignore, entry is no longer indexed
+        }
+    }
+
+    /**
+     * Rebuilds the LRU index from the entry files, oldest modification first, and deletes
+     * temp files orphaned by a crash during put()
+     */
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<Path> temps = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory, 2)) {
+            walk.forEach(p -> {
+                String name = p.getFileName().toString();
+                if (name.endsWith(ENTRY_SUFFIX)) {
+                    files.add(p);
+                } else if (name.endsWith(TEMP_SUFFIX)) {
+                    temps.add(p);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long orphanedBefore = System.currentTimeMillis() - ORPHAN_AGE_MILLIS;
+        for (Path temp : temps) {
+            try {
+                if (Files.getLastModifiedTime(temp).toMillis() < orphanedBefore) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                // Gone already, or retried on the next open
+            }
+        }
+
+        Map<Path, FileTime> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file));
+        }
+        files.sort(Comparator.comparing(modified::get));
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long size = Files.size(file);
+            entries.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
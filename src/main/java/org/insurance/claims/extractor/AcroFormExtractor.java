@@ -0,0 +1,271 @@
+package org.insurance.claims.extractor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDNonTerminalField;
+import org.insurance.claims.model.ExtractedFields;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads field values directly from fillable (AcroForm) loss notices.
+ * Form field names are mapped onto ExtractedFields properties by per-template
+ * mapping files under /acroform on the classpath.
+ */
+public class AcroFormExtractor {
+
+    private static final List<String> TEMPLATE_RESOURCES = Arrays.asList(
+            "/acroform/acord-2.properties",
+            "/acroform/generic-loss-notice.properties"
+    );
+
+    // Location parts are joined into IncidentInfo.location in this order
+    private static final List<String> LOCATION_PARTS = Arrays.asList(
+            "incidentInfo.street",
+            "incidentInfo.city",
+            "incidentInfo.state",
+            "incidentInfo.postalCode",
+            "incidentInfo.cityStateZip"
+    );
+
+    private static final Map<String, BiConsumer<ExtractedFields, String>> TARGETS = new HashMap<>();
+
+    static {
+        TARGETS.put("policyInfo.policyNumber", (f, v) -> f.getPolicyInfo().setPolicyNumber(v));
+        TARGETS.put("policyInfo.policyholderName", (f, v) -> f.getPolicyInfo().setPolicyholderName(v));
+        TARGETS.put("policyInfo.effectiveDate", (f, v) -> f.getPolicyInfo().setEffectiveDate(v));
+        TARGETS.put("policyInfo.naicCode", (f, v) -> f.getPolicyInfo().setNaicCode(v));
+        TARGETS.put("policyInfo.lineOfBusiness", (f, v) -> f.getPolicyInfo().setLineOfBusiness(v));
+
+        TARGETS.put("incidentInfo.dateOfLoss", (f, v) -> f.getIncidentInfo().setDateOfLoss(v));
+        TARGETS.put("incidentInfo.timeOfLoss", (f, v) -> f.getIncidentInfo().setTimeOfLoss(v));
+        TARGETS.put("incidentInfo.location", (f, v) -> f.getIncidentInfo().setLocation(v));
+        TARGETS.put("incidentInfo.description", (f, v) -> f.getIncidentInfo().setDescription(v));
+        TARGETS.put("incidentInfo.reportNumber", (f, v) -> f.getIncidentInfo().setReportNumber(v));
+        TARGETS.put("incidentInfo.policeDepartmentContacted",
+                (f, v) -> f.getIncidentInfo().setPoliceDepartmentContacted(v));
+
+        TARGETS.put("involvedParties.driverName", (f, v) -> f.getInvolvedParties().setDriverName(v));
+        TARGETS.put("involvedParties.driverAddress", (f, v) -> f.getInvolvedParties().setDriverAddress(v));
+        TARGETS.put("involvedParties.driverPhone", (f, v) -> f.getInvolvedParties().setDriverPhone(v));
+        TARGETS.put("involvedParties.ownerName", (f, v) -> f.getInvolvedParties().setOwnerName(v));
+        TARGETS.put("involvedParties.ownerAddress", (f, v) -> f.getInvolvedParties().setOwnerAddress(v));
+        TARGETS.put("involvedParties.ownerPhone", (f, v) -> f.getInvolvedParties().setOwnerPhone(v));
+        TARGETS.put("involvedParties.witnesses", (f, v) -> f.getInvolvedParties().setWitnesses(v));
+        TARGETS.put("involvedParties.injuredParties", (f, v) -> f.getInvolvedParties().setInjuredParties(v));
+
+        TARGETS.put("assetDetails.vin", (f, v) -> f.getAssetDetails().setVin(v));
+        TARGETS.put("assetDetails.make", (f, v) -> f.getAssetDetails().setMake(v));
+        TARGETS.put("assetDetails.model", (f, v) -> f.getAssetDetails().setModel(v));
+        TARGETS.put("assetDetails.year", (f, v) -> f.getAssetDetails().setYear(v));
+        TARGETS.put("assetDetails.plateNumber", (f, v) -> f.getAssetDetails().setPlateNumber(v));
+        TARGETS.put("assetDetails.state", (f, v) -> f.getAssetDetails().setState(v));
+        TARGETS.put("assetDetails.damageDescription", (f, v) -> f.getAssetDetails().setDamageDescription(v));
+        TARGETS.put("assetDetails.estimatedDamage", (f, v) -> {
+            Double amount = parseAmount(v);
+            if (amount != null) {
+                f.getAssetDetails().setEstimatedDamage(amount);
+            }
+        });
+
+        TARGETS.put("otherFields.claimType", (f, v) -> f.getOtherFields().setClaimType(v));
+        TARGETS.put("otherFields.attachments", (f, v) -> f.getOtherFields().setAttachments(v));
+        TARGETS.put("otherFields.agencyName", (f, v) -> f.getOtherFields().setAgencyName(v));
+        TARGETS.put("otherFields.agencyContact", (f, v) -> f.getOtherFields().setAgencyContact(v));
+    }
+
+    private static final List<Template> TEMPLATES = loadTemplates();
+
+    /**
+     * Reads the form fields of a document and maps them with the best matching template
+     * @param document Loaded document
+     * @return Mapped form values, or null if the document has no form or no template matches
+     * @throws IOException If the form cannot be read
+     */
+    public FormValues read(PDDocument document) throws IOException {
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm == null || acroForm.getFields().isEmpty()) {
+            return null;
+        }
+
+        Map<String, String> formValues = new LinkedHashMap<>();
+        for (PDField field : acroForm.getFieldTree()) {
+            if (field instanceof PDNonTerminalField) {
+                continue;
+            }
+            String value = field.getValueAsString();
+            if (value != null && !value.trim().isEmpty()) {
+                formValues.put(normalizeName(field.getPartialName()), value.trim());
+            }
+        }
+        if (formValues.isEmpty()) {
+            return null;
+        }
+
+        // Pick the template that recognises the most filled fields
+        Template best = null;
+        int bestMatches = 0;
+        for (Template template : TEMPLATES) {
+            int matches = template.countMatches(formValues.keySet());
+            if (matches >= template.minMatches && matches > bestMatches) {
+                best = template;
+                bestMatches = matches;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        Map<String, String> mapped = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : formValues.entrySet()) {
+            String target = best.mapping.get(entry.getKey());
+            if (target != null && !mapped.containsKey(target)) {
+                mapped.put(target, entry.getValue());
+            }
+        }
+        return new FormValues(best.name, mapped, new ArrayList<>(formValues.values()));
+    }
+
+    /**
+     * Form field names are compared ignoring case, punctuation and array indexes
+     */
+    static String normalizeName(String name) {
+        if (name == null) {
+            return "";
+        }
+        String withoutIndexes = name.replaceAll("\\[\\d+\\]", "");
+        StringBuilder normalized = new StringBuilder(withoutIndexes.length());
+        for (int i = 0; i < withoutIndexes.length(); i++) {
+            char c = withoutIndexes.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static Double parseAmount(String value) {
+        try {
+            return Double.parseDouble(value.replaceAll("[$,\\s]", ""));
+        } catch (NumberFormatException e) {
+            // If parsing fails, leave as null
+            return null;
+        }
+    }
+
+    private static List<Template> loadTemplates() {
+        List<Template> templates = new ArrayList<>();
+        for (String resource : TEMPLATE_RESOURCES) {
+            try (InputStream in = AcroFormExtractor.class.getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing form template: " + resource);
+                }
+                Properties properties = new Properties();
+                properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+                templates.add(new Template(properties));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read form template: " + resource, e);
+            }
+        }
+        return Collections.unmodifiableList(templates);
+    }
+
+    /**
+     * Field-name mapping for one form layout
+     */
+    private static final class Template {
+        private final String name;
+        private final int minMatches;
+        private final Map<String, String> mapping = new HashMap<>();
+
+        private Template(Properties properties) {
+            this.name = properties.getProperty("template.name");
+            this.minMatches = Integer.parseInt(properties.getProperty("template.minMatches", "1"));
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith("template.")) {
+                    continue;
+                }
+                String target = properties.getProperty(key).trim();
+                if (!TARGETS.containsKey(target) && !LOCATION_PARTS.contains(target)) {
+                    throw new IllegalStateException("Unknown target '" + target + "' in template " + name);
+                }
+                mapping.put(normalizeName(key), target);
+            }
+        }
+
+        private int countMatches(Iterable<String> fieldNames) {
+            int matches = 0;
+            for (String fieldName : fieldNames) {
+                if (mapping.containsKey(fieldName)) {
+                    matches++;
+                }
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * Values read from a form, keyed by ExtractedFields property
+     */
+    public static class FormValues {
+        private final String templateName;
+        private final Map<String, String> values;
+        private final List<String> allValues;
+
+        private FormValues(String templateName, Map<String, String> values, List<String> allValues) {
+            this.templateName = templateName;
+            this.values = values;
+            this.allValues = allValues;
+        }
+
+        public String getTemplateName() {
+            return templateName;
+        }
+
+        public Map<String, String> getValues() {
+            return Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * @return Every filled form value, including unmapped ones, one per line
+         */
+        public String getAllText() {
+            return String.join("\n", allValues);
+        }
+
+        /**
+         * Copies the mapped values onto the given fields, overriding what is already there
+         * @param fields Target fields
+         */
+        public void applyTo(ExtractedFields fields) {
+            List<String> location = new ArrayList<>();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (LOCATION_PARTS.contains(entry.getKey())) {
+                    continue;
+                }
+                TARGETS.get(entry.getKey()).accept(fields, entry.getValue());
+            }
+            for (String part : LOCATION_PARTS) {
+                if (values.containsKey(part)) {
+                    location.add(values.get(part));
+                }
+            }
+            if (!location.isEmpty()) {
+                fields.getIncidentInfo().setLocation(String.join(", ", location));
+            }
+        }
+    }
+}
@@ -1,41 +1,139 @@
 package org.insurance.claims.extractor;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class PDFExtractor {
 
+    /**
+     * Receives the document text as it grows page by page
+     */
+    public interface PageListener {
+        /**
+         * @param pageNumber 1-based number of the page just stripped
+         * @param textSoFar Cleaned text of all pages stripped so far; only valid during the call
+         * @return true when no further pages are needed
+         */
+        boolean onPage(int pageNumber, CharSequence textSoFar);
+    }
+
+    /** Page budget meaning "all pages" */
+    public static final int ALL_PAGES = 0;
+
+    // Streamed documents larger than this spill to a scratch file instead of the heap
+    private static final long SCRATCH_MEMORY_BYTES = 16L * 1024 * 1024;
+
 
     public String extractText(String pdfFilePath) throws IOException {
+        try (PDDocument document = load(pdfFilePath)) {
+            return extractText(document);
+        }
+    }
+
+    /**
+     * Extracts text from a PDF that has already been read into memory
+     * @param pdfContent Raw PDF bytes
+     * @return Cleaned document text
+     * @throws IOException If the content is not a readable PDF
+     */
+    public String extractText(byte[] pdfContent) throws IOException {
+        try (PDDocument document = load(pdfContent)) {
+            return extractText(document);
+        }
+    }
+
+    /**
+     * Opens a PDF file; the caller must close the document
+     * @param pdfFilePath Path to the PDF file
+     * @return Loaded document
+     * @throws IOException If the file is missing or not a readable PDF
+     */
+    public PDDocument load(String pdfFilePath) throws IOException {
         File pdfFile = new File(pdfFilePath);
 
         if (!pdfFile.exists()) {
             throw new IOException("PDF file not found: " + pdfFilePath);
         }
 
-        try (PDDocument document = PDDocument.load(pdfFile)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
+        return PDDocument.load(pdfFile);
+    }
 
-            // Clean up the text
-            text = cleanText(text);
+    /**
+     * Opens a PDF from memory; the caller must close the document
+     * @param pdfContent Raw PDF bytes
+     * @return Loaded document
+     * @throws IOException If the content is not a readable PDF
+     */
+    public PDDocument load(byte[] pdfContent) throws IOException {
+        return PDDocument.load(pdfContent);
+    }
 
-            return text;
-        }
+    /**
+     * Opens a PDF from a stream, e.g. an upload, without an intermediate byte array;
+     * the caller must close both the document and the stream
+     * @param pdfStream PDF content
+     * @return Loaded document
+     * @throws IOException If the content is not a readable PDF
+     */
+    public PDDocument load(InputStream pdfStream) throws IOException {
+        return PDDocument.load(pdfStream, MemoryUsageSetting.setupMixed(SCRATCH_MEMORY_BYTES));
     }
 
+    public String extractText(PDDocument document) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
 
-    private String cleanText(String text) {
-        // Remove multiple spaces
-        text = text.replaceAll(" +", " ");
+        // Clean up the text while it is written, instead of copying the whole document per pass
+        try (TextNormalizer.DocumentWriter text = TextNormalizer.documentWriter()) {
+            stripper.writeText(document, text);
+            return text.toString();
+        }
+    }
 
-        // Remove multiple newlines but keep structure
-        text = text.replaceAll("\n\n+", "\n\n");
+    /**
+     * Strips the document one page at a time, stopping early when the listener
+     * has everything it needs or the page budget is used up
+     * @param document Loaded document
+     * @param pageBudget Maximum number of pages to strip, or ALL_PAGES
+     * @param listener Called after each page; may be null
+     * @return Cleaned text of the pages that were stripped
+     * @throws IOException If a page cannot be read
+     */
+    public String extractText(PDDocument document, int pageBudget, PageListener listener) throws IOException {
+        int lastPage = document.getNumberOfPages();
+        if (pageBudget != ALL_PAGES) {
+            lastPage = Math.min(lastPage, pageBudget);
+        }
+
+        PDFTextStripper stripper = new PDFTextStripper();
+        StringBuilder text = new StringBuilder();
+
+        for (int page = 1; page <= lastPage; page++) {
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            try (TextNormalizer.DocumentWriter pageText = TextNormalizer.documentWriter()) {
+                stripper.writeText(document, pageText);
+                if (pageText.isBlank()) {
+                    continue;
+                }
+
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                pageText.appendTo(text);
+            }
+
+            // The listener reads the builder itself; no copy of the text so far per page
+            if (listener != null && listener.onPage(page, text)) {
+                break;
+            }
+        }
 
-        return text.trim();
+        return text.toString();
     }
 
     /**
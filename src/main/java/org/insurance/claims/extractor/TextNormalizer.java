@@ -0,0 +1,206 @@
+package org.insurance.claims.extractor;
+
+import java.io.Writer;
+
+/**
+ * Single-pass text cleanup without intermediate Strings.
+ *
+ * Document text is normalized while PDFTextStripper writes it: runs of spaces
+ * become one space and runs of blank lines become one blank line, then the result
+ * is trimmed. Field values are cleaned from a CharSequence slice of the document
+ * and become a String only if something is left after cleaning.
+ * Both work in a per-thread buffer that is reused from one document to the next.
+ */
+public final class TextNormalizer {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    // A buffer grown past this by one huge document is not kept for the next one
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final ThreadLocal<StringBuilder> DOCUMENT_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+    private static final ThreadLocal<StringBuilder> VALUE_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Starts normalizing one document (or page) on the calling thread.
+     * The writer is only valid until it is closed; close it before the next document.
+     * @return Writer collecting normalized text
+     */
+    public static DocumentWriter documentWriter() {
+        StringBuilder buffer = DOCUMENT_BUFFER.get();
+        buffer.setLength(0);
+        return new DocumentWriter(buffer);
+    }
+
+    /**
+     * Normalizes a whole text at once, same rules as DocumentWriter
+     * @param text Raw text
+     * @return Normalized, trimmed text
+     */
+    public static String normalizeDocument(CharSequence text) {
+        try (DocumentWriter writer = documentWriter()) {
+            writer.append(text);
+            return writer.toString();
+        }
+    }
+
+    /**
+     * Cleans an extracted field value: whitespace runs become one space, surrounding
+     * whitespace and trailing commas/colons are removed, and placeholders made only of
+     * whitespace, dots, underscores and dashes count as no value
+     * @param value Raw value, typically a slice of the document
+     * @return Cleaned value, or null when nothing meaningful is left
+     */
+    public static String normalizeValue(CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+
+        StringBuilder out = VALUE_BUFFER.get();
+        out.setLength(0);
+        boolean inWhitespace = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isWhitespace(c)) {
+                if (!inWhitespace) {
+                    out.append(' ');
+                    inWhitespace = true;
+                }
+            } else {
+                out.append(c);
+                inWhitespace = false;
+            }
+        }
+
+        int start = trimStart(out, 0, out.length());
+        int end = trimEnd(out, start, out.length());
+        while (end > start && (out.charAt(end - 1) == ',' || out.charAt(end - 1) == ':')) {
+            end--;
+        }
+        start = trimStart(out, start, end);
+        end = trimEnd(out, start, end);
+
+        boolean placeholder = true;
+        for (int i = start; i < end && placeholder; i++) {
+            char c = out.charAt(i);
+            placeholder = isWhitespace(c) || c == '.' || c == '_' || c == '-';
+        }
+        if (placeholder) {
+            return null;
+        }
+        String cleaned = out.substring(start, end);
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            VALUE_BUFFER.remove();
+        }
+        return cleaned;
+    }
+
+    // The characters of the regex class \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // Same rule as String.trim(): everything up to and including ' '
+    private static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Writer that keeps one space of every space run and at most two newlines of
+     * every newline run; toString() and appendTo() return the trimmed result
+     */
+    public static final class DocumentWriter extends Writer {
+        private StringBuilder buffer;
+        private char previous;
+        private char beforePrevious;
+
+        private DocumentWriter(StringBuilder buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(int c) {
+            write((char) c);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(text.charAt(i));
+            }
+        }
+
+        @Override
+        public DocumentWriter append(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                write(text.charAt(i));
+            }
+            return this;
+        }
+
+        private void write(char c) {
+            boolean skip = (c == ' ' && previous == ' ')
+                    || (c == '\n' && previous == '\n' && beforePrevious == '\n');
+            if (!skip) {
+                buffer.append(c);
+            }
+            beforePrevious = previous;
+            previous = c;
+        }
+
+        /**
+         * @return true when nothing but whitespace was written
+         */
+        public boolean isBlank() {
+            return trimStart(buffer, 0, buffer.length()) == buffer.length();
+        }
+
+        /**
+         * Appends the trimmed text to a builder without creating a String
+         * @param target Builder to append to
+         */
+        public void appendTo(StringBuilder target) {
+            int start = trimStart(buffer, 0, buffer.length());
+            target.append(buffer, start, trimEnd(buffer, start, buffer.length()));
+        }
+
+        @Override
+        public String toString() {
+            int start = trimStart(buffer, 0, buffer.length());
+            return buffer.substring(start, trimEnd(buffer, start, buffer.length()));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            if (buffer != null && buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                DOCUMENT_BUFFER.remove();
+            }
+            buffer = null;
+        }
+    }
+}
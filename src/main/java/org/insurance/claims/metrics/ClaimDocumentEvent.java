@@ -0,0 +1,88 @@
+package org.insurance.claims.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering one document from PDF load to routing decision.
+ * Serialization and write happen after the event is committed and are only in ClaimMetrics.
+ */
+@Name("org.insurance.claims.Document")
+@Label("Claim Document")
+@Category({"Insurance Claims"})
+@Description("One claim document processed from PDF load to routing")
+@StackTrace(false)
+public class ClaimDocumentEvent extends Event {
+
+    @Label("File Size")
+    @Description("Size of the PDF, or -1 when it was streamed")
+    @DataAmount
+    public long fileSize = -1;
+
+    @Label("Page Count")
+    public int pageCount;
+
+    @Label("Text Length")
+    @Description("Characters of stripped text; 0 when fields came from the AcroForm")
+    public int textLength;
+
+    @Label("Route")
+    public String route;
+
+    @Label("Template")
+    @Description("Form template the fields were read with")
+    public String template;
+
+    @Label("PDF Load")
+    @Timespan
+    public long pdfLoad;
+
+    @Label("Text Strip")
+    @Timespan
+    public long textStrip;
+
+    @Label("Field Extraction")
+    @Timespan
+    public long fieldExtraction;
+
+    @Label("Validation")
+    @Timespan
+    public long validation;
+
+    @Label("Routing")
+    @Timespan
+    public long routing;
+
+    /**
+     * Adds a stage duration; stages that are not part of this event are ignored
+     * @param stage Stage
+     * @param nanos Duration in nanoseconds
+     */
+    public void addStage(ClaimMetrics.Stage stage, long nanos) {
+        switch (stage) {
+            case PDF_LOAD:
+                pdfLoad += nanos;
+                break;
+            case TEXT_STRIP:
+                textStrip += nanos;
+                break;
+            case FIELD_EXTRACTION:
+                fieldExtraction += nanos;
+                break;
+            case VALIDATION:
+                validation += nanos;
+                break;
+            case ROUTING:
+                routing += nanos;
+                break;
+            default:
+                break;
+        }
+    }
+}
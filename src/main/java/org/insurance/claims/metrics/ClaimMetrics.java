@@ -0,0 +1,234 @@
+package org.insurance.claims.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms per processing stage plus counters per route, missing field
+ * and failure type. Safe to share between worker threads.
+ */
+public class ClaimMetrics {
+
+    /**
+     * Processing stages, in pipeline order
+     */
+    public enum Stage {
+        PDF_LOAD("pdf_load"),
+        TEXT_STRIP("text_strip"),
+        FIELD_EXTRACTION("field_extraction"),
+        VALIDATION("validation"),
+        ROUTING("routing"),
+        SERIALIZATION("serialization"),
+        WRITE("write");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Indexed by Stage.ordinal(); replaced as a whole on reset
+    private volatile LatencyHistogram[] stages = newHistograms();
+    private final ConcurrentHashMap<String, LongAdder> routes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> missingFields = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> templates = new ConcurrentHashMap<>();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Records a stage that started at the given time and ends now
+     * @param stage Stage
+     * @param startNanos System.nanoTime() at the start of the stage
+     * @return The current System.nanoTime(), so consecutive stages can chain
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stages[stage.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+    public void recordDuration(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    public void countRoute(String route) {
+        routes.computeIfAbsent(route, k -> new LongAdder()).increment();
+    }
+
+    public void countMissingField(String field) {
+        missingFields.computeIfAbsent(field, k -> new LongAdder()).increment();
+    }
+
+    public void countFailure(Throwable error) {
+        failures.computeIfAbsent(error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param template Name of the form template a document was read with; documents that
+     *                 matched no template count under the fallback template's name
+     */
+    public void countTemplate(String template) {
+        templates.computeIfAbsent(template, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Counts a probable duplicate and moves it from the route it was first counted under
+     * @param fromRoute Route the claim was counted under by countRoute()
+     * @param toRoute Route of duplicates
+     */
+    public void countDuplicate(String fromRoute, String toRoute) {
+        duplicates.increment();
+        if (!fromRoute.equals(toRoute)) {
+            routes.computeIfAbsent(fromRoute, k -> new LongAdder()).decrement();
+            countRoute(toRoute);
+        }
+    }
+
+    /**
+     * Discards everything recorded so far, e.g. after warm-up; not atomic with concurrent recording
+     */
+    public void reset() {
+        stages = newHistograms();
+        routes.clear();
+        missingFields.clear();
+        failures.clear();
+        templates.clear();
+        duplicates.reset();
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format
+     * @return Exposition text
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP claims_stage_seconds Latency of each claim processing stage.\n");
+        out.append("# TYPE claims_stage_seconds summary\n");
+        LatencyHistogram[] histograms = stages;
+        for (Stage value : Stage.values()) {
+            String stage = value.getLabel();
+            LatencyHistogram histogram = histograms[value.ordinal()];
+            for (double quantile : QUANTILES) {
+                out.append("claims_stage_seconds{stage=\"").append(stage)
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append("claims_stage_seconds_sum{stage=\"").append(stage).append("\"} ")
+                    .append(seconds(histogram.getTotalNanos())).append('\n');
+            out.append("claims_stage_seconds_count{stage=\"").append(stage).append("\"} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+        appendCounter(out, "claims_routed_total", "Claims per recommended route.", "route", routes);
+        appendCounter(out, "claims_missing_field_total", "Claims missing each mandatory field.", "field", missingFields);
+        appendCounter(out, "claims_failures_total", "Documents that failed, by error type.", "type", failures);
+        appendCounter(out, "claims_template_total", "Documents per recognized form template.", "template", templates);
+        out.append("# HELP claims_duplicates_total Claims flagged as probable duplicates of an earlier claim.\n");
+        out.append("# TYPE claims_duplicates_total counter\n");
+        out.append("claims_duplicates_total ").append(duplicates.sum()).append('\n');
+        return out.toString();
+    }
+
+    /**
+     * Writes the Prometheus text atomically, e.g. for the node exporter's textfile collector
+     * @param file Target file
+     * @throws IOException If the file cannot be written
+     */
+    public void writePrometheus(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, toPrometheus().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Human-readable summary for the end of a batch
+     * @return Table of stage latencies followed by the counters
+     */
+    public String summary() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-17s %8s %9s %9s %9s %9s %9s%n",
+                "Stage (ms)", "count", "mean", "p50", "p90", "p99", "max"));
+        LatencyHistogram[] histograms = stages;
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            out.append(String.format("%-17s %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    stage.getLabel(), histogram.getCount(),
+                    histogram.getMeanNanos() / 1e6,
+                    histogram.getValueAtPercentile(50) / 1e6,
+                    histogram.getValueAtPercentile(90) / 1e6,
+                    histogram.getValueAtPercentile(99) / 1e6,
+                    histogram.getMaxNanos() / 1e6));
+        }
+        appendSummary(out, "Routes", routes);
+        appendSummary(out, "Missing fields", missingFields);
+        appendSummary(out, "Failures", failures);
+        appendSummary(out, "Templates", templates);
+        if (duplicates.sum() > 0) {
+            out.append("Probable duplicates: ").append(duplicates.sum()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void appendCounter(StringBuilder out, String name, String help, String label,
+                                      Map<String, LongAdder> counters) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            out.append(name).append('{').append(label).append("=\"").append(escape(entry.getKey()))
+                    .append("\"} ").append(entry.getValue().sum()).append('\n');
+        }
+    }
+
+    private static void appendSummary(StringBuilder out, String title, Map<String, LongAdder> counters) {
+        if (counters.isEmpty()) {
+            return;
+        }
+        out.append(title).append(':');
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            out.append(' ').append(entry.getKey()).append('=').append(entry.getValue().sum()).append(',');
+        }
+        out.setLength(out.length() - 1);
+        out.append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,48 @@
+package org.insurance.claims.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Flight Recorder event for one field rule evaluated against a document.
+ * The event's duration is the time spent matching the rule's pattern. Only one in
+ * SAMPLE_RATE extractions is committed, plus every extraction slower than
+ * SLOW_THRESHOLD_NANOS, so a pattern that starts backtracking always shows up.
+ */
+@Name("org.insurance.claims.FieldExtraction")
+@Label("Field Extraction")
+@Category({"Insurance Claims"})
+@Description("Pattern match of one extraction rule (sampled)")
+@StackTrace(false)
+public class FieldExtractionEvent extends Event {
+
+    // -Dclaims.jfr.extractionSampleRate=1 records every extraction
+    private static final int SAMPLE_RATE = Math.max(1, Integer.getInteger("claims.jfr.extractionSampleRate", 64));
+    private static final long SLOW_THRESHOLD_NANOS = 1_000_000L;
+
+    @Label("Field")
+    public String field;
+
+    @Label("Matched")
+    public boolean matched;
+
+    @Label("Anchor Occurrences")
+    @Description("Label occurrences the pattern was tried at")
+    public int anchors;
+
+    /**
+     * Commits the event if it is sampled or slow; call after end()
+     * @param elapsedNanos Measured matching time
+     */
+    public void commitSampled(long elapsedNanos) {
+        if (elapsedNanos >= SLOW_THRESHOLD_NANOS || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) {
+            commit();
+        }
+    }
+}
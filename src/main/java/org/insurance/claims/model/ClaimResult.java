@@ -2,6 +2,7 @@ package org.insurance.claims.model;
 
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +13,15 @@ public class ClaimResult {
     private List<String> missingFields;
     private String recommendedRoute;
     private String reasoning;
+    // Urgency of the route's work queue, 1 first; absent in results stored before it was recorded
+    private Integer priority;
+    // Machine-readable cause for exceptional routes, e.g. timeouts; absent otherwise
+    private String reasonCode;
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> inconsistencies;
+    // SHA-256 of the document the result was extracted from, for its claim id; not stored
+    @JsonIgnore
+    private byte[] contentSha256;
 
     public ClaimResult() {
         this.missingFields = new ArrayList<>();
@@ -58,6 +68,44 @@ public class ClaimResult {
         this.reasoning = reasoning;
     }
 
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    public String getReasonCode() {
+        return reasonCode;
+    }
+
+    public void setReasonCode(String reasonCode) {
+        this.reasonCode = reasonCode;
+    }
+
+    /**
+     * @return Consistency problems found by ClaimValidator, or null
+     */
+    public List<String> getInconsistencies() {
+        return inconsistencies;
+    }
+
+    public void setInconsistencies(List<String> inconsistencies) {
+        this.inconsistencies = inconsistencies;
+    }
+
+    /**
+     * @return SHA-256 of the processed document, or null if the parser read the file itself
+     */
+    public byte[] getContentSha256() {
+        return contentSha256;
+    }
+
+    public void setContentSha256(byte[] contentSha256) {
+        this.contentSha256 = contentSha256;
+    }
+
     public void addMissingField(String field) {
         this.missingFields.add(field);
     }
@@ -1,374 +1,548 @@
 package org.insurance.claims.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Fields extracted from one claim.
+ * Values live in one flat array indexed by FieldId with a presence bitset beside it;
+ * the nested groups (policyInfo, incidentInfo, ...) are views over that array, so the
+ * JSON shape is unchanged but a claim costs one object and one array instead of six
+ * objects. Mandatory-field checks become mask tests, see missing(long).
+ */
 @JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"policyInfo", "incidentInfo", "involvedParties", "assetDetails", "otherFields"})
 public class ExtractedFields {
-    private PolicyInfo policyInfo;
-    private IncidentInfo incidentInfo;
-    private InvolvedParties involvedParties;
-    private AssetDetails assetDetails;
-    private OtherFields otherFields;
+
+    // Interned values are shared by all results; the pool stops growing at this size
+    private static final int MAX_INTERNED = 4096;
+    private static final ConcurrentHashMap<String, String> INTERNED = new ConcurrentHashMap<>();
+
+    private final String[] values = new String[FieldId.count()];
+    private long present;
+    private double estimatedDamage;
+
+    // Set when extraction was cut short; not part of the JSON output
+    private String timeoutCode;
+    private String timeoutDetail;
+    // Id of an earlier claim for the same loss, set by the duplicate index; stored with the
+    // result so that re-routing applies the duplicate rule again
+    private String duplicateOf;
 
     public ExtractedFields() {
-        this.policyInfo = new PolicyInfo();
-        this.incidentInfo = new IncidentInfo();
-        this.involvedParties = new InvolvedParties();
-        this.assetDetails = new AssetDetails();
-        this.otherFields = new OtherFields();
+        set(FieldId.ASSET_TYPE, "Vehicle");
+        set(FieldId.CLAIM_TYPE, "Automobile");
+    }
+
+    /**
+     * @param id Field
+     * @return Value as extracted (possibly blank), or null
+     */
+    public String get(FieldId id) {
+        if (id == FieldId.ESTIMATED_DAMAGE) {
+            Double damage = getEstimatedDamage();
+            return damage != null ? damage.toString() : null;
+        }
+        return values[id.ordinal()];
+    }
+
+    /**
+     * @param id Text field; the estimated damage is set with setEstimatedDamage()
+     * @param value Value, or null to clear it
+     */
+    public void set(FieldId id, String value) {
+        if (id == FieldId.ESTIMATED_DAMAGE) {
+            throw new IllegalArgumentException("Estimated damage is numeric, use setEstimatedDamage()");
+        }
+        if (value != null && id.isInterned()) {
+            value = intern(value);
+        }
+        values[id.ordinal()] = value;
+        if (isBlank(value)) {
+            present &= ~id.bit();
+        } else {
+            present |= id.bit();
+        }
+    }
+
+    /**
+     * @param id Field
+     * @return true when the field has a non-blank value
+     */
+    public boolean has(FieldId id) {
+        return (present & id.bit()) != 0;
+    }
+
+    /**
+     * @param mask Fields to check, see FieldId.mask()
+     * @return Bits of the fields in the mask that are null or blank
+     */
+    public long missing(long mask) {
+        return mask & ~present;
+    }
+
+    /**
+     * @return Estimated damage amount, or null
+     */
+    @JsonIgnore
+    public Double getEstimatedDamage() {
+        return has(FieldId.ESTIMATED_DAMAGE) ? estimatedDamage : null;
+    }
+
+    public void setEstimatedDamage(Double amount) {
+        if (amount == null) {
+            estimatedDamage = 0;
+            present &= ~FieldId.ESTIMATED_DAMAGE.bit();
+        } else {
+            estimatedDamage = amount;
+            present |= FieldId.ESTIMATED_DAMAGE.bit();
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        // Same rule as String.trim()
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String intern(String value) {
+        String shared = INTERNED.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return value;
+        }
+        shared = INTERNED.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    /**
+     * Copies one group's values, used when a group is set as a whole (e.g. by Jackson)
+     */
+    private void copyGroup(FieldId.Group group, ExtractedFields from) {
+        for (FieldId id : FieldId.values()) {
+            if (id.getGroup() != group) {
+                continue;
+            }
+            if (id == FieldId.ESTIMATED_DAMAGE) {
+                setEstimatedDamage(from != null ? from.getEstimatedDamage() : null);
+            } else {
+                set(id, from != null ? from.get(id) : null);
+            }
+        }
+    }
+
+    /**
+     * Base of the group views; a view reads and writes its owner's slots
+     */
+    abstract static class View {
+        protected final ExtractedFields owner;
+
+        View(ExtractedFields owner) {
+            this.owner = owner;
+        }
     }
 
     // Nested classes for organization
-    public static class PolicyInfo {
-        private String policyNumber;
-        private String policyholderName;
-        private String effectiveDate;
-        private String naicCode;
-        private String lineOfBusiness;
+
+    @JsonPropertyOrder({"policyNumber", "policyholderName", "effectiveDate", "naicCode", "lineOfBusiness"})
+    public static class PolicyInfo extends View {
+        public PolicyInfo() {
+            super(new ExtractedFields());
+        }
+
+        private PolicyInfo(ExtractedFields owner) {
+            super(owner);
+        }
 
         // Getters and Setters
         public String getPolicyNumber() {
-            return policyNumber;
+            return owner.get(FieldId.POLICY_NUMBER);
         }
 
         public void setPolicyNumber(String policyNumber) {
-            this.policyNumber = policyNumber;
+            owner.set(FieldId.POLICY_NUMBER, policyNumber);
         }
 
         public String getPolicyholderName() {
-            return policyholderName;
+            return owner.get(FieldId.POLICYHOLDER_NAME);
         }
 
         public void setPolicyholderName(String policyholderName) {
-            this.policyholderName = policyholderName;
+            owner.set(FieldId.POLICYHOLDER_NAME, policyholderName);
         }
 
         public String getEffectiveDate() {
-            return effectiveDate;
+            return owner.get(FieldId.EFFECTIVE_DATE);
         }
 
         public void setEffectiveDate(String effectiveDate) {
-            this.effectiveDate = effectiveDate;
+            owner.set(FieldId.EFFECTIVE_DATE, effectiveDate);
         }
 
         public String getNaicCode() {
-            return naicCode;
+            return owner.get(FieldId.NAIC_CODE);
         }
 
         public void setNaicCode(String naicCode) {
-            this.naicCode = naicCode;
+            owner.set(FieldId.NAIC_CODE, naicCode);
         }
 
         public String getLineOfBusiness() {
-            return lineOfBusiness;
+            return owner.get(FieldId.LINE_OF_BUSINESS);
         }
 
         public void setLineOfBusiness(String lineOfBusiness) {
-            this.lineOfBusiness = lineOfBusiness;
+            owner.set(FieldId.LINE_OF_BUSINESS, lineOfBusiness);
         }
     }
 
-    public static class IncidentInfo {
-        private String dateOfLoss;
-        private String timeOfLoss;
-        private String location;
-        private String description;
-        private String reportNumber;
-        private String policeDepartmentContacted;
+    @JsonPropertyOrder({"dateOfLoss", "timeOfLoss", "location", "description", "reportNumber", "policeDepartmentContacted"})
+    public static class IncidentInfo extends View {
+        public IncidentInfo() {
+            super(new ExtractedFields());
+        }
+
+        private IncidentInfo(ExtractedFields owner) {
+            super(owner);
+        }
 
         // Getters and Setters
         public String getDateOfLoss() {
-            return dateOfLoss;
+            return owner.get(FieldId.DATE_OF_LOSS);
         }
 
         public void setDateOfLoss(String dateOfLoss) {
-            this.dateOfLoss = dateOfLoss;
+            owner.set(FieldId.DATE_OF_LOSS, dateOfLoss);
         }
 
         public String getTimeOfLoss() {
-            return timeOfLoss;
+            return owner.get(FieldId.TIME_OF_LOSS);
         }
 
         public void setTimeOfLoss(String timeOfLoss) {
-            this.timeOfLoss = timeOfLoss;
+            owner.set(FieldId.TIME_OF_LOSS, timeOfLoss);
         }
 
         public String getLocation() {
-            return location;
+            return owner.get(FieldId.LOCATION);
         }
 
         public void setLocation(String location) {
-            this.location = location;
+            owner.set(FieldId.LOCATION, location);
         }
 
         public String getDescription() {
-            return description;
+            return owner.get(FieldId.DESCRIPTION);
         }
 
         public void setDescription(String description) {
-            this.description = description;
+            owner.set(FieldId.DESCRIPTION, description);
         }
 
         public String getReportNumber() {
-            return reportNumber;
+            return owner.get(FieldId.REPORT_NUMBER);
         }
 
         public void setReportNumber(String reportNumber) {
-            this.reportNumber = reportNumber;
+            owner.set(FieldId.REPORT_NUMBER, reportNumber);
         }
 
         public String getPoliceDepartmentContacted() {
-            return policeDepartmentContacted;
+            return owner.get(FieldId.POLICE_DEPARTMENT_CONTACTED);
         }
 
         public void setPoliceDepartmentContacted(String policeDepartmentContacted) {
-            this.policeDepartmentContacted = policeDepartmentContacted;
+            owner.set(FieldId.POLICE_DEPARTMENT_CONTACTED, policeDepartmentContacted);
         }
     }
 
-    public static class InvolvedParties {
-        private String driverName;
-        private String driverAddress;
-        private String driverPhone;
-        private String ownerName;
-        private String ownerAddress;
-        private String ownerPhone;
-        private String witnesses;
-        private String injuredParties;
+    @JsonPropertyOrder({"driverName", "driverAddress", "driverPhone", "ownerName", "ownerAddress", "ownerPhone", "witnesses", "injuredParties"})
+    public static class InvolvedParties extends View {
+        public InvolvedParties() {
+            super(new ExtractedFields());
+        }
+
+        private InvolvedParties(ExtractedFields owner) {
+            super(owner);
+        }
 
         // Getters and Setters
         public String getDriverName() {
-            return driverName;
+            return owner.get(FieldId.DRIVER_NAME);
         }
 
         public void setDriverName(String driverName) {
-            this.driverName = driverName;
+            owner.set(FieldId.DRIVER_NAME, driverName);
         }
 
         public String getDriverAddress() {
-            return driverAddress;
+            return owner.get(FieldId.DRIVER_ADDRESS);
         }
 
         public void setDriverAddress(String driverAddress) {
-            this.driverAddress = driverAddress;
+            owner.set(FieldId.DRIVER_ADDRESS, driverAddress);
         }
 
         public String getDriverPhone() {
-            return driverPhone;
+            return owner.get(FieldId.DRIVER_PHONE);
         }
 
         public void setDriverPhone(String driverPhone) {
-            this.driverPhone = driverPhone;
+            owner.set(FieldId.DRIVER_PHONE, driverPhone);
         }
 
         public String getOwnerName() {
-            return ownerName;
+            return owner.get(FieldId.OWNER_NAME);
         }
 
         public void setOwnerName(String ownerName) {
-            this.ownerName = ownerName;
+            owner.set(FieldId.OWNER_NAME, ownerName);
         }
 
         public String getOwnerAddress() {
-            return ownerAddress;
+            return owner.get(FieldId.OWNER_ADDRESS);
         }
 
         public void setOwnerAddress(String ownerAddress) {
-            this.ownerAddress = ownerAddress;
+            owner.set(FieldId.OWNER_ADDRESS, ownerAddress);
         }
 
         public String getOwnerPhone() {
-            return ownerPhone;
+            return owner.get(FieldId.OWNER_PHONE);
         }
 
         public void setOwnerPhone(String ownerPhone) {
-            this.ownerPhone = ownerPhone;
+            owner.set(FieldId.OWNER_PHONE, ownerPhone);
         }
 
         public String getWitnesses() {
-            return witnesses;
+            return owner.get(FieldId.WITNESSES);
         }
 
         public void setWitnesses(String witnesses) {
-            this.witnesses = witnesses;
+            owner.set(FieldId.WITNESSES, witnesses);
         }
 
         public String getInjuredParties() {
-            return injuredParties;
+            return owner.get(FieldId.INJURED_PARTIES);
         }
 
         public void setInjuredParties(String injuredParties) {
-            this.injuredParties = injuredParties;
+            owner.set(FieldId.INJURED_PARTIES, injuredParties);
         }
     }
 
-    public static class AssetDetails {
-        private String assetType = "Vehicle";
-        private String vin;
-        private String make;
-        private String model;
-        private String year;
-        private String plateNumber;
-        private String state;
-        private String damageDescription;
-        private Double estimatedDamage;
+    @JsonPropertyOrder({"assetType", "vin", "make", "model", "year", "plateNumber", "state", "damageDescription", "estimatedDamage"})
+    public static class AssetDetails extends View {
+        public AssetDetails() {
+            super(new ExtractedFields());
+        }
+
+        private AssetDetails(ExtractedFields owner) {
+            super(owner);
+        }
 
         // Getters and Setters
         public String getAssetType() {
-            return assetType;
+            return owner.get(FieldId.ASSET_TYPE);
         }
 
         public void setAssetType(String assetType) {
-            this.assetType = assetType;
+            owner.set(FieldId.ASSET_TYPE, assetType);
         }
 
         public String getVin() {
-            return vin;
+            return owner.get(FieldId.VIN);
         }
 
         public void setVin(String vin) {
-            this.vin = vin;
+            owner.set(FieldId.VIN, vin);
         }
 
         public String getMake() {
-            return make;
+            return owner.get(FieldId.MAKE);
         }
 
         public void setMake(String make) {
-            this.make = make;
+            owner.set(FieldId.MAKE, make);
         }
 
         public String getModel() {
-            return model;
+            return owner.get(FieldId.MODEL);
         }
 
         public void setModel(String model) {
-            this.model = model;
+            owner.set(FieldId.MODEL, model);
         }
 
         public String getYear() {
-            return year;
+            return owner.get(FieldId.YEAR);
         }
 
         public void setYear(String year) {
-            this.year = year;
+            owner.set(FieldId.YEAR, year);
         }
 
         public String getPlateNumber() {
-            return plateNumber;
+            return owner.get(FieldId.PLATE_NUMBER);
         }
 
         public void setPlateNumber(String plateNumber) {
-            this.plateNumber = plateNumber;
+            owner.set(FieldId.PLATE_NUMBER, plateNumber);
         }
 
         public String getState() {
-            return state;
+            return owner.get(FieldId.STATE);
         }
 
         public void setState(String state) {
-            this.state = state;
+            owner.set(FieldId.STATE, state);
         }
 
         public String getDamageDescription() {
-            return damageDescription;
+            return owner.get(FieldId.DAMAGE_DESCRIPTION);
         }
 
         public void setDamageDescription(String damageDescription) {
-            this.damageDescription = damageDescription;
+            owner.set(FieldId.DAMAGE_DESCRIPTION, damageDescription);
         }
 
         public Double getEstimatedDamage() {
-            return estimatedDamage;
+            return owner.getEstimatedDamage();
         }
 
         public void setEstimatedDamage(Double estimatedDamage) {
-            this.estimatedDamage = estimatedDamage;
+            owner.setEstimatedDamage(estimatedDamage);
         }
     }
 
-    public static class OtherFields {
-        private String claimType = "Automobile";
-        private String attachments;
-        private String agencyName;
-        private String agencyContact;
+    @JsonPropertyOrder({"claimType", "attachments", "agencyName", "agencyContact"})
+    public static class OtherFields extends View {
+        public OtherFields() {
+            super(new ExtractedFields());
+        }
+
+        private OtherFields(ExtractedFields owner) {
+            super(owner);
+        }
 
         // Getters and Setters
         public String getClaimType() {
-            return claimType;
+            return owner.get(FieldId.CLAIM_TYPE);
         }
 
         public void setClaimType(String claimType) {
-            this.claimType = claimType;
+            owner.set(FieldId.CLAIM_TYPE, claimType);
         }
 
         public String getAttachments() {
-            return attachments;
+            return owner.get(FieldId.ATTACHMENTS);
         }
 
         public void setAttachments(String attachments) {
-            this.attachments = attachments;
+            owner.set(FieldId.ATTACHMENTS, attachments);
         }
 
         public String getAgencyName() {
-            return agencyName;
+            return owner.get(FieldId.AGENCY_NAME);
         }
 
         public void setAgencyName(String agencyName) {
-            this.agencyName = agencyName;
+            owner.set(FieldId.AGENCY_NAME, agencyName);
         }
 
         public String getAgencyContact() {
-            return agencyContact;
+            return owner.get(FieldId.AGENCY_CONTACT);
         }
 
         public void setAgencyContact(String agencyContact) {
-            this.agencyContact = agencyContact;
+            owner.set(FieldId.AGENCY_CONTACT, agencyContact);
         }
     }
 
-    // Main class getters and setters
+    // Main class getters and setters; views are created on demand and hold no state of their own
     public PolicyInfo getPolicyInfo() {
-        return policyInfo;
+        return new PolicyInfo(this);
     }
 
     public void setPolicyInfo(PolicyInfo policyInfo) {
-        this.policyInfo = policyInfo;
+        copyGroup(FieldId.Group.POLICY_INFO, policyInfo != null ? policyInfo.owner : null);
     }
 
     public IncidentInfo getIncidentInfo() {
-        return incidentInfo;
+        return new IncidentInfo(this);
     }
 
     public void setIncidentInfo(IncidentInfo incidentInfo) {
-        this.incidentInfo = incidentInfo;
+        copyGroup(FieldId.Group.INCIDENT_INFO, incidentInfo != null ? incidentInfo.owner : null);
     }
 
     public InvolvedParties getInvolvedParties() {
-        return involvedParties;
+        return new InvolvedParties(this);
     }
 
     public void setInvolvedParties(InvolvedParties involvedParties) {
-        this.involvedParties = involvedParties;
+        copyGroup(FieldId.Group.INVOLVED_PARTIES, involvedParties != null ? involvedParties.owner : null);
     }
 
     public AssetDetails getAssetDetails() {
-        return assetDetails;
+        return new AssetDetails(this);
     }
 
     public void setAssetDetails(AssetDetails assetDetails) {
-        this.assetDetails = assetDetails;
+        copyGroup(FieldId.Group.ASSET_DETAILS, assetDetails != null ? assetDetails.owner : null);
     }
 
     public OtherFields getOtherFields() {
-        return otherFields;
+        return new OtherFields(this);
     }
 
     public void setOtherFields(OtherFields otherFields) {
-        this.otherFields = otherFields;
+        copyGroup(FieldId.Group.OTHER_FIELDS, otherFields != null ? otherFields.owner : null);
+    }
+
+    @JsonIgnore
+    public String getTimeoutCode() {
+        return timeoutCode;
+    }
+
+    @JsonIgnore
+    public String getTimeoutDetail() {
+        return timeoutDetail;
+    }
+
+    /**
+     * Marks the extraction as incomplete because a time budget ran out
+     * @param code Reason code, see ClaimRouter
+     * @param detail What timed out
+     */
+    public void setTimeout(String code, String detail) {
+        this.timeoutCode = code;
+        this.timeoutDetail = detail;
+    }
+
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    /**
+     * Marks the claim as a probable refiling of an earlier one
+     * @param claimId Id of the earlier claim, or null
+     */
+    public void setDuplicateOf(String claimId) {
+        this.duplicateOf = claimId;
     }
-}
\ No newline at end of file
+}
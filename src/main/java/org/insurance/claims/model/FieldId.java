@@ -0,0 +1,143 @@
+package org.insurance.claims.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Identifies one extracted field; the ordinal is the field's slot in ExtractedFields
+ * and its bit in the presence mask.
+ * Low-cardinality fields are interned so that many results held in memory share one
+ * copy of values such as state codes or makes.
+ */
+public enum FieldId {
+    POLICY_NUMBER(Group.POLICY_INFO, "policyNumber", false),
+    POLICYHOLDER_NAME(Group.POLICY_INFO, "policyholderName", false),
+    EFFECTIVE_DATE(Group.POLICY_INFO, "effectiveDate", false),
+    NAIC_CODE(Group.POLICY_INFO, "naicCode", true),
+    LINE_OF_BUSINESS(Group.POLICY_INFO, "lineOfBusiness", true),
+
+    DATE_OF_LOSS(Group.INCIDENT_INFO, "dateOfLoss", false),
+    TIME_OF_LOSS(Group.INCIDENT_INFO, "timeOfLoss", false),
+    LOCATION(Group.INCIDENT_INFO, "location", false),
+    DESCRIPTION(Group.INCIDENT_INFO, "description", false),
+    REPORT_NUMBER(Group.INCIDENT_INFO, "reportNumber", false),
+    POLICE_DEPARTMENT_CONTACTED(Group.INCIDENT_INFO, "policeDepartmentContacted", true),
+
+    DRIVER_NAME(Group.INVOLVED_PARTIES, "driverName", false),
+    DRIVER_ADDRESS(Group.INVOLVED_PARTIES, "driverAddress", false),
+    DRIVER_PHONE(Group.INVOLVED_PARTIES, "driverPhone", false),
+    OWNER_NAME(Group.INVOLVED_PARTIES, "ownerName", false),
+    OWNER_ADDRESS(Group.INVOLVED_PARTIES, "ownerAddress", false),
+    OWNER_PHONE(Group.INVOLVED_PARTIES, "ownerPhone", false),
+    WITNESSES(Group.INVOLVED_PARTIES, "witnesses", false),
+    INJURED_PARTIES(Group.INVOLVED_PARTIES, "injuredParties", false),
+
+    ASSET_TYPE(Group.ASSET_DETAILS, "assetType", true),
+    VIN(Group.ASSET_DETAILS, "vin", false),
+    MAKE(Group.ASSET_DETAILS, "make", true),
+    MODEL(Group.ASSET_DETAILS, "model", true),
+    YEAR(Group.ASSET_DETAILS, "year", true),
+    PLATE_NUMBER(Group.ASSET_DETAILS, "plateNumber", false),
+    STATE(Group.ASSET_DETAILS, "state", true),
+    DAMAGE_DESCRIPTION(Group.ASSET_DETAILS, "damageDescription", false),
+    // Numeric; kept outside the string slots, see ExtractedFields.getEstimatedDamage()
+    ESTIMATED_DAMAGE(Group.ASSET_DETAILS, "estimatedDamage", false),
+
+    CLAIM_TYPE(Group.OTHER_FIELDS, "claimType", true),
+    ATTACHMENTS(Group.OTHER_FIELDS, "attachments", false),
+    AGENCY_NAME(Group.OTHER_FIELDS, "agencyName", true),
+    AGENCY_CONTACT(Group.OTHER_FIELDS, "agencyContact", false);
+
+    /**
+     * The nested JSON objects fields are grouped under
+     */
+    public enum Group {
+        POLICY_INFO("policyInfo"),
+        INCIDENT_INFO("incidentInfo"),
+        INVOLVED_PARTIES("involvedParties"),
+        ASSET_DETAILS("assetDetails"),
+        OTHER_FIELDS("otherFields");
+
+        private final String jsonName;
+
+        Group(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+    }
+
+    private static final FieldId[] VALUES = values();
+    private static final Map<String, FieldId> BY_PATH = new HashMap<>();
+
+    static {
+        for (FieldId id : VALUES) {
+            BY_PATH.put(id.getPath(), id);
+        }
+    }
+
+    private final Group group;
+    private final String jsonName;
+    private final boolean interned;
+
+    FieldId(Group group, String jsonName, boolean interned) {
+        this.group = group;
+        this.jsonName = jsonName;
+        this.interned = interned;
+    }
+
+    public Group getGroup() {
+        return group;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    /**
+     * @return Path as in the JSON output, e.g. "assetDetails.vin"
+     */
+    public String getPath() {
+        return group.getJsonName() + "." + jsonName;
+    }
+
+    /**
+     * @return true when values are drawn from a small set and shared between results
+     */
+    public boolean isInterned() {
+        return interned;
+    }
+
+    /**
+     * @return This field's bit in a presence mask
+     */
+    public long bit() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * @param ids Fields
+     * @return Presence mask with the bits of all given fields
+     */
+    public static long mask(FieldId... ids) {
+        long mask = 0;
+        for (FieldId id : ids) {
+            mask |= id.bit();
+        }
+        return mask;
+    }
+
+    /**
+     * @param path Path such as "assetDetails.vin"
+     * @return Field, or null when no field has that path
+     */
+    public static FieldId forPath(String path) {
+        return BY_PATH.get(path);
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+}
@@ -0,0 +1,682 @@
+package org.insurance.claims.queue;
+
+import org.insurance.claims.store.DirectoryLock;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable priority queue of the claims sent to one route.
+ *
+ * Entries are delivered by priority (1 first) and then in arrival order. Every enqueue
+ * and acknowledgement is appended to queue.log as [int length][int crc32][byte type]
+ * [long sequence], an enqueue followed by [byte priority][long arrival millis]
+ * [short idLength][id][payload]. Writers fill an in-memory batch that a background
+ * thread writes and syncs in one go (group commit): enqueue() returns once its record
+ * is durable, concurrent producers share one fsync, and bulk producers offer() many
+ * entries and sync() once.
+ * Deliveries are not logged: an entry that was taken but not acknowledged before a
+ * crash is delivered again after replay (at-least-once). Once acknowledged entries
+ * make up most of the log it is rewritten with only the live ones. One process at a time
+ * may open a queue; consumers in other processes wait until the producer has closed it.
+ * Only the order of the backlog is held in memory: priority, sequence, arrival time and
+ * log offset per entry. poll() reads the claim id and payload back from the log, or from
+ * the pending batch for records not yet written.
+ */
+public class RouteQueue implements Closeable {
+
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 2;
+
+    static final String LOG_FILE = "queue.log";
+
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+    // First record of a compacted log, so sequence numbers are never reused
+    private static final byte NEXT_SEQUENCE = 3;
+
+    private static final int HEADER_BYTES = 4 + 4;
+    private static final int ENQUEUE_FIXED_BYTES = 1 + 8 + 1 + 8 + 2;
+    // Acknowledged records a log may carry before it is worth rewriting
+    private static final int MIN_DEAD_RECORDS_FOR_COMPACTION = 10_000;
+
+    private final Path logFile;
+    private final DirectoryLock directoryLock;
+    private final long commitIntervalMillis;
+    private final int minDeadRecordsForCompaction;
+    private final Thread flusher;
+
+    // Everything below is guarded by lock, which is also the commit monitor
+    private final Object lock = new Object();
+    private final PriorityQueue<Slot> ready = new PriorityQueue<>();
+    private final Map<Long, Slot> inFlight = new HashMap<>();
+    private FileChannel channel;
+    // Records appended after the ones being written, covering [writing end, appendedBytes)
+    private ByteBuffer batch = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    // Records the flusher is writing, covering [durableBytes, ...); null between flushes
+    private ByteBuffer writing;
+    private long nextSequence;
+    // Offsets count every byte ever appended; a compacted log starts at logBase
+    private long appendedBytes;
+    private long durableBytes;
+    private long logBase;
+    // Records in the log that no longer describe a live entry
+    private long deadRecords;
+    private IOException flushFailure;
+    private boolean closed;
+
+    public RouteQueue(Path directory) throws IOException {
+        this(directory, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens (or creates) a queue and replays its log
+     * @param directory Queue directory
+     * @param commitIntervalMillis How long a flush waits to gather more writers
+     * @throws IOException If the log cannot be opened or replayed
+     */
+    public RouteQueue(Path directory, long commitIntervalMillis) throws IOException {
+        this(directory, commitIntervalMillis, MIN_DEAD_RECORDS_FOR_COMPACTION);
+    }
+
+    // Tests lower the compaction threshold to rewrite small logs
+    RouteQueue(Path directory, long commitIntervalMillis, int minDeadRecordsForCompaction) throws IOException {
+        this.logFile = Files.createDirectories(directory).resolve(LOG_FILE);
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.minDeadRecordsForCompaction = minDeadRecordsForCompaction;
+        this.directoryLock = DirectoryLock.acquire(directory, "Work queue");
+        try {
+            this.channel = FileChannel.open(logFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replay();
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            directoryLock.close();
+            throw e;
+        }
+
+        flusher = new Thread(this::flushLoop, "route-queue-flusher-" + directory.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Adds a claim and waits until the entry is durable
+     * @param claimId Claim id
+     * @param priority Priority from the routing decision, 1 is delivered first
+     * @param payload Serialized result
+     * @return The new entry
+     * @throws IOException If the record cannot be written or synced
+     */
+    public Entry enqueue(String claimId, int priority, byte[] payload) throws IOException {
+        Entry entry = offer(claimId, priority, payload);
+        sync();
+        return entry;
+    }
+
+    /**
+     * Adds a claim without waiting for the group commit; it can be taken right away.
+     * Bulk producers offer many entries and call sync() once.
+     * @param claimId Claim id
+     * @param priority Priority from the routing decision, 1 is delivered first
+     * @param payload Serialized result
+     * @return The new entry
+     * @throws IOException If the queue is closed or a previous flush failed
+     */
+    public Entry offer(String claimId, int priority, byte[] payload) throws IOException {
+        byte[] id = claimId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Claim id too long");
+        }
+        if (priority < 0 || priority > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Priority must be between 0 and " + Byte.MAX_VALUE);
+        }
+
+        synchronized (lock) {
+            checkOpen();
+            Entry entry = new Entry(nextSequence++, priority, System.currentTimeMillis(), claimId, payload);
+            ByteBuffer record = encodeEnqueue(entry, id);
+            ready.add(new Slot(entry.sequence, priority, entry.arrivalMillis, appendedBytes, record.remaining()));
+            append(record);
+            lock.notifyAll();
+            return entry;
+        }
+    }
+
+    /**
+     * Takes the most urgent entry; it stays in flight until acknowledged or released
+     * @return Entry, or null when the queue is empty
+     * @throws IOException If the entry cannot be read back from the log; it stays queued
+     */
+    public Entry poll() throws IOException {
+        synchronized (lock) {
+            Slot slot = ready.poll();
+            if (slot == null) {
+                return null;
+            }
+            Entry entry;
+            try {
+                entry = decodeEnqueue(readRecord(slot));
+            } catch (IOException e) {
+                ready.add(slot);
+                throw e;
+            }
+            inFlight.put(slot.sequence, slot);
+            return entry;
+        }
+    }
+
+    /**
+     * Takes the most urgent entry, waiting for one to arrive
+     * @param timeout Longest wait
+     * @param unit Unit of the timeout
+     * @return Entry, or null if none arrived in time
+     * @throws IOException If the entry cannot be read back from the log; it stays queued
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public Entry poll(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (ready.isEmpty() && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            return poll();
+        }
+    }
+
+    /**
+     * Marks an entry as done. Acknowledgements are made durable by the next group commit
+     * without waiting for it; a lost one only means the entry is delivered again.
+     * Call sync() to wait for them.
+     * @param sequence Sequence of a taken entry
+     * @return false if the entry is not in flight (unknown or already acknowledged)
+     * @throws IOException If the queue is closed or a previous flush failed
+     */
+    public boolean ack(long sequence) throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            if (inFlight.remove(sequence) == null) {
+                return false;
+            }
+            append(encodeAck(sequence));
+            // The enqueue record and the ack itself are both dead now
+            deadRecords += 2;
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Returns a taken entry to the queue, e.g. when its consumer gives up on it
+     * @param sequence Sequence of a taken entry
+     * @return false if the entry is not in flight
+     */
+    public boolean release(long sequence) {
+        synchronized (lock) {
+            Slot slot = inFlight.remove(sequence);
+            if (slot == null) {
+                return false;
+            }
+            ready.add(slot);
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Waits until every record appended so far, acknowledgements included, is durable
+     * @throws IOException If a flush fails
+     */
+    public void sync() throws IOException {
+        long end;
+        synchronized (lock) {
+            end = appendedBytes;
+        }
+        awaitDurable(end);
+    }
+
+    /**
+     * @return Entries waiting to be taken
+     */
+    public int size() {
+        synchronized (lock) {
+            return ready.size();
+        }
+    }
+
+    /**
+     * @return Entries taken but not yet acknowledged
+     */
+    public int inFlightCount() {
+        synchronized (lock) {
+            return inFlight.size();
+        }
+    }
+
+    /**
+     * @return Arrival time of the oldest waiting entry, or -1 when none is waiting
+     */
+    public long oldestArrivalMillis() {
+        synchronized (lock) {
+            long oldest = -1;
+            for (Slot slot : ready) {
+                if (oldest < 0 || slot.arrivalMillis < oldest) {
+                    oldest = slot.arrivalMillis;
+                }
+            }
+            return oldest;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            try {
+                channel.close();
+            } finally {
+                directoryLock.close();
+            }
+        }
+    }
+
+    // ---- group commit ----
+
+    // Caller holds lock
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Queue is closed");
+        }
+        if (flushFailure != null) {
+            throw new IOException("Queue flush failed", flushFailure);
+        }
+    }
+
+    /**
+     * Adds a record to the pending batch; caller holds lock
+     */
+    private void append(ByteBuffer record) {
+        if (batch.remaining() < record.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + record.remaining()));
+            batch.flip();
+            larger.put(batch);
+            batch = larger;
+        }
+        appendedBytes += record.remaining();
+        batch.put(record);
+    }
+
+    private void awaitDurable(long end) throws IOException {
+        synchronized (lock) {
+            while (durableBytes < end) {
+                if (flushFailure != null) {
+                    throw new IOException("Queue flush failed", flushFailure);
+                }
+                if (closed && !flusher.isAlive()) {
+                    throw new IOException("Queue closed before the record was synced");
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for commit", e);
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (batch.position() == 0 && !closed) {
+                        lock.wait();
+                    }
+                    if (batch.position() == 0) {
+                        return;
+                    }
+                }
+                if (commitIntervalMillis > 0) {
+                    // Let more writers join this commit
+                    Thread.sleep(commitIntervalMillis);
+                }
+
+                ByteBuffer full;
+                long target;
+                FileChannel log;
+                synchronized (lock) {
+                    full = batch;
+                    batch = spare;
+                    writing = full;
+                    target = appendedBytes;
+                    log = channel;
+                }
+                // Only this thread writes to the file, and compaction also runs on it
+                full.flip();
+                long position = log.size();
+                while (full.hasRemaining()) {
+                    position += log.write(full, position);
+                }
+                log.force(false);
+
+                synchronized (lock) {
+                    spare = full.clear();
+                    writing = null;
+                    durableBytes = target;
+                    if (deadRecords >= minDeadRecordsForCompaction && deadRecords > 2L * liveCount()) {
+                        compact();
+                    }
+                    lock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (lock) {
+                flushFailure = e;
+                lock.notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- log ----
+
+    private int liveCount() {
+        return ready.size() + inFlight.size();
+    }
+
+    /**
+     * Reads the enqueue record of an entry from wherever it is: the log, the buffer being
+     * written or the pending batch; caller holds lock
+     */
+    private ByteBuffer readRecord(Slot slot) throws IOException {
+        if (slot.offset >= durableBytes) {
+            long batchStart = appendedBytes - batch.position();
+            ByteBuffer source = slot.offset >= batchStart ? batch : writing;
+            int from = (int) (slot.offset - (slot.offset >= batchStart ? batchStart : durableBytes));
+            return ByteBuffer.wrap(Arrays.copyOfRange(source.array(), from, from + slot.length));
+        }
+        ByteBuffer record = ByteBuffer.allocate(slot.length);
+        long position = slot.offset - logBase;
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + record.position()) < 0) {
+                throw new EOFException("Queue log " + logFile + " ends before the entry at offset " + position);
+            }
+        }
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Rewrites the log with only the live entries and swaps it in atomically; caller holds lock.
+     * Records still in the pending batch are copied too, so the batch is dropped afterwards.
+     */
+    private void compact() throws IOException {
+        List<Slot> live = new ArrayList<>(ready);
+        live.addAll(inFlight.values());
+        Collections.sort(live, (a, b) -> Long.compare(a.sequence, b.sequence));
+
+        Path temp = logFile.resolveSibling(LOG_FILE + ".tmp");
+        long[] offsets = new long[live.size()];
+        long size;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            ByteBuffer first = encodeNextSequence(nextSequence);
+            size = first.remaining();
+            buffer = put(out, buffer, first);
+            for (int i = 0; i < live.size(); i++) {
+                ByteBuffer record = readRecord(live.get(i));
+                offsets[i] = size;
+                size += record.remaining();
+                buffer = put(out, buffer, record);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        try {
+            Files.move(temp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, logFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel.close();
+        channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        batch.clear();
+        durableBytes = appendedBytes;
+        logBase = appendedBytes - size;
+        for (int i = 0; i < live.size(); i++) {
+            live.get(i).offset = logBase + offsets[i];
+        }
+        deadRecords = 0;
+    }
+
+    private static ByteBuffer put(FileChannel out, ByteBuffer buffer, ByteBuffer record) throws IOException {
+        if (buffer.remaining() < record.remaining()) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+            if (buffer.capacity() < record.remaining()) {
+                buffer = ByteBuffer.allocate(record.remaining());
+            }
+        }
+        return buffer.put(record);
+    }
+
+    /**
+     * Rebuilds the queue from the log; a torn or corrupt tail is cut off
+     */
+    private void replay() throws IOException {
+        Map<Long, Slot> live = new HashMap<>();
+        long records = 0;
+        long offset = 0;
+        long size = channel.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0)), 64 * 1024));
+        try {
+            while (offset + HEADER_BYTES <= size) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length < 4 + 9 || offset + 4 + length > size) {
+                    break;
+                }
+                byte[] body = new byte[length - 4];
+                in.readFully(body);
+                CRC32 check = new CRC32();
+                check.update(body);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte type = record.get();
+                long sequence = record.getLong();
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                if (type == ENQUEUE) {
+                    int priority = record.get();
+                    long arrival = record.getLong();
+                    // Claim id and payload stay in the log until the entry is taken
+                    live.put(sequence, new Slot(sequence, priority, arrival, offset, 4 + length));
+                    records++;
+                } else if (type == ACK) {
+                    live.remove(sequence);
+                    records++;
+                } else if (type == NEXT_SEQUENCE) {
+                    // Only advances nextSequence
+                } else {
+                    break;
+                }
+                offset += 4 + length;
+            }
+        } catch (EOFException e) {
+            // Torn tail, cut off below
+        }
+
+        if (offset < size) {
+            System.err.println("Queue log " + logFile + ": dropping " + (size - offset)
+                    + " bytes of incomplete records at offset " + offset);
+            channel.truncate(offset);
+        }
+        ready.addAll(live.values());
+        deadRecords = records - live.size();
+        appendedBytes = offset;
+        durableBytes = offset;
+    }
+
+    private static Entry decodeEnqueue(ByteBuffer record) {
+        record.position(HEADER_BYTES + 1);
+        long sequence = record.getLong();
+        int priority = record.get();
+        long arrival = record.getLong();
+        byte[] id = new byte[record.getShort()];
+        record.get(id);
+        byte[] payload = new byte[record.remaining()];
+        record.get(payload);
+        return new Entry(sequence, priority, arrival, new String(id, StandardCharsets.UTF_8), payload);
+    }
+
+    private static ByteBuffer encodeEnqueue(Entry entry, byte[] id) {
+        ByteBuffer body = ByteBuffer.allocate(ENQUEUE_FIXED_BYTES + id.length + entry.payload.length);
+        body.put(ENQUEUE).putLong(entry.sequence)
+                .put((byte) entry.priority).putLong(entry.arrivalMillis)
+                .putShort((short) id.length).put(id).put(entry.payload);
+        return frame(body);
+    }
+
+    private static ByteBuffer encodeAck(long sequence) {
+        return frame(ByteBuffer.allocate(9).put(ACK).putLong(sequence));
+    }
+
+    private static ByteBuffer encodeNextSequence(long sequence) {
+        return frame(ByteBuffer.allocate(9).put(NEXT_SEQUENCE).putLong(sequence));
+    }
+
+    private static ByteBuffer frame(ByteBuffer body) {
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + body.remaining());
+        record.putInt(4 + body.remaining()).putInt((int) crc.getValue()).put(body).flip();
+        return record;
+    }
+
+    /**
+     * Where a waiting or taken entry is; the in-memory form of the backlog
+     */
+    private static final class Slot implements Comparable<Slot> {
+        private final long sequence;
+        private final int priority;
+        private final long arrivalMillis;
+        // Logical offset of the enqueue record and its framed length
+        private long offset;
+        private final int length;
+
+        private Slot(long sequence, int priority, long arrivalMillis, long offset, int length) {
+            this.sequence = sequence;
+            this.priority = priority;
+            this.arrivalMillis = arrivalMillis;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Slot other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * One queued claim
+     */
+    public static final class Entry implements Comparable<Entry> {
+        private final long sequence;
+        private final int priority;
+        private final long arrivalMillis;
+        private final String claimId;
+        private final byte[] payload;
+
+        private Entry(long sequence, int priority, long arrivalMillis, String claimId, byte[] payload) {
+            this.sequence = sequence;
+            this.priority = priority;
+            this.arrivalMillis = arrivalMillis;
+            this.claimId = claimId;
+            this.payload = payload;
+        }
+
+        /**
+         * @return Position in arrival order; pass it to ack() or release()
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getArrivalMillis() {
+            return arrivalMillis;
+        }
+
+        public String getClaimId() {
+            return claimId;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
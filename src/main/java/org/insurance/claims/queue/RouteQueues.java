@@ -0,0 +1,145 @@
+package org.insurance.claims.queue;
+
+import org.insurance.claims.store.DirectoryLock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One durable RouteQueue per recommended route, each in its own subdirectory
+ * ("Manual Review" is stored in manual-review/). Queues found on disk are replayed
+ * when the set is opened; a queue for a new route is created on its first claim.
+ * One process at a time may open the set.
+ */
+public class RouteQueues implements Closeable {
+
+    private static final String ROUTE_FILE = "route.txt";
+
+    private final Path root;
+    private final DirectoryLock rootLock;
+    private final long commitIntervalMillis;
+    // Keyed by route name; guarded by this
+    private final Map<String, RouteQueue> queues = new TreeMap<>();
+    private boolean closed;
+
+    public RouteQueues(Path root) throws IOException {
+        this(root, RouteQueue.DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens every queue under the root directory
+     * @param root Directory holding one subdirectory per route
+     * @param commitIntervalMillis How long a flush waits to gather more writers
+     * @throws IOException If a queue cannot be opened or replayed
+     */
+    public RouteQueues(Path root, long commitIntervalMillis) throws IOException {
+        this.root = Files.createDirectories(root);
+        this.commitIntervalMillis = commitIntervalMillis;
+        // Fails fast, before any queue is replayed or a new route directory is created
+        this.rootLock = DirectoryLock.acquire(this.root, "Work queues");
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : dir) {
+                Path routeFile = directory.resolve(ROUTE_FILE);
+                if (Files.exists(routeFile)) {
+                    String route = new String(Files.readAllBytes(routeFile), StandardCharsets.UTF_8).trim();
+                    queues.put(route, new RouteQueue(directory, commitIntervalMillis));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a claim to the queue of its route and waits until it is durable
+     * @param route Recommended route
+     * @param claimId Claim id
+     * @param priority Priority of the routing decision
+     * @param payload Serialized result
+     * @return The new entry
+     * @throws IOException If the queue cannot be created or written
+     */
+    public RouteQueue.Entry enqueue(String route, String claimId, int priority, byte[] payload) throws IOException {
+        return queue(route).enqueue(claimId, priority, payload);
+    }
+
+    /**
+     * @param route Route name
+     * @return Queue of the route, created if needed
+     * @throws IOException If the queue cannot be created
+     */
+    public synchronized RouteQueue queue(String route) throws IOException {
+        if (closed) {
+            throw new IOException("Route queues are closed");
+        }
+        RouteQueue queue = queues.get(route);
+        if (queue == null) {
+            Path directory = Files.createDirectories(root.resolve(directoryName(route)));
+            Files.write(directory.resolve(ROUTE_FILE), route.getBytes(StandardCharsets.UTF_8));
+            queue = new RouteQueue(directory, commitIntervalMillis);
+            queues.put(route, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * @return Queues by route name, in name order
+     */
+    public synchronized Map<String, RouteQueue> getQueues() {
+        return new TreeMap<>(queues);
+    }
+
+    /**
+     * @param route Route name
+     * @return Directory name, e.g. "investigation-queue"
+     */
+    static String directoryName(String route) {
+        StringBuilder name = new StringBuilder(route.length());
+        for (int i = 0; i < route.length(); i++) {
+            char c = Character.toLowerCase(route.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                name.append(c);
+            } else if (name.length() > 0 && name.charAt(name.length() - 1) != '-') {
+                name.append('-');
+            }
+        }
+        while (name.length() > 0 && name.charAt(name.length() - 1) == '-') {
+            name.setLength(name.length() - 1);
+        }
+        if (name.length() == 0) {
+            throw new IllegalArgumentException("Route name has no letters or digits: " + route);
+        }
+        return name.toString();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        for (RouteQueue queue : queues.values()) {
+            try {
+                queue.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        rootLock.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
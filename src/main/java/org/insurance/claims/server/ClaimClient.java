@@ -0,0 +1,54 @@
+package org.insurance.claims.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thin client for ClaimDaemon; one request/response line per document
+ */
+public class ClaimClient implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    public ClaimClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Asks the daemon to process a document
+     * @param pdfPath Path to the PDF, as seen by the daemon
+     * @return ClaimResult JSON, or an error object
+     * @throws IOException If the daemon cannot be reached
+     */
+    public String process(String pdfPath) throws IOException {
+        if (pdfPath.indexOf('\n') >= 0 || pdfPath.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Path must not contain line breaks");
+        }
+        out.write(pdfPath);
+        out.write('\n');
+        out.flush();
+
+        String response = in.readLine();
+        if (response == null) {
+            throw new IOException("Daemon closed the connection");
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
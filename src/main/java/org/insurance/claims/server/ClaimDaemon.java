@@ -0,0 +1,161 @@
+package org.insurance.claims.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.insurance.claims.batch.BatchProcessor;
+import org.insurance.claims.batch.WorkerThreads;
+import org.insurance.claims.model.ClaimResult;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resident worker that keeps the processing components warm between claims.
+ *
+ * Listens on a localhost port. The protocol is line based: each request line is the
+ * path of a PDF on the daemon's filesystem, each response line is the ClaimResult as
+ * compact JSON, or {"path": ..., "error": ...} if processing failed. A connection can
+ * send any number of requests; "PING" is answered with "PONG".
+ *
+ * Each connection is read on its own thread and only the claim work runs on the worker
+ * pool, so idle clients never hold a worker.
+ */
+public class ClaimDaemon implements Closeable {
+
+    public static final int DEFAULT_PORT = 7480;
+
+    private final BatchProcessor.ClaimTask task;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final ExecutorService workers;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Binds the daemon to the loopback interface
+     * @param port Port to listen on (0 picks a free port)
+     * @param workers Number of claims processed concurrently
+     * @param task Processing function shared by all connections
+     * @throws IOException If the port cannot be bound
+     */
+    public ClaimDaemon(int port, int workers, BatchProcessor.ClaimTask task) throws IOException {
+        this.task = task;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.connections = Executors.newCachedThreadPool(WorkerThreads.factory("claim-connection", false));
+        this.workers = Executors.newFixedThreadPool(workers, WorkerThreads.factory("claim-daemon", false));
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the daemon is closed
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                clients.add(socket);
+                try {
+                    connections.execute(() -> handle(socket));
+                } catch (RejectedExecutionException e) {
+                    // Closed while accepting
+                    clients.remove(socket);
+                    socket.close();
+                }
+            } catch (SocketException e) {
+                // Server socket closed
+                break;
+            } catch (IOException e) {
+                System.err.println("Error accepting connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(
+                     new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String request = line.trim();
+                if (request.isEmpty()) {
+                    continue;
+                }
+                if (request.equals("PING")) {
+                    out.write("PONG\n");
+                } else {
+                    out.write(process(request));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away, or the daemon closed the connection
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    private String process(String pdfPath) throws IOException {
+        try {
+            Future<ClaimResult> result = workers.submit(() -> task.process(Paths.get(pdfPath)));
+            return mapper.writeValueAsString(result.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing " + pdfPath, e);
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            ObjectNode error = mapper.createObjectNode();
+            error.put("path", pdfPath);
+            error.put("error", cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName());
+            return mapper.writeValueAsString(error);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        // Idle clients would otherwise keep their connection threads blocked in readLine
+        for (Socket client : clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+        connections.shutdown();
+        workers.shutdown();
+        try {
+            // Claims already running are finished so their results are stored and queued
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
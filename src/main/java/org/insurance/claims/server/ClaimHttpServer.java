@@ -0,0 +1,421 @@
+package org.insurance.claims.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.insurance.claims.batch.WorkerThreads;
+import org.insurance.claims.metrics.ClaimMetrics;
+import org.insurance.claims.model.ClaimResult;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP intake service.
+ *
+ * POST /claims          - request body is a PDF, response is the ClaimResult JSON; the
+ *                         optional ?name= parameter gives its file name
+ * POST /claims/batch    - request body is a sequence of PDFs, each preceded by a header line
+ *                         "<byte count> <file name>"; the response streams one NDJSON line
+ *                         per document as it finishes
+ * GET  /health          - liveness check
+ * GET  /metrics         - stage latencies and counters in the Prometheus text format
+ *
+ * Handlers run on virtual threads when available. The CPU-heavy PDFBox and extraction
+ * work is limited to a fixed number of permits; requests that would wait behind too many
+ * others get 429, requests that wait too long for a permit get 503. Admission happens
+ * before the upload is read, so rejected requests never reach the heap.
+ *
+ * There is no authentication: the server binds to the loopback interface unless another
+ * address is given, and never opens files named by a client.
+ */
+public class ClaimHttpServer implements Closeable {
+
+    /**
+     * Processes an uploaded PDF straight from the request stream
+     */
+    public interface StreamProcessor {
+        ClaimResult process(String fileName, InputStream pdf) throws Exception;
+    }
+
+    /**
+     * Processes one document of a batch request
+     */
+    public interface DocumentProcessor {
+        ClaimResult process(String fileName, byte[] pdf) throws Exception;
+    }
+
+    // Limits on what a batch request may announce before its content is read
+    private static final int MAX_HEADER_BYTES = 1024;
+    private static final int MAX_DOCUMENT_BYTES = 64 * 1024 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final StreamProcessor uploadProcessor;
+    private final DocumentProcessor documentProcessor;
+    private final ClaimMetrics metrics;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Semaphore cpuPermits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int maxWaiting;
+    private final long permitTimeoutMillis;
+
+    /**
+     * Creates the server; call start() to accept requests
+     * @param address Address and port to listen on
+     * @param maxConcurrent Documents processed at the same time
+     * @param maxWaiting Requests allowed to wait for a permit before new ones get 429
+     * @param permitTimeoutMillis Longest wait for a permit before answering 503
+     * @param uploadProcessor Processes uploaded PDFs
+     * @param documentProcessor Processes the documents of batch requests
+     * @param metrics Metrics the processors record into; failures and response writes are added here
+     * @throws IOException If the address cannot be bound
+     */
+    public ClaimHttpServer(InetSocketAddress address, int maxConcurrent, int maxWaiting, long permitTimeoutMillis,
+                           StreamProcessor uploadProcessor, DocumentProcessor documentProcessor,
+                           ClaimMetrics metrics) throws IOException {
+        this.uploadProcessor = uploadProcessor;
+        this.documentProcessor = documentProcessor;
+        this.metrics = metrics;
+        this.cpuPermits = new Semaphore(maxConcurrent, true);
+        this.maxWaiting = maxWaiting;
+        this.permitTimeoutMillis = permitTimeoutMillis;
+
+        this.handlers = Executors.newCachedThreadPool(WorkerThreads.factory("http-handler", true));
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(handlers);
+        this.server.createContext("/claims", this::handleClaims);
+        this.server.createContext("/health", exchange -> sendText(exchange, 200, "OK"));
+        this.server.createContext("/metrics", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            sendText(exchange, 200, metrics.toPrometheus());
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handleClaims(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/claims") || path.equals("/claims/")) {
+                handleUpload(exchange);
+            } else if (path.equals("/claims/batch")) {
+                handleBatch(exchange);
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Admits a request: 429 when too many requests are already waiting, 503 when no permit
+     * frees up in time
+     * @param exchange Request to answer if it is rejected
+     * @return true with one CPU permit held, false once the rejection has been sent
+     * @throws IOException If the rejection cannot be sent
+     */
+    private boolean admit(HttpExchange exchange) throws IOException {
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendError(exchange, 429, "Too many pending claims");
+            return false;
+        }
+
+        boolean acquired;
+        try {
+            acquired = acquirePermit();
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            sendError(exchange, 503, "Server overloaded");
+        }
+        return acquired;
+    }
+
+    private boolean acquirePermit() {
+        try {
+            return cpuPermits.tryAcquire(permitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        if (!admit(exchange)) {
+            return;
+        }
+
+        byte[] json;
+        try (InputStream body = exchange.getRequestBody()) {
+            ClaimResult result = uploadProcessor.process(fileNameOf(queryParameter(exchange, "name"), 0), body);
+            long start = System.nanoTime();
+            json = mapper.writeValueAsBytes(result);
+            metrics.record(ClaimMetrics.Stage.SERIALIZATION, start);
+        } catch (Exception e) {
+            metrics.countFailure(e);
+            sendError(exchange, 422, "Cannot process document: " + e.getMessage());
+            return;
+        } finally {
+            cpuPermits.release();
+        }
+
+        long start = System.nanoTime();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+        metrics.record(ClaimMetrics.Stage.WRITE, start);
+    }
+
+    /**
+     * Streams the documents of a batch to the handler pool. The batch is admitted like an
+     * upload; after that, each document's content is read only once a CPU permit is free, so
+     * a batch never has more than --max-concurrent documents in memory or in flight, and it
+     * counts as a waiting request while it waits.
+     */
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        if (!admit(exchange)) {
+            return;
+        }
+        boolean holdingPermit = true;
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        try (InputStream body = new BufferedInputStream(exchange.getRequestBody());
+             OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(200, 0);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int index = 0; ; index++) {
+                String fileName;
+                byte[] pdf;
+                try {
+                    String header = readHeader(body);
+                    if (header == null) {
+                        break;
+                    }
+                    int space = header.indexOf(' ');
+                    long length;
+                    try {
+                        length = Long.parseLong(space > 0 ? header.substring(0, space) : header);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("header of document " + index + " has no byte count");
+                    }
+                    if (length < 0 || length > MAX_DOCUMENT_BYTES) {
+                        throw new IOException("document " + index + " is larger than " + MAX_DOCUMENT_BYTES + " bytes");
+                    }
+                    fileName = fileNameOf(space > 0 ? header.substring(space + 1).trim() : "", index);
+                    if (!holdingPermit) {
+                        waiting.incrementAndGet();
+                        try {
+                            holdingPermit = acquirePermit();
+                        } finally {
+                            waiting.decrementAndGet();
+                        }
+                    }
+                    if (!holdingPermit) {
+                        skipFully(body, length, index);
+                        ObjectNode overloaded = mapper.createObjectNode();
+                        overloaded.put("name", fileName);
+                        overloaded.put("error", "Server overloaded");
+                        writeLine(out, mapper.writeValueAsBytes(overloaded));
+                        continue;
+                    }
+                    pdf = body.readNBytes((int) length);
+                    if (pdf.length < length) {
+                        throw new IOException("document " + index + " is cut short");
+                    }
+                } catch (IOException e) {
+                    // The next header cannot be found once a length is wrong
+                    ObjectNode error = mapper.createObjectNode();
+                    error.put("error", "Malformed batch: " + e.getMessage());
+                    writeLine(out, mapper.writeValueAsBytes(error));
+                    break;
+                }
+                try {
+                    tasks.add(handlers.submit(() -> {
+                        byte[] line;
+                        try {
+                            line = processDocument(fileName, pdf);
+                        } finally {
+                            cpuPermits.release();
+                        }
+                        writeLine(out, line);
+                        return null;
+                    }));
+                } catch (RejectedExecutionException e) {
+                    // Server is shutting down
+                    break;
+                }
+                // The task releases the permit
+                holdingPermit = false;
+            }
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (Exception e) {
+                    // Client disconnected; the remaining lines are dropped
+                }
+            }
+        } finally {
+            if (holdingPermit) {
+                cpuPermits.release();
+            }
+        }
+    }
+
+    private static void skipFully(InputStream in, long count, int index) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("document " + index + " is cut short");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Reads the header line of the next batch document
+     * @param in Request body
+     * @return Header without line terminator, or null at the end of the body
+     * @throws IOException If the header is cut short or too long
+     */
+    private static String readHeader(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new IOException("header is cut short");
+            }
+            if (b == '\n') {
+                String header = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                if (!header.isEmpty()) {
+                    return header;
+                }
+                // Blank lines between documents are allowed
+                line.reset();
+            } else if (line.size() >= MAX_HEADER_BYTES) {
+                throw new IOException("header is longer than " + MAX_HEADER_BYTES + " bytes");
+            } else {
+                line.write(b);
+            }
+        }
+    }
+
+    /**
+     * Keeps only the last component of a client-supplied name
+     */
+    private static String fileNameOf(String name, int index) {
+        String fileName = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        return fileName.isEmpty() ? "document-" + index + ".pdf" : fileName;
+    }
+
+    /**
+     * @return Decoded value of a query parameter, or "" if it is absent or malformed
+     */
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return "";
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                try {
+                    return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+                } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                    return "";
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Processes one batch document; the caller holds a CPU permit
+     */
+    private byte[] processDocument(String fileName, byte[] pdf) throws IOException {
+        ObjectNode line = mapper.createObjectNode();
+        line.put("name", fileName);
+        try {
+            line.set("result", mapper.valueToTree(documentProcessor.process(fileName, pdf)));
+        } catch (Exception e) {
+            metrics.countFailure(e);
+            line.put("error", e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        }
+        return mapper.writeValueAsBytes(line);
+    }
+
+    private static void writeLine(OutputStream out, byte[] json) throws IOException {
+        synchronized (out) {
+            out.write(json);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode error = mapper.createObjectNode();
+        error.put("error", message);
+        byte[] body = mapper.writeValueAsBytes(error);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        handlers.shutdown();
+    }
+}
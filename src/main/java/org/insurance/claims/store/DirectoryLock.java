@@ -0,0 +1,66 @@
+package org.insurance.claims.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exclusive hold on a data directory that has a single writer (result store, work queue,
+ * duplicate index). Taken with FileChannel.tryLock() on a ".lock" file in the directory,
+ * so a second process fails when it opens the directory instead of interleaving records
+ * with the first. The operating system drops the lock when the holder dies, so a crash
+ * never leaves a stale lock behind. Advisory only: it guards against other users of this
+ * class, not against other programs writing to the directory.
+ */
+public final class DirectoryLock implements Closeable {
+
+    static final String LOCK_FILE = ".lock";
+
+    private final FileChannel channel;
+
+    private DirectoryLock(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Locks a directory without waiting
+     * @param directory Existing directory
+     * @param description What the directory holds, for the error message, e.g. "Result store"
+     * @return Lock to close when the directory is no longer written
+     * @throws IOException If another process or another open in this one holds the directory,
+     *                     or the lock file cannot be created
+     */
+    public static DirectoryLock acquire(Path directory, String description) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already held by this process
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException(description + " " + directory + " is already open in another process"
+                    + " (or elsewhere in this one); each directory has a single writer");
+        }
+        return new DirectoryLock(channel);
+    }
+
+    /**
+     * Releases the directory
+     */
+    @Override
+    public void close() throws IOException {
+        // Closing the channel releases its lock
+        channel.close();
+    }
+}
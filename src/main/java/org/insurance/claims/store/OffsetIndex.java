@@ -0,0 +1,95 @@
+package org.insurance.claims.store;
+
+/**
+ * Compact claim id -&gt; record location map.
+ * Ids are reduced to a 64-bit hash and stored with their location in two
+ * open-addressing long arrays (16 bytes per slot, no per-entry objects).
+ * Callers must verify the id stored in the record, since distinct ids can in
+ * principle share a hash.
+ */
+final class OffsetIndex {
+
+    static final long MISSING = -1L;
+
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] keys = new long[1024];
+    private long[] values = new long[1024];
+    private int size;
+
+    synchronized void put(String claimId, long location) {
+        if (size + 1 > keys.length * MAX_LOAD) {
+            resize(keys.length * 2);
+        }
+        if (insert(keys, values, hash(claimId), location)) {
+            size++;
+        }
+    }
+
+    synchronized long get(String claimId) {
+        long key = hash(claimId);
+        int mask = keys.length - 1;
+        for (int slot = (int) mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == EMPTY) {
+                return MISSING;
+            }
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] newKeys = new long[capacity];
+        long[] newValues = new long[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                insert(newKeys, newValues, keys[i], values[i]);
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    /**
+     * @return true if a new slot was used, false if an existing key was updated
+     */
+    private static boolean insert(long[] keys, long[] values, long key, long value) {
+        int mask = keys.length - 1;
+        for (int slot = (int) mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                values[slot] = value;
+                return true;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the id's characters; never returns the EMPTY marker
+     */
+    static long hash(String claimId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < claimId.length(); i++) {
+            h ^= claimId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == EMPTY ? 1L : h;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,528 @@
+package org.insurance.claims.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store for claim results.
+ *
+ * Records are appended to size-rolled segment files as
+ * [int length][int crc32][short idLength][id][payload]. Concurrent writers share
+ * one fsync (group commit): append() returns once a background flush has made the
+ * record durable. Each sealed segment gets a compact offset index file so reopening
+ * only scans the active segment; a torn record at its tail is truncated.
+ * Lookups by claim id go through an in-memory hash index and read sealed segments
+ * through memory mapping. When the same claim id is appended twice, the latest wins.
+ * One process at a time may open a store; see DirectoryLock.
+ */
+public class ResultStore implements Closeable {
+
+    /**
+     * Receives every stored record during a scan
+     */
+    public interface RecordVisitor {
+        void visit(String claimId, byte[] payload) throws IOException;
+    }
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 2;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int HEADER_BYTES = 4 + 4 + 2;
+
+    private final Path directory;
+    private final DirectoryLock directoryLock;
+    private final long maxSegmentBytes;
+    private final long commitIntervalMillis;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final OffsetIndex index = new OffsetIndex();
+    private final Object writeLock = new Object();
+    private final Object commitLock = new Object();
+    private final Thread flusher;
+
+    private volatile Segment active;
+    private volatile long appendedBytes;
+    private long durableBytes;
+    private IOException flushFailure;
+    private volatile boolean closed;
+
+    public ResultStore(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens (or creates) a store
+     * @param directory Store directory
+     * @param maxSegmentBytes Size at which the active segment is sealed and a new one started
+     * @param commitIntervalMillis How long a flush waits to gather more writers
+     * @throws IOException If the segments cannot be opened or recovered
+     */
+    public ResultStore(Path directory, long maxSegmentBytes, long commitIntervalMillis) throws IOException {
+        if (maxSegmentBytes <= 0 || maxSegmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 1 byte and 2 GB");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.commitIntervalMillis = commitIntervalMillis;
+        // Recovery truncates torn tails, so even a reader must not open a store another process writes
+        this.directoryLock = DirectoryLock.acquire(this.directory, "Result store");
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            directoryLock.close();
+            throw e;
+        }
+
+        flusher = new Thread(this::flushLoop, "result-store-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends a result and waits until it is durable
+     * @param claimId Claim id used for lookups
+     * @param payload Serialized result
+     * @throws IOException If the record cannot be written or synced
+     */
+    public void append(String claimId, byte[] payload) throws IOException {
+        byte[] id = claimId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Claim id too long");
+        }
+        ByteBuffer record = encode(id, payload);
+
+        long end;
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IOException("Result store is closed");
+            }
+            if (active.size > 0 && active.size + record.remaining() > maxSegmentBytes) {
+                roll();
+            }
+            long offset = active.size;
+            int length = record.remaining();
+            while (record.hasRemaining()) {
+                active.channel.write(record, offset + (length - record.remaining()));
+            }
+            active.size += length;
+            index.put(claimId, location(active.number, offset));
+            active.ids.add(claimId);
+            active.offsets.add(offset);
+            appendedBytes += length;
+            end = appendedBytes;
+        }
+
+        awaitDurable(end);
+    }
+
+    /**
+     * Looks up the latest record for a claim id
+     * @param claimId Claim id
+     * @return Payload, or null if the id is unknown
+     * @throws IOException If the segment cannot be read
+     */
+    public byte[] get(String claimId) throws IOException {
+        long location = index.get(claimId);
+        if (location == OffsetIndex.MISSING) {
+            return null;
+        }
+        Segment segment;
+        synchronized (writeLock) {
+            segment = segments.get((int) (location >>> 32));
+        }
+        ByteBuffer record = segment.read(location & 0xFFFFFFFFL);
+        String storedId = readId(record);
+        // Different ids can share a 64-bit index hash; the record tells them apart
+        return storedId.equals(claimId) ? readPayload(record) : null;
+    }
+
+    /**
+     * Visits every record in append order
+     * @param visitor Record callback
+     * @throws IOException If a segment cannot be read
+     */
+    public void scan(RecordVisitor visitor) throws IOException {
+        scanRecords(visitor, false);
+    }
+
+    /**
+     * Visits the latest record of every claim id in append order, skipping records
+     * that were superseded by a later append of the same id
+     * @param visitor Record callback
+     * @throws IOException If a segment cannot be read
+     */
+    public void scanLatest(RecordVisitor visitor) throws IOException {
+        scanRecords(visitor, true);
+    }
+
+    private void scanRecords(RecordVisitor visitor, boolean latestOnly) throws IOException {
+        List<Segment> snapshot;
+        long activeSize;
+        synchronized (writeLock) {
+            snapshot = new ArrayList<>(segments);
+            activeSize = active.size;
+        }
+        for (Segment segment : snapshot) {
+            long limit = segment == snapshot.get(snapshot.size() - 1) ? activeSize : segment.size;
+            long offset = 0;
+            while (offset < limit) {
+                ByteBuffer record = segment.read(offset);
+                String claimId = readId(record);
+                if (!latestOnly || index.get(claimId) == location(segment.number, offset)) {
+                    visitor.visit(claimId, readPayload(record));
+                }
+                offset += 4 + record.getInt(0);
+            }
+        }
+    }
+
+    /**
+     * @return Number of distinct claim ids
+     */
+    public int size() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        synchronized (writeLock) {
+            return segments.size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (commitLock) {
+            commitLock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            try {
+                active.channel.force(false);
+                for (Segment segment : segments) {
+                    segment.channel.close();
+                }
+            } finally {
+                directoryLock.close();
+            }
+        }
+    }
+
+    // ---- group commit ----
+
+    private void awaitDurable(long end) throws IOException {
+        synchronized (commitLock) {
+            commitLock.notifyAll();
+            while (durableBytes < end) {
+                if (flushFailure != null) {
+                    throw new IOException("Result store flush failed", flushFailure);
+                }
+                if (closed && !flusher.isAlive()) {
+                    throw new IOException("Result store closed before the record was synced");
+                }
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for commit", e);
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                synchronized (commitLock) {
+                    while (durableBytes == appendedBytes && !closed) {
+                        commitLock.wait();
+                    }
+                    if (durableBytes == appendedBytes && closed) {
+                        return;
+                    }
+                }
+                if (commitIntervalMillis > 0) {
+                    // Let more writers join this commit
+                    Thread.sleep(commitIntervalMillis);
+                }
+
+                long target;
+                FileChannel channel;
+                synchronized (writeLock) {
+                    target = appendedBytes;
+                    channel = active.channel;
+                }
+                // Sealed segments are forced when rolled, so only the active one needs it
+                channel.force(false);
+
+                synchronized (commitLock) {
+                    durableBytes = target;
+                    commitLock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (commitLock) {
+                flushFailure = e;
+                commitLock.notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- segments ----
+
+    private void roll() throws IOException {
+        active.channel.force(false);
+        active.writeIndex();
+        active = openSegment(active.number + 1);
+        segments.add(active);
+    }
+
+    private Segment openSegment(int number) throws IOException {
+        Path file = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(number, file, channel);
+    }
+
+    /**
+     * Opens existing segments, loading sealed indexes and scanning the rest
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : dir) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+
+        for (int i = 0; i < files.size(); i++) {
+            String name = files.get(i).getFileName().toString();
+            int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            if (number != i) {
+                throw new IOException("Missing result store segment " + i + " in " + directory);
+            }
+            Segment segment = openSegment(number);
+            segment.size = segment.channel.size();
+            boolean last = i == files.size() - 1;
+            if (last || !segment.loadIndex(index)) {
+                segment.scan(index, last);
+                if (!last) {
+                    segment.writeIndex();
+                }
+            }
+            segments.add(segment);
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(openSegment(0));
+        }
+        active = segments.get(segments.size() - 1);
+    }
+
+    private static long location(int segment, long offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static ByteBuffer encode(byte[] id, byte[] payload) {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = ByteBuffer.allocate(2 + id.length + payload.length);
+        body.putShort((short) id.length).put(id).put(payload).flip();
+        crc.update(body.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + id.length + payload.length);
+        record.putInt(4 + body.remaining()).putInt((int) crc.getValue()).put(body).flip();
+        return record;
+    }
+
+    private static String readId(ByteBuffer record) {
+        int idLength = record.getShort(8);
+        byte[] id = new byte[idLength];
+        ByteBuffer view = record.duplicate();
+        view.position(HEADER_BYTES);
+        view.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readPayload(ByteBuffer record) {
+        int idLength = record.getShort(8);
+        int payloadLength = record.getInt(0) - 4 - 2 - idLength;
+        byte[] payload = new byte[payloadLength];
+        ByteBuffer view = record.duplicate();
+        view.position(HEADER_BYTES + idLength);
+        view.get(payload);
+        return payload;
+    }
+
+    /**
+     * One segment file plus the ids appended to it (kept until the segment is sealed)
+     */
+    private final class Segment {
+        private final int number;
+        private final Path file;
+        private final FileChannel channel;
+        private long size;
+        private List<String> ids = new ArrayList<>();
+        private List<Long> offsets = new ArrayList<>();
+        private volatile MappedByteBuffer mapped;
+
+        private Segment(int number, Path file, FileChannel channel) {
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        /**
+         * Reads the record at an offset; sealed segments are memory-mapped
+         */
+        private ByteBuffer read(long offset) throws IOException {
+            if (this != active) {
+                MappedByteBuffer buffer = mapped;
+                if (buffer == null) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    mapped = buffer;
+                }
+                ByteBuffer view = buffer.duplicate();
+                int length = view.getInt((int) offset);
+                view.position((int) offset).limit((int) offset + 4 + length);
+                return view.slice();
+            }
+
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+            readFully(lengthBuffer, offset);
+            int length = lengthBuffer.getInt(0);
+            ByteBuffer record = ByteBuffer.allocate(4 + length);
+            readFully(record, offset);
+            return record;
+        }
+
+        private void readFully(ByteBuffer buffer, long offset) throws IOException {
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of segment " + file);
+                }
+                position += read;
+            }
+            buffer.flip();
+        }
+
+        /**
+         * Scans all records into the index; a torn or corrupt tail is cut off
+         */
+        private void scan(OffsetIndex target, boolean truncateTail) throws IOException {
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (offset + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(header, offset);
+                int length = header.getInt(0);
+                if (length < 6 || offset + 4 + length > size) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.allocate(4 + length);
+                readFully(record, offset);
+                CRC32 crc = new CRC32();
+                ByteBuffer body = record.duplicate();
+                body.position(8);
+                crc.update(body);
+                if ((int) crc.getValue() != record.getInt(4)) {
+                    break;
+                }
+                String id = readId(record);
+                target.put(id, location(number, offset));
+                ids.add(id);
+                offsets.add(offset);
+                offset += 4 + length;
+            }
+
+            if (offset < size) {
+                if (!truncateTail) {
+                    throw new IOException("Corrupt record at offset " + offset + " in sealed segment " + file);
+                }
+                channel.truncate(offset);
+                size = offset;
+            }
+        }
+
+        private Path indexFile() {
+            String name = file.getFileName().toString();
+            return file.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+        }
+
+        /**
+         * Writes [short idLength][id][int offset] entries for a sealed segment
+         */
+        private void writeIndex() throws IOException {
+            int bytes = 0;
+            List<byte[]> encoded = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                byte[] b = id.getBytes(StandardCharsets.UTF_8);
+                encoded.add(b);
+                bytes += 2 + b.length + 4;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(bytes);
+            for (int i = 0; i < encoded.size(); i++) {
+                buffer.putShort((short) encoded.get(i).length).put(encoded.get(i)).putInt(offsets.get(i).intValue());
+            }
+            buffer.flip();
+
+            Path temp = indexFile().resolveSibling(indexFile().getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            Files.move(temp, indexFile(), StandardCopyOption.ATOMIC_MOVE);
+
+            // Sealed: the index file now holds the ids
+            ids = null;
+            offsets = null;
+        }
+
+        private boolean loadIndex(OffsetIndex target) throws IOException {
+            Path indexFile = indexFile();
+            if (!Files.exists(indexFile)) {
+                return false;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            while (buffer.hasRemaining()) {
+                byte[] id = new byte[buffer.getShort()];
+                buffer.get(id);
+                target.put(new String(id, StandardCharsets.UTF_8), location(number, buffer.getInt()));
+            }
+            ids = null;
+            offsets = null;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.insurance.claims.validator;
+
+/**
+ * Blocked Bloom filter over 64-bit key hashes.
+ * All bits of a key fall into one 512-bit block (one cache line), so a test costs a single
+ * memory access however large the filter is. With about 10 bits per key roughly 1-2% of
+ * absent keys test positive; present keys always do. Not thread-safe.
+ */
+final class BloomFilter {
+
+    private static final int BLOCK_LONGS = 8;
+    // Bits set per key; 7 x 9 bit positions come from one 64-bit mix
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final int blocks;
+
+    /**
+     * @param expectedKeys Number of keys the filter is sized for
+     * @param bitsPerKey Bits per expected key
+     */
+    BloomFilter(long expectedKeys, int bitsPerKey) {
+        long blockCount = (Math.max(1, expectedKeys) * bitsPerKey + 511) / 512;
+        this.blocks = (int) Math.min(blockCount, Integer.MAX_VALUE / BLOCK_LONGS);
+        this.bits = new long[blocks * BLOCK_LONGS];
+    }
+
+    /**
+     * @param bits Words of a filter saved with getBits()
+     */
+    BloomFilter(long[] bits) {
+        if (bits.length == 0 || bits.length % BLOCK_LONGS != 0) {
+            throw new IllegalArgumentException("Bloom filter size must be a whole number of blocks");
+        }
+        this.bits = bits;
+        this.blocks = bits.length / BLOCK_LONGS;
+    }
+
+    void add(long hash) {
+        int base = block(hash);
+        long positions = mix(hash);
+        for (int i = 0; i < HASHES; i++, positions >>>= 9) {
+            int bit = (int) positions & 511;
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false if the key was certainly never added
+     */
+    boolean mightContain(long hash) {
+        int base = block(hash);
+        long positions = mix(hash);
+        for (int i = 0; i < HASHES; i++, positions >>>= 9) {
+            int bit = (int) positions & 511;
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long[] getBits() {
+        return bits;
+    }
+
+    // Maps the upper half of the hash onto [0, blocks) without a division
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -3,52 +3,46 @@ package org.insurance.claims.validator;
 
 
 import org.insurance.claims.model.ExtractedFields;
+import org.insurance.claims.model.FieldId;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class ClaimValidator {
 
+    // Mandatory fields in reporting order with their display names
+    private static final FieldId[] MANDATORY = {
+            // Policy Information
+            FieldId.POLICY_NUMBER, FieldId.POLICYHOLDER_NAME,
+            // Incident Information
+            FieldId.DATE_OF_LOSS, FieldId.LOCATION, FieldId.DESCRIPTION,
+            // Asset Details
+            FieldId.ESTIMATED_DAMAGE,
+            // Other Mandatory Fields
+            FieldId.CLAIM_TYPE
+    };
+    private static final String[] MANDATORY_NAMES = {
+            "Policy Number", "Policyholder Name",
+            "Date of Loss", "Location of Loss", "Description of Accident",
+            "Estimated Damage Amount",
+            "Claim Type"
+    };
+    private static final long MANDATORY_MASK = FieldId.mask(MANDATORY);
+
     /**
      * Validates extracted fields and returns list of missing mandatory fields
      * @param fields Extracted fields from the claim
      * @return List of missing field names
      */
     public List<String> validateMandatoryFields(ExtractedFields fields) {
-        List<String> missingFields = new ArrayList<>();
-
-        // Policy Information - Mandatory
-        if (isNullOrEmpty(fields.getPolicyInfo().getPolicyNumber())) {
-            missingFields.add("Policy Number");
-        }
-
-        if (isNullOrEmpty(fields.getPolicyInfo().getPolicyholderName())) {
-            missingFields.add("Policyholder Name");
-        }
-
-        // Incident Information - Mandatory
-        if (isNullOrEmpty(fields.getIncidentInfo().getDateOfLoss())) {
-            missingFields.add("Date of Loss");
-        }
-
-        if (isNullOrEmpty(fields.getIncidentInfo().getLocation())) {
-            missingFields.add("Location of Loss");
-        }
-
-        if (isNullOrEmpty(fields.getIncidentInfo().getDescription())) {
-            missingFields.add("Description of Accident");
-        }
-
-        // Asset Details - Mandatory
-        if (fields.getAssetDetails().getEstimatedDamage() == null) {
-            missingFields.add("Estimated Damage Amount");
-        }
-
-        // Other Mandatory Fields
-        if (isNullOrEmpty(fields.getOtherFields().getClaimType())) {
-            missingFields.add("Claim Type");
+        // One mask test covers the common case of a complete claim
+        long missing = fields.missing(MANDATORY_MASK);
+        List<String> missingFields = new ArrayList<>(Long.bitCount(missing));
+        for (int i = 0; missing != 0 && i < MANDATORY.length; i++) {
+            if ((missing & MANDATORY[i].bit()) != 0) {
+                missingFields.add(MANDATORY_NAMES[i]);
+            }
         }
-
         return missingFields;
     }
 
@@ -92,15 +86,12 @@ public class ClaimValidator {
             }
         }
 
-        return inconsistencies;
-    }
+        // Set by DuplicateIndex when the same loss was filed before
+        if (fields.getDuplicateOf() != null) {
+            inconsistencies.add("Probable duplicate of claim " + fields.getDuplicateOf()
+                    + " (same policy number, date of loss and vehicle)");
+        }
 
-    /**
-     * Checks if a string is null or empty
-     * @param value String to check
-     * @return true if null or empty
-     */
-    private boolean isNullOrEmpty(String value) {
-        return value == null || value.trim().isEmpty();
+        return inconsistencies;
     }
 }
\ No newline at end of file
@@ -0,0 +1,680 @@
+package org.insurance.claims.validator;
+
+import org.insurance.claims.model.ExtractedFields;
+import org.insurance.claims.model.FieldId;
+import org.insurance.claims.store.DirectoryLock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Index of earlier claims by normalized policy number, date of loss and vehicle, for
+ * spotting the same loss filed twice with small changes.
+ *
+ * A claim gives up to two keys, POLICY|YYYYMMDD|V:VIN and POLICY|YYYYMMDD|P:PLATE, so a
+ * refiling that carries only one of the vehicle identifiers still matches. Only the first
+ * claim of each key is recorded. Files in the index directory:
+ *   claims.log - append-only [int length][int crc32][short keyLength][key][claim id] records;
+ *                the source of truth
+ *   table.bin  - memory-mapped open-addressing table of [long key hash][long log offset + 1]
+ *                slots, doubled when it is 60% full; it lives in the page cache, not the heap
+ *   bloom.bin  - the Bloom filter as of the last clean close
+ * A lookup asks the in-heap Bloom filter first, so a claim with no earlier match (the common
+ * case) is answered without reading the table or the log. A possible match probes the table
+ * and compares the key text stored in the log, so a reported duplicate is never a hash
+ * collision. The table is marked dirty while open; after a crash it is rebuilt from the log.
+ * Log records are written at once and synced at most once a second.
+ *
+ * The index has a single writer: the directory is locked while it is open and a second
+ * process fails to open it. Detection therefore covers the claims registered through one
+ * index. Workers that share an inbox each keep their own index and do not see each other's
+ * claims; to catch refilings across workers, send every claim through one process that
+ * owns the index (a --daemon or --serve instance).
+ */
+public class DuplicateIndex implements Closeable {
+
+    private static final String LOG_FILE = "claims.log";
+    private static final String TABLE_FILE = "table.bin";
+    private static final String BLOOM_FILE = "bloom.bin";
+
+    private static final long TABLE_MAGIC = 0x434c4d4455505442L;
+    private static final long BLOOM_MAGIC = 0x434c4d4455504246L;
+    // magic, capacity, count, log bytes covered, clean flag
+    private static final int TABLE_HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    // Slots per mapped region (1 GB); a single mapping holds at most 2 GB
+    private static final int REGION_SLOT_BITS = 26;
+    private static final long REGION_SLOT_MASK = (1L << REGION_SLOT_BITS) - 1;
+    private static final long MIN_CAPACITY = 1L << 16;
+    private static final double MAX_LOAD = 0.6;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int LOG_HEADER_BYTES = 4 + 4;
+    private static final long SYNC_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final DateTimeFormatter[] NAMED_MONTH_DATES = {
+            formatter("MMMM d, uuuu"), formatter("MMM d, uuuu"), formatter("d MMMM uuuu"), formatter("d MMM uuuu")
+    };
+
+    private final Path directory;
+    private final DirectoryLock directoryLock;
+    private final FileChannel log;
+    private long logBytes;
+    private long lastSyncNanos = System.nanoTime();
+
+    private FileChannel tableChannel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] regions;
+    private long capacity;
+    private long count;
+    private BloomFilter bloom;
+    private boolean closed;
+
+    /**
+     * Opens or creates the index
+     * @param directory Index directory
+     * @throws IOException If the index cannot be opened or rebuilt
+     */
+    public DuplicateIndex(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.directoryLock = DirectoryLock.acquire(this.directory, "Duplicate index");
+        try {
+            this.log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            directoryLock.close();
+            throw e;
+        }
+        this.logBytes = log.size();
+
+        long covered = openTable();
+        if (covered < 0) {
+            if (logBytes > 0) {
+                System.err.println("Duplicate index " + directory + " was not closed cleanly, rebuilding it from "
+                        + LOG_FILE);
+            }
+            createTable(Math.max(MIN_CAPACITY, Long.highestOneBit(Math.max(1, logBytes / 16)) * 2));
+            replay(0);
+        } else {
+            if (!loadBloom(covered)) {
+                rebuildBloom();
+            }
+            replay(covered);
+        }
+        header.putInt(32, 0);
+        header.force();
+    }
+
+    /**
+     * Looks up earlier claims with the same loss and records this claim under any key not seen before
+     * @param fields Extracted fields of the claim
+     * @param claimId Claim id
+     * @return Id of the earliest other claim with the same policy, date of loss and vehicle, or null
+     * @throws IOException If the index cannot be read or written
+     */
+    public synchronized String register(ExtractedFields fields, String claimId) throws IOException {
+        checkOpen();
+        String original = null;
+        for (String key : keysFor(fields)) {
+            long hash = hash(key);
+            String first = find(key, hash);
+            if (first == null) {
+                insert(hash, append(key, claimId));
+            } else if (original == null && !first.equals(claimId)) {
+                original = first;
+            }
+        }
+        return original;
+    }
+
+    /**
+     * Looks up earlier claims with the same loss without recording this one
+     * @param fields Extracted fields of the claim
+     * @param claimId Claim id, or null if the claim has none
+     * @return Id of the earliest other claim with the same policy, date of loss and vehicle, or null
+     * @throws IOException If the index cannot be read
+     */
+    public synchronized String find(ExtractedFields fields, String claimId) throws IOException {
+        checkOpen();
+        for (String key : keysFor(fields)) {
+            String first = find(key, hash(key));
+            if (first != null && !first.equals(claimId)) {
+                return first;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of keys recorded
+     */
+    public synchronized long size() {
+        return count;
+    }
+
+    // ---- keys ----
+
+    /**
+     * Builds the index keys of a claim
+     * @param fields Extracted fields
+     * @return Keys for the VIN and the plate number, whichever are present; none without policy number and date
+     */
+    static List<String> keysFor(ExtractedFields fields) {
+        List<String> keys = new ArrayList<>(2);
+        String policy = alphanumeric(fields.get(FieldId.POLICY_NUMBER));
+        String date = normalizeDate(fields.get(FieldId.DATE_OF_LOSS));
+        if (policy.isEmpty() || date.isEmpty()) {
+            return keys;
+        }
+        String vin = normalizeVin(fields.get(FieldId.VIN));
+        if (!vin.isEmpty()) {
+            keys.add(policy + "|" + date + "|V:" + vin);
+        }
+        String plate = alphanumeric(fields.get(FieldId.PLATE_NUMBER));
+        if (!plate.isEmpty()) {
+            keys.add(policy + "|" + date + "|P:" + plate);
+        }
+        return keys;
+    }
+
+    // Upper-case letters and digits only, so "pa-2024 001234" matches "PA2024001234"
+    static String alphanumeric(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toUpperCase(c));
+            }
+        }
+        return out.toString();
+    }
+
+    // VINs never contain I, O or Q; in OCR text they are misread 1 and 0
+    static String normalizeVin(String vin) {
+        String value = alphanumeric(vin);
+        return value.replace('I', '1').replace('O', '0').replace('Q', '0');
+    }
+
+    /**
+     * Normalizes a date of loss to YYYYMMDD. Numeric dates are read as year first when the
+     * first part has four digits and as month/day/year (ACORD forms) otherwise.
+     * @param date Date as extracted
+     * @return Normalized date, the letters and digits of the value if it is not a date, or ""
+     */
+    static String normalizeDate(String date) {
+        if (date == null || date.trim().isEmpty()) {
+            return "";
+        }
+        String trimmed = date.trim();
+        // Up to three runs of at most four digits, separated by '/', '-', '.' or spaces
+        int[] parts = new int[3];
+        int[] lengths = new int[3];
+        int count = 0;
+        boolean numeric = true;
+        for (int i = 0; i < trimmed.length() && numeric; ) {
+            char c = trimmed.charAt(i);
+            if (c >= '0' && c <= '9') {
+                int start = i;
+                int value = 0;
+                while (i < trimmed.length() && trimmed.charAt(i) >= '0' && trimmed.charAt(i) <= '9') {
+                    value = value * 10 + (trimmed.charAt(i++) - '0');
+                    if (i - start > 4) {
+                        break;
+                    }
+                }
+                numeric = count < 3 && i - start <= 4;
+                if (numeric) {
+                    parts[count] = value;
+                    lengths[count++] = i - start;
+                }
+            } else {
+                numeric = c == '/' || c == '-' || c == '.' || c <= ' ';
+                i++;
+            }
+        }
+        if (numeric && count == 3) {
+            boolean yearFirst = lengths[0] == 4;
+            int year = yearFirst ? parts[0] : parts[2];
+            int month = yearFirst ? parts[1] : parts[0];
+            int day = yearFirst ? parts[2] : parts[1];
+            if (!yearFirst && lengths[2] <= 2) {
+                year += 2000;
+            }
+            if (month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+                char[] out = new char[8];
+                putDigits(out, 0, year, 4);
+                putDigits(out, 4, month, 2);
+                putDigits(out, 6, day, 2);
+                return new String(out);
+            }
+        }
+        for (DateTimeFormatter format : NAMED_MONTH_DATES) {
+            try {
+                return LocalDate.parse(trimmed, format).format(DateTimeFormatter.BASIC_ISO_DATE);
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        return alphanumeric(trimmed);
+    }
+
+    private static void putDigits(char[] out, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--, value /= 10) {
+            out[i] = (char) ('0' + value % 10);
+        }
+    }
+
+    private static DateTimeFormatter formatter(String pattern) {
+        return new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern(pattern).toFormatter(Locale.US);
+    }
+
+    // 64-bit FNV-1a over the key's characters; never returns the empty-slot marker
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1L : h;
+    }
+
+    // ---- lookups ----
+
+    /**
+     * @return Claim id recorded for the key, or null
+     */
+    private String find(String key, long hash) throws IOException {
+        if (!bloom.mightContain(hash)) {
+            return null;
+        }
+        long mask = capacity - 1;
+        for (long slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            long slotHash = slotHash(slot);
+            if (slotHash == 0) {
+                return null;
+            }
+            if (slotHash == hash) {
+                String[] record = readRecord(slotOffset(slot) - 1);
+                if (record[0].equals(key)) {
+                    return record[1];
+                }
+            }
+        }
+    }
+
+    private void insert(long hash, long logOffset) throws IOException {
+        if (count + 1 > capacity * MAX_LOAD) {
+            grow();
+        }
+        put(regions, capacity, hash, logOffset);
+        bloom.add(hash);
+        count++;
+    }
+
+    private static void put(MappedByteBuffer[] regions, long capacity, long hash, long logOffset) {
+        long mask = capacity - 1;
+        long slot = mix(hash) & mask;
+        while (regions[region(slot)].getLong(position(slot)) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        // Offset first: a slot counts as used once its hash is set
+        regions[region(slot)].putLong(position(slot) + 8, logOffset + 1);
+        regions[region(slot)].putLong(position(slot), hash);
+    }
+
+    private long slotHash(long slot) {
+        return regions[region(slot)].getLong(position(slot));
+    }
+
+    private long slotOffset(long slot) {
+        return regions[region(slot)].getLong(position(slot) + 8);
+    }
+
+    private static int region(long slot) {
+        return (int) (slot >>> REGION_SLOT_BITS);
+    }
+
+    private static int position(long slot) {
+        return (int) ((slot & REGION_SLOT_MASK) * SLOT_BYTES);
+    }
+
+    // ---- claims log ----
+
+    private long append(String key, String claimId) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] id = claimId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(2 + keyBytes.length + id.length);
+        body.putShort((short) keyBytes.length).put(keyBytes).put(id);
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(LOG_HEADER_BYTES + body.remaining());
+        record.putInt(4 + body.remaining()).putInt((int) crc.getValue()).put(body);
+        record.flip();
+        long offset = logBytes;
+        while (record.hasRemaining()) {
+            logBytes += log.write(record, logBytes);
+        }
+        long now = System.nanoTime();
+        if (now - lastSyncNanos >= SYNC_INTERVAL_NANOS) {
+            log.force(false);
+            lastSyncNanos = now;
+        }
+        return offset;
+    }
+
+    /**
+     * @return Key and claim id of the record at the offset
+     */
+    private String[] readRecord(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(LOG_HEADER_BYTES);
+        readFully(head, offset);
+        ByteBuffer body = ByteBuffer.allocate(head.getInt(0) - 4);
+        readFully(body, offset + LOG_HEADER_BYTES);
+        return decode(body);
+    }
+
+    private static String[] decode(ByteBuffer body) {
+        body.flip();
+        int keyLength = body.getShort() & 0xffff;
+        String key = new String(body.array(), body.position(), keyLength, StandardCharsets.UTF_8);
+        int idStart = body.position() + keyLength;
+        String id = new String(body.array(), idStart, body.limit() - idStart, StandardCharsets.UTF_8);
+        return new String[]{key, id};
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + LOG_FILE + " at offset " + offset);
+            }
+        }
+    }
+
+    /**
+     * Adds the log records from an offset to the table and filter; a torn or corrupt tail is cut off
+     */
+    private void replay(long from) throws IOException {
+        long offset = from;
+        ByteBuffer head = ByteBuffer.allocate(LOG_HEADER_BYTES);
+        while (offset + LOG_HEADER_BYTES <= logBytes) {
+            head.clear();
+            readFully(head, offset);
+            int length = head.getInt(0);
+            if (length < 4 + 2 || offset + 4 + length > logBytes) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length - 4);
+            readFully(body, offset + LOG_HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != head.getInt(4)) {
+                break;
+            }
+            insert(hash(decode(body)[0]), offset);
+            offset += 4 + length;
+        }
+
+        if (offset < logBytes) {
+            System.err.println("Duplicate index " + directory + ": dropping " + (logBytes - offset)
+                    + " bytes of incomplete records at offset " + offset);
+            log.truncate(offset);
+            logBytes = offset;
+        }
+    }
+
+    // ---- table file ----
+
+    /**
+     * Maps an existing table that was closed cleanly
+     * @return Log bytes the table covers, or -1 if it has to be rebuilt
+     */
+    private long openTable() throws IOException {
+        Path file = directory.resolve(TABLE_FILE);
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < TABLE_HEADER_BYTES) {
+            channel.close();
+            return -1;
+        }
+        MappedByteBuffer mappedHeader = channel.map(FileChannel.MapMode.READ_WRITE, 0, TABLE_HEADER_BYTES);
+        long tableCapacity = mappedHeader.getLong(8);
+        long covered = mappedHeader.getLong(24);
+        boolean valid = mappedHeader.getLong(0) == TABLE_MAGIC
+                && mappedHeader.getInt(32) == 1
+                && tableCapacity >= MIN_CAPACITY && Long.bitCount(tableCapacity) == 1
+                && channel.size() >= TABLE_HEADER_BYTES + tableCapacity * SLOT_BYTES
+                && covered <= logBytes;
+        if (!valid) {
+            channel.close();
+            return -1;
+        }
+        tableChannel = channel;
+        header = mappedHeader;
+        capacity = tableCapacity;
+        count = mappedHeader.getLong(16);
+        regions = mapRegions(channel, tableCapacity);
+        return covered;
+    }
+
+    private void createTable(long tableCapacity) throws IOException {
+        Path file = directory.resolve(TABLE_FILE);
+        Files.deleteIfExists(file);
+        tableChannel = newTableFile(file, tableCapacity);
+        header = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0, TABLE_HEADER_BYTES);
+        header.putLong(0, TABLE_MAGIC).putLong(8, tableCapacity);
+        regions = mapRegions(tableChannel, tableCapacity);
+        capacity = tableCapacity;
+        count = 0;
+        bloom = new BloomFilter((long) (tableCapacity * MAX_LOAD), BLOOM_BITS_PER_KEY);
+    }
+
+    // Sparse file: only slots that are written take disk space
+    private static FileChannel newTableFile(Path file, long tableCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.write(ByteBuffer.allocate(1), TABLE_HEADER_BYTES + tableCapacity * SLOT_BYTES - 1);
+        return channel;
+    }
+
+    private static MappedByteBuffer[] mapRegions(FileChannel channel, long tableCapacity) throws IOException {
+        long regionSlots = Math.min(tableCapacity, 1L << REGION_SLOT_BITS);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[(int) (tableCapacity / regionSlots)];
+        for (int i = 0; i < mapped.length; i++) {
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    TABLE_HEADER_BYTES + i * regionSlots * SLOT_BYTES, regionSlots * SLOT_BYTES);
+        }
+        return mapped;
+    }
+
+    /**
+     * Rehashes every slot into a table of twice the capacity and resizes the filter to match
+     */
+    private void grow() throws IOException {
+        long newCapacity = capacity * 2;
+        Path file = directory.resolve(TABLE_FILE);
+        Path temp = directory.resolve(TABLE_FILE + ".tmp");
+        Files.deleteIfExists(temp);
+        FileChannel channel = newTableFile(temp, newCapacity);
+        MappedByteBuffer newHeader = channel.map(FileChannel.MapMode.READ_WRITE, 0, TABLE_HEADER_BYTES);
+        newHeader.putLong(0, TABLE_MAGIC).putLong(8, newCapacity);
+        MappedByteBuffer[] newRegions = mapRegions(channel, newCapacity);
+        BloomFilter newBloom = new BloomFilter((long) (newCapacity * MAX_LOAD), BLOOM_BITS_PER_KEY);
+        for (long slot = 0; slot < capacity; slot++) {
+            long slotHash = slotHash(slot);
+            if (slotHash != 0) {
+                put(newRegions, newCapacity, slotHash, slotOffset(slot) - 1);
+                newBloom.add(slotHash);
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        tableChannel.close();
+        tableChannel = channel;
+        header = newHeader;
+        regions = newRegions;
+        capacity = newCapacity;
+        bloom = newBloom;
+    }
+
+    private void rebuildBloom() {
+        bloom = new BloomFilter((long) (capacity * MAX_LOAD), BLOOM_BITS_PER_KEY);
+        for (long slot = 0; slot < capacity; slot++) {
+            long slotHash = slotHash(slot);
+            if (slotHash != 0) {
+                bloom.add(slotHash);
+            }
+        }
+    }
+
+    // ---- filter file ----
+
+    /**
+     * Writes [long magic][long log bytes covered][long table capacity][long words][words]
+     */
+    private void saveBloom() throws IOException {
+        Path file = directory.resolve(BLOOM_FILE);
+        Path temp = directory.resolve(BLOOM_FILE + ".tmp");
+        long[] words = bloom.getBits();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putLong(BLOOM_MAGIC).putLong(logBytes).putLong(capacity).putLong(words.length);
+            for (long word : words) {
+                if (!buffer.hasRemaining()) {
+                    writeAll(channel, buffer);
+                }
+                buffer.putLong(word);
+            }
+            writeAll(channel, buffer);
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeAll(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return true if a filter matching the table was loaded
+     */
+    private boolean loadBloom(long covered) throws IOException {
+        Path file = directory.resolve(BLOOM_FILE);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.limit(32);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // Keep reading
+            }
+            if (buffer.hasRemaining()) {
+                return false;
+            }
+            buffer.flip();
+            if (buffer.getLong() != BLOOM_MAGIC || buffer.getLong() != covered || buffer.getLong() != capacity) {
+                return false;
+            }
+            long length = buffer.getLong();
+            if (length <= 0 || length > Integer.MAX_VALUE || channel.size() != 32 + length * 8) {
+                return false;
+            }
+            long[] words = new long[(int) length];
+            int i = 0;
+            buffer.clear();
+            while (i < words.length && channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= 8) {
+                    words[i++] = buffer.getLong();
+                }
+                buffer.compact();
+            }
+            if (i < words.length) {
+                return false;
+            }
+            bloom = new BloomFilter(words);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Duplicate index is closed");
+        }
+    }
+
+    /**
+     * Syncs the log, saves the filter and marks the table clean
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            log.force(false);
+            for (MappedByteBuffer region : regions) {
+                region.force();
+            }
+            saveBloom();
+            header.putLong(16, count).putLong(24, logBytes).putInt(32, 1);
+            header.force();
+        } finally {
+            try {
+                tableChannel.close();
+                log.close();
+            } finally {
+                directoryLock.close();
+            }
+        }
+    }
+
+    // Spreads the key bits before masking (finalizer of MurmurHash3)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,202 @@
+package org.insurance.claims.ExtractedFields;
+
+import org.insurance.claims.model.ExtractedFields;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DecisionTableTest {
+
+    private static final String MISSING_RULE = "{\"name\": \"missing\", \"when\": {\"missingFields\": \"any\"},"
+            + " \"route\": \"Manual Review\", \"priority\": 1, \"reasoning\": \"Missing {missingFields}. \"}";
+    private static final String FAST_TRACK_RULE = "{\"name\": \"fast-track\", \"when\": {\"damage\": {\"below\": 25000}},"
+            + " \"route\": \"Fast-track\", \"priority\": 4,"
+            + " \"reasoning\": \"${damage} is below ${damage.below}. \"}";
+    private static final String HIGH_VALUE_RULE = "{\"name\": \"high-value\", \"when\": {\"damage\": {\"atLeast\": 25000}},"
+            + " \"route\": \"Standard Review\", \"priority\": 5,"
+            + " \"reasoning\": \"${damage} is at least ${damage.atLeast}. \"}";
+    private static final String DEFAULT_RULE = "{\"name\": \"default\", \"when\": {},"
+            + " \"route\": \"Standard Review\", \"priority\": 6, \"reasoning\": \"Default. \"}";
+
+    private static final List<String> NONE_MISSING = Collections.emptyList();
+    private static final List<String> POLICY_MISSING = List.of("policyNumber");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void firstMatchingRuleDecidesInTableOrder() throws IOException {
+        ExtractedFields fields = claim(1000.0);
+
+        DecisionTable missingFirst = table(MISSING_RULE, FAST_TRACK_RULE, DEFAULT_RULE);
+        ClaimRouter.RoutingDecision decision = evaluate(missingFirst, fields, POLICY_MISSING);
+        assertEquals("Manual Review", decision.getRoute());
+        assertEquals(1, decision.getPriority());
+        assertEquals("Missing policyNumber. ", decision.getReasoning());
+
+        // Same claim, rules swapped: the priority comes from the rule, not from its position
+        DecisionTable fastTrackFirst = table(FAST_TRACK_RULE, MISSING_RULE, DEFAULT_RULE);
+        decision = evaluate(fastTrackFirst, fields, POLICY_MISSING);
+        assertEquals("Fast-track", decision.getRoute());
+        assertEquals(4, decision.getPriority());
+
+        decision = evaluate(missingFirst, claim(null), NONE_MISSING);
+        assertEquals("Standard Review", decision.getRoute());
+        assertEquals(6, decision.getPriority());
+    }
+
+    @Test
+    public void damageBandsSplitAtThreshold() throws IOException {
+        DecisionTable table = table(FAST_TRACK_RULE, HIGH_VALUE_RULE, DEFAULT_RULE);
+
+        ClaimRouter.RoutingDecision below = evaluate(table, claim(24999.99), NONE_MISSING);
+        assertEquals("Fast-track", below.getRoute());
+        assertEquals("$24999.99 is below $25000.00. ", below.getReasoning());
+
+        ClaimRouter.RoutingDecision atThreshold = evaluate(table, claim(25000.0), NONE_MISSING);
+        assertEquals("Standard Review", atThreshold.getRoute());
+        assertEquals(5, atThreshold.getPriority());
+        assertEquals("$25000.00 is at least $25000.00. ", atThreshold.getReasoning());
+
+        // Unknown damage falls in neither band
+        assertEquals(6, evaluate(table, claim(null), NONE_MISSING).getPriority());
+    }
+
+    @Test
+    public void bundledTableSplitsAtThreshold() {
+        DecisionTable table = DecisionTable.loadDefault();
+        assertEquals("Fast-track", evaluate(table, claim(24999.99), NONE_MISSING).getRoute());
+        assertEquals("Standard Review", evaluate(table, claim(25000.0), NONE_MISSING).getRoute());
+        assertEquals("Manual Review", evaluate(table, claim(25000.0), POLICY_MISSING).getRoute());
+    }
+
+    @Test
+    public void fallsBackWhenNoRuleMatches() throws IOException {
+        DecisionTable table = table(FAST_TRACK_RULE);
+        ClaimRouter.RoutingDecision decision = evaluate(table, claim(30000.0), NONE_MISSING);
+
+        assertEquals(DecisionTable.NO_MATCH_ROUTE, decision.getRoute());
+        assertEquals(DecisionTable.REASON_NO_RULE_MATCHED, decision.getReasonCode());
+        assertEquals(1, decision.getPriority());
+        assertTrue(decision.getReasoning(), decision.getReasoning().contains(table.getVersion()));
+    }
+
+    @Test
+    public void rendersReasonCodes() throws IOException {
+        DecisionTable table = table(
+                "{\"when\": {\"timedOut\": true}, \"route\": \"Manual Review\", \"priority\": 1,"
+                        + " \"reasoning\": \"Timed out[[: {timeoutDetail}]]. \", \"reasonCode\": \"{timeoutCode}\"}",
+                "{\"when\": {\"duplicate\": true}, \"route\": \"Investigation Queue\", \"priority\": 2,"
+                        + " \"reasoning\": \"Duplicate of {duplicateOf}. \", \"reasonCode\": \"PROBABLE_DUPLICATE\"}",
+                DEFAULT_RULE);
+
+        ExtractedFields timedOut = claim(100.0);
+        timedOut.setTimeout(ClaimRouter.REASON_EXTRACTION_TIMEOUT, null);
+        ClaimRouter.RoutingDecision decision = evaluate(table, timedOut, NONE_MISSING);
+        assertEquals(ClaimRouter.REASON_EXTRACTION_TIMEOUT, decision.getReasonCode());
+        assertEquals("Timed out. ", decision.getReasoning());
+
+        ExtractedFields duplicate = claim(100.0);
+        duplicate.setDuplicateOf("claim-1");
+        decision = evaluate(table, duplicate, NONE_MISSING);
+        assertEquals("PROBABLE_DUPLICATE", decision.getReasonCode());
+        assertEquals("Duplicate of claim-1. ", decision.getReasoning());
+
+        assertNull(evaluate(table, claim(100.0), NONE_MISSING).getReasonCode());
+    }
+
+    @Test
+    public void rejectsMalformedTables() {
+        assertRejected("{\"rules\": []}");
+        assertRejected("{\"rules\": [{\"when\": {}, \"reasoning\": \"No route\"}]}");
+        assertRejected(rules("{\"when\": {\"damageAbove\": 5}, \"route\": \"Fast-track\"}"));
+        assertRejected(rules("{\"when\": {\"present\": [\"assetDetails.colour\"]}, \"route\": \"Fast-track\"}"));
+        assertRejected(rules("{\"when\": {\"anyOf\": []}, \"route\": \"Fast-track\"}"));
+        assertRejected(rules("{\"route\": \"Fast-track\", \"reasoning\": \"Below {damage.below}\"}"));
+        assertRejected(rules("{\"route\": \"Fast-track\", \"reasoning\": \"Unclosed {damage\"}"));
+        assertRejected("{\"rules\": [");
+    }
+
+    @Test
+    public void keepsPreviousTableWhenReloadIsMalformed() throws Exception {
+        Path file = folder.newFile("decision-table.json").toPath();
+        Files.write(file, rules(FAST_TRACK_RULE, DEFAULT_RULE).getBytes(StandardCharsets.UTF_8));
+        ClaimRouter router = new ClaimRouter();
+        ScheduledExecutorService poller = router.watch(file);
+        try {
+            DecisionTable original = router.getTable();
+            assertEquals("Fast-track", route(router, 100.0));
+
+            write(file, rules("{\"when\": {\"damageAbove\": 5}, \"route\": \"Manual Review\"}"), 1);
+            Thread.sleep(2 * ClaimRouter.RELOAD_INTERVAL_MILLIS + 500);
+            assertSame(original, router.getTable());
+            assertEquals("Fast-track", route(router, 100.0));
+
+            // A valid table is picked up on the next poll
+            CountDownLatch reloaded = new CountDownLatch(1);
+            router.addReloadListener(table -> reloaded.countDown());
+            write(file, rules(DEFAULT_RULE), 2);
+            assertTrue(reloaded.await(10, TimeUnit.SECONDS));
+            assertEquals("Standard Review", route(router, 100.0));
+        } finally {
+            poller.shutdownNow();
+        }
+    }
+
+    private static void assertRejected(String json) {
+        try {
+            DecisionTable.load(json.getBytes(StandardCharsets.UTF_8));
+            fail("Accepted " + json);
+        } catch (IllegalArgumentException | IOException e) {
+            // Expected
+        }
+    }
+
+    // Bumps the modification time so the poller sees the change even within one clock tick
+    private static void write(Path file, String json, int generation) throws IOException {
+        FileTime previous = Files.getLastModifiedTime(file);
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(previous.toMillis() + generation * 1000L));
+    }
+
+    private static String route(ClaimRouter router, Double damage) {
+        return router.determineRoute(claim(damage), NONE_MISSING).getRoute();
+    }
+
+    private static ClaimRouter.RoutingDecision evaluate(DecisionTable table, ExtractedFields fields,
+                                                        List<String> missingFields) {
+        return table.evaluate(fields, missingFields, KeywordMatcher.getDefault());
+    }
+
+    private static DecisionTable table(String... rules) throws IOException {
+        return DecisionTable.load(rules(rules).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String rules(String... rules) {
+        return "{\"version\": \"test\", \"rules\": [" + String.join(", ", rules) + "]}";
+    }
+
+    private static ExtractedFields claim(Double damage) {
+        ExtractedFields fields = new ExtractedFields();
+        fields.getIncidentInfo().setDescription("Rear-ended at a traffic light.");
+        fields.setEstimatedDamage(damage);
+        return fields;
+    }
+}
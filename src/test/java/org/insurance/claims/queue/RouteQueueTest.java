@@ -0,0 +1,230 @@
+package org.insurance.claims.queue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RouteQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deliversByPriorityThenArrival() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            queue.enqueue("a", 3, bytes("a"));
+            queue.enqueue("b", 1, bytes("b"));
+            queue.enqueue("c", 2, bytes("c"));
+            queue.enqueue("d", 1, bytes("d"));
+
+            assertEquals(4, queue.size());
+            assertEquals("b", queue.poll().getClaimId());
+            assertEquals("d", queue.poll().getClaimId());
+            assertEquals("c", queue.poll().getClaimId());
+            assertEquals("a", queue.poll().getClaimId());
+            assertNull(queue.poll());
+            assertEquals(4, queue.inFlightCount());
+        }
+    }
+
+    @Test
+    public void ackRemovesAndReleaseRequeues() throws IOException {
+        try (RouteQueue queue = new RouteQueue(folder.getRoot().toPath())) {
+            RouteQueue.Entry first = queue.enqueue("first", 1, bytes("one"));
+            queue.enqueue("second", 2, bytes("two"));
+
+            RouteQueue.Entry taken = queue.poll();
+            assertEquals(first.getSequence(), taken.getSequence());
+            assertEquals(1, queue.size());
+            assertEquals(1, queue.inFlightCount());
+
+            // A released entry goes back ahead of the less urgent one
+            assertTrue(queue.release(taken.getSequence()));
+            assertFalse(queue.release(taken.getSequence()));
+            assertEquals(2, queue.size());
+            assertEquals(0, queue.inFlightCount());
+
+            RouteQueue.Entry again = queue.poll();
+            assertEquals(first.getSequence(), again.getSequence());
+            assertArrayEquals(bytes("one"), again.getPayload());
+
+            assertTrue(queue.ack(again.getSequence()));
+            assertFalse(queue.ack(again.getSequence()));
+            assertFalse(queue.release(again.getSequence()));
+            assertEquals(1, queue.size());
+            assertEquals(0, queue.inFlightCount());
+            assertEquals("second", queue.poll().getClaimId());
+        }
+    }
+
+    @Test
+    public void redeliversUnacknowledgedEntriesAfterReopen() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        long highest;
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            queue.enqueue("acked", 1, bytes("acked"));
+            queue.enqueue("taken", 2, bytes("taken"));
+            highest = queue.enqueue("waiting", 3, bytes("waiting")).getSequence();
+
+            assertTrue(queue.ack(queue.poll().getSequence()));
+            assertEquals("taken", queue.poll().getClaimId());
+            queue.sync();
+        }
+
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            assertEquals(2, queue.size());
+            assertEquals(0, queue.inFlightCount());
+
+            RouteQueue.Entry taken = queue.poll();
+            assertEquals("taken", taken.getClaimId());
+            assertEquals(2, taken.getPriority());
+            assertArrayEquals(bytes("taken"), taken.getPayload());
+            RouteQueue.Entry waiting = queue.poll();
+            assertEquals("waiting", waiting.getClaimId());
+            assertArrayEquals(bytes("waiting"), waiting.getPayload());
+            assertNull(queue.poll());
+
+            // Sequence numbers continue after the replayed ones
+            assertTrue(queue.enqueue("new", 1, bytes("new")).getSequence() > highest);
+        }
+    }
+
+    @Test
+    public void compactsWhileOffersArePending() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int count = 5_000;
+        AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+        Set<String> seen = new HashSet<>();
+
+        // Compact as soon as a couple of records are dead, so compaction keeps running
+        // while the producer appends to the pending batch
+        try (RouteQueue queue = new RouteQueue(directory, 1, 2)) {
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        queue.offer("claim-" + i, 1 + i % 3, payload(i));
+                    }
+                } catch (Throwable e) {
+                    producerFailure.set(e);
+                }
+            });
+            producer.start();
+
+            while (seen.size() < count) {
+                RouteQueue.Entry entry = queue.poll(10, TimeUnit.SECONDS);
+                assertNotNull("Timed out after " + seen.size() + " entries", entry);
+                int i = Integer.parseInt(entry.getClaimId().substring("claim-".length()));
+                assertArrayEquals(payload(i), entry.getPayload());
+                assertTrue("Delivered twice: " + entry.getClaimId(), seen.add(entry.getClaimId()));
+                assertTrue(queue.ack(entry.getSequence()));
+            }
+            producer.join();
+            assertNull(producerFailure.get());
+            assertNull(queue.poll());
+
+            // The last flush compacted the log down to its first record
+            queue.sync();
+            assertTrue(Files.size(directory.resolve(RouteQueue.LOG_FILE)) < 100);
+
+            RouteQueue.Entry after = queue.enqueue("after", 1, bytes("after"));
+            RouteQueue.Entry polled = queue.poll();
+            assertEquals(after.getSequence(), polled.getSequence());
+            assertArrayEquals(bytes("after"), polled.getPayload());
+        }
+
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            assertEquals(1, queue.size());
+            assertEquals("after", queue.poll().getClaimId());
+        }
+    }
+
+    @Test
+    public void cutsTruncatedTail() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path log = directory.resolve(RouteQueue.LOG_FILE);
+        long firstEnd;
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            queue.enqueue("kept", 1, bytes("kept"));
+            firstEnd = Files.size(log);
+            queue.enqueue("torn", 1, bytes("torn"));
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            assertEquals(firstEnd, Files.size(log));
+            assertEquals(1, queue.size());
+            queue.enqueue("appended", 1, bytes("appended"));
+        }
+
+        // Records appended after the cut replay normally
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            assertEquals("kept", queue.poll().getClaimId());
+            assertEquals("appended", queue.poll().getClaimId());
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void cutsCorruptTail() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path log = directory.resolve(RouteQueue.LOG_FILE);
+        long firstEnd;
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            queue.enqueue("kept", 1, bytes("kept"));
+            firstEnd = Files.size(log);
+            queue.enqueue("corrupt", 1, bytes("corrupt"));
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 0xff)).rewind();
+            channel.write(last, channel.size() - 1);
+        }
+
+        try (RouteQueue queue = new RouteQueue(directory)) {
+            assertEquals(firstEnd, Files.size(log));
+            List<String> ids = new ArrayList<>();
+            for (RouteQueue.Entry entry = queue.poll(); entry != null; entry = queue.poll()) {
+                ids.add(entry.getClaimId());
+            }
+            assertEquals(List.of("kept"), ids);
+        }
+    }
+
+    private static byte[] payload(int i) {
+        // Varying lengths so records straddle buffer boundaries
+        StringBuilder text = new StringBuilder();
+        for (int j = 0; j <= i % 50; j++) {
+            text.append(i).append(';');
+        }
+        return bytes(text.toString());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,218 @@
+package org.insurance.claims.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResultStoreTest {
+
+    // Small enough that a handful of records fills a segment
+    private static final long SEGMENT_BYTES = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void getsRecordsAcrossSegmentRoll() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (ResultStore store = open(directory)) {
+            for (int i = 0; i < 10; i++) {
+                store.append("claim-" + i, payload(i));
+            }
+
+            assertTrue(store.getSegmentCount() > 1);
+            assertEquals(10, store.size());
+            for (int i = 0; i < 10; i++) {
+                assertArrayEquals(payload(i), store.get("claim-" + i));
+            }
+            assertNull(store.get("claim-10"));
+        }
+    }
+
+    @Test
+    public void reopensFromSealedIndexes() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        int segments = fill(directory, 10);
+        for (int i = 0; i < segments - 1; i++) {
+            assertTrue(Files.exists(indexFile(directory, i)));
+        }
+        // The active segment is scanned on open and has no index
+        assertFalse(Files.exists(indexFile(directory, segments - 1)));
+
+        try (ResultStore store = open(directory)) {
+            assertEquals(segments, store.getSegmentCount());
+            assertStored(store, 10);
+        }
+    }
+
+    @Test
+    public void reopensWithoutSealedIndexes() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        int segments = fill(directory, 10);
+        for (int i = 0; i < segments - 1; i++) {
+            Files.delete(indexFile(directory, i));
+        }
+
+        try (ResultStore store = open(directory)) {
+            assertEquals(segments, store.getSegmentCount());
+            assertStored(store, 10);
+        }
+        // Scanned sealed segments get their index back
+        for (int i = 0; i < segments - 1; i++) {
+            assertTrue(Files.exists(indexFile(directory, i)));
+        }
+    }
+
+    @Test
+    public void truncatesTornTailOfActiveSegment() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path segment = segmentFile(directory, 0);
+        long intactSize;
+        try (ResultStore store = new ResultStore(directory)) {
+            store.append("kept", bytes("kept"));
+            intactSize = Files.size(segment);
+            store.append("torn", bytes("torn"));
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        try (ResultStore store = new ResultStore(directory)) {
+            assertEquals(intactSize, Files.size(segment));
+            assertEquals(1, store.size());
+            assertArrayEquals(bytes("kept"), store.get("kept"));
+            assertNull(store.get("torn"));
+
+            store.append("after", bytes("after"));
+        }
+
+        try (ResultStore store = new ResultStore(directory)) {
+            assertArrayEquals(bytes("kept"), store.get("kept"));
+            assertArrayEquals(bytes("after"), store.get("after"));
+        }
+    }
+
+    @Test
+    public void failsOpenOnCorruptSealedSegment() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        fill(directory, 10);
+        // Without its index the sealed segment is scanned, which finds the damage
+        Files.delete(indexFile(directory, 0));
+        flipLastByte(segmentFile(directory, 0));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                open(directory).close();
+                fail("Opened a store with a corrupt sealed segment");
+            } catch (IOException e) {
+                // The second attempt fails on the segment too, not on a lock left behind
+                assertTrue(e.getMessage(), e.getMessage().contains("sealed segment"));
+            }
+        }
+    }
+
+    @Test
+    public void scanLatestSkipsSupersededRecords() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        // Two of these records per segment, so versions of one id land in different segments
+        long segmentBytes = 30;
+        try (ResultStore store = new ResultStore(directory, segmentBytes, ResultStore.DEFAULT_COMMIT_INTERVAL_MILLIS)) {
+            store.append("a", bytes("a1"));
+            store.append("b", bytes("b1"));
+            store.append("c", bytes("c1"));
+            store.append("a", bytes("a2"));
+            store.append("c", bytes("c2"));
+            store.append("a", bytes("a3"));
+            assertEquals(3, store.getSegmentCount());
+
+            assertEquals(List.of("a=a1", "b=b1", "c=c1", "a=a2", "c=c2", "a=a3"), scan(store, false));
+            assertEquals(List.of("b=b1", "c=c2", "a=a3"), scan(store, true));
+            assertEquals(3, store.size());
+            assertArrayEquals(bytes("a3"), store.get("a"));
+        }
+
+        // Sealed indexes and the scanned active segment agree on which record is latest
+        try (ResultStore store = new ResultStore(directory, segmentBytes, ResultStore.DEFAULT_COMMIT_INTERVAL_MILLIS)) {
+            assertEquals(List.of("b=b1", "c=c2", "a=a3"), scan(store, true));
+        }
+    }
+
+    private static ResultStore open(Path directory) throws IOException {
+        return new ResultStore(directory, SEGMENT_BYTES, ResultStore.DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Appends records claim-0 .. claim-(count - 1) and closes the store
+     * @return Number of segments written
+     */
+    private static int fill(Path directory, int count) throws IOException {
+        try (ResultStore store = open(directory)) {
+            for (int i = 0; i < count; i++) {
+                store.append("claim-" + i, payload(i));
+            }
+            assertTrue(store.getSegmentCount() > 2);
+            return store.getSegmentCount();
+        }
+    }
+
+    private static void assertStored(ResultStore store, int count) throws IOException {
+        assertEquals(count, store.size());
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(payload(i), store.get("claim-" + i));
+        }
+    }
+
+    private static List<String> scan(ResultStore store, boolean latestOnly) throws IOException {
+        List<String> visited = new ArrayList<>();
+        ResultStore.RecordVisitor visitor =
+                (claimId, payload) -> visited.add(claimId + "=" + new String(payload, StandardCharsets.UTF_8));
+        if (latestOnly) {
+            store.scanLatest(visitor);
+        } else {
+            store.scan(visitor);
+        }
+        return visited;
+    }
+
+    private static void flipLastByte(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 0xff)).rewind();
+            channel.write(last, channel.size() - 1);
+        }
+    }
+
+    private static Path segmentFile(Path directory, int number) {
+        return directory.resolve(String.format("segment-%010d.log", number));
+    }
+
+    private static Path indexFile(Path directory, int number) {
+        return directory.resolve(String.format("segment-%010d.idx", number));
+    }
+
+    private static byte[] payload(int i) {
+        return bytes("{\"claim\":" + i + "}");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
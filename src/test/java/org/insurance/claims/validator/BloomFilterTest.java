@@ -0,0 +1,64 @@
+package org.insurance.claims.validator;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+    @Test
+    public void neverMissesAddedKeys() {
+        BloomFilter filter = new BloomFilter(10_000, 10);
+        Random random = new Random(42);
+        long[] keys = new long[10_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            filter.add(keys[i]);
+        }
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key));
+        }
+    }
+
+    @Test
+    public void keepsFalsePositivesRare() {
+        BloomFilter filter = new BloomFilter(10_000, 10);
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(random.nextLong());
+        }
+        int positives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                positives++;
+            }
+        }
+        // About 1-2% at 10 bits per key
+        assertTrue("False positive rate " + positives * 100.0 / probes + "%", positives < probes * 0.03);
+    }
+
+    @Test
+    public void restoresFromSavedBits() {
+        BloomFilter filter = new BloomFilter(1_000, 10);
+        for (long key = 1; key <= 1_000; key++) {
+            filter.add(key * 0x9e3779b97f4a7c15L);
+        }
+        BloomFilter restored = new BloomFilter(filter.getBits().clone());
+        for (long key = 1; key <= 1_000; key++) {
+            assertTrue(restored.mightContain(key * 0x9e3779b97f4a7c15L));
+        }
+        for (long probe = 1_001; probe <= 2_000; probe++) {
+            long hash = probe * 0x9e3779b97f4a7c15L;
+            assertEquals(filter.mightContain(hash), restored.mightContain(hash));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPartialBlocks() {
+        new BloomFilter(new long[12]);
+    }
+}
@@ -0,0 +1,160 @@
+package org.insurance.claims.validator;
+
+import org.insurance.claims.model.ExtractedFields;
+import org.insurance.claims.model.FieldId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateIndexTest {
+
+    // Keys that fill the smallest table (2^16 slots) past its 60% load limit
+    private static final int GROW_CLAIMS = 40_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsRefilingWithReformattedFields() throws IOException {
+        try (DuplicateIndex index = new DuplicateIndex(folder.getRoot().toPath())) {
+            assertNull(index.register(claim("PA-2024-001234", "03/15/2024", "1HGCM82633A004352", "ABC 123"), "first"));
+            // Same loss: policy without dashes, year-first date, VIN with O for 0, no plate
+            assertEquals("first", index.register(
+                    claim("pa2024001234", "2024-03-15", "1HGCM82633AOO4352", null), "second"));
+            // Same loss with only the plate
+            assertEquals("first", index.find(claim("PA 2024 001234", "March 15, 2024", null, "abc-123"), "third"));
+            // A claim is never its own duplicate
+            assertNull(index.register(claim("PA-2024-001234", "03/15/2024", "1HGCM82633A004352", "ABC 123"), "first"));
+            // Another day is another loss
+            assertNull(index.find(claim("PA-2024-001234", "03/16/2024", "1HGCM82633A004352", "ABC 123"), "fourth"));
+            assertEquals(2, index.size());
+        }
+    }
+
+    @Test
+    public void ignoresClaimsWithoutPolicyOrDate() throws IOException {
+        try (DuplicateIndex index = new DuplicateIndex(folder.getRoot().toPath())) {
+            assertNull(index.register(claim(null, "03/15/2024", "1HGCM82633A004352", null), "first"));
+            assertNull(index.register(claim("PA-1", null, "1HGCM82633A004352", null), "second"));
+            assertEquals(0, index.size());
+        }
+    }
+
+    @Test
+    public void rebuildsFromLogAfterDirtyClose() throws IOException {
+        Path directory = folder.newFolder("index").toPath();
+        Path crashed = folder.newFolder("crashed").toPath();
+        try (DuplicateIndex index = new DuplicateIndex(directory)) {
+            for (int i = 0; i < 100; i++) {
+                index.register(claim("PA-" + i, "03/15/2024", vin(i), null), "claim-" + i);
+            }
+            // What a crash leaves behind: the table still marked dirty and no saved filter
+            copyIndexFiles(directory, crashed);
+        }
+
+        try (DuplicateIndex index = new DuplicateIndex(crashed)) {
+            assertEquals(100, index.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals("claim-" + i, index.find(claim("PA-" + i, "2024-03-15", vin(i), null), "refiled"));
+            }
+            assertNull(index.find(claim("PA-100", "2024-03-15", vin(100), null), "new"));
+        }
+    }
+
+    @Test
+    public void growsPastLoadThreshold() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        long initialTableBytes;
+        try (DuplicateIndex index = new DuplicateIndex(directory)) {
+            initialTableBytes = Files.size(directory.resolve("table.bin"));
+            for (int i = 0; i < GROW_CLAIMS; i++) {
+                assertNull(index.register(claim("PA-" + i, "03/15/2024", vin(i), null), "claim-" + i));
+            }
+            assertEquals(GROW_CLAIMS, index.size());
+            assertTrue(Files.size(directory.resolve("table.bin")) > initialTableBytes);
+            assertAllFound(index);
+        }
+
+        // Clean reopen maps the grown table and loads the saved filter
+        try (DuplicateIndex index = new DuplicateIndex(directory)) {
+            assertEquals(GROW_CLAIMS, index.size());
+            assertAllFound(index);
+        }
+
+        // Without the saved filter it is rebuilt from the table
+        Files.delete(directory.resolve("bloom.bin"));
+        try (DuplicateIndex index = new DuplicateIndex(directory)) {
+            assertAllFound(index);
+        }
+    }
+
+    @Test
+    public void normalizesDates() {
+        assertEquals("20240315", DuplicateIndex.normalizeDate("2024-03-15"));
+        assertEquals("20240305", DuplicateIndex.normalizeDate("2024.3.5"));
+        // Month first when the year is last, as on ACORD forms
+        assertEquals("20240315", DuplicateIndex.normalizeDate("03/15/2024"));
+        assertEquals("20240305", DuplicateIndex.normalizeDate("3-5-24"));
+        assertEquals("20240305", DuplicateIndex.normalizeDate(" 3 / 5 / 2024 "));
+        assertEquals("20240315", DuplicateIndex.normalizeDate("March 15, 2024"));
+        assertEquals("20240315", DuplicateIndex.normalizeDate("mar 15, 2024"));
+        assertEquals("20240315", DuplicateIndex.normalizeDate("15 March 2024"));
+        assertEquals("20240315", DuplicateIndex.normalizeDate("15 Mar 2024"));
+        // Not a date: kept as its letters and digits
+        assertEquals("13152024", DuplicateIndex.normalizeDate("13/15/2024"));
+        assertEquals("UNKNOWN", DuplicateIndex.normalizeDate("unknown"));
+        assertEquals("", DuplicateIndex.normalizeDate("  "));
+        assertEquals("", DuplicateIndex.normalizeDate(null));
+    }
+
+    @Test
+    public void normalizesVinsAndIdentifiers() {
+        assertEquals("1HGCM82633A004352", DuplicateIndex.normalizeVin("1hgcm82633a004352"));
+        assertEquals("1HGCM82633A004352", DuplicateIndex.normalizeVin("IHGCM82633AOQ4352"));
+        assertEquals("1HGCM82633A004352", DuplicateIndex.normalizeVin("1HG-CM8 2633A004352"));
+        assertEquals("", DuplicateIndex.normalizeVin(null));
+
+        assertEquals("PA2024001234", DuplicateIndex.alphanumeric("pa-2024 001234"));
+        assertEquals("ABC123", DuplicateIndex.alphanumeric(" abc.123 "));
+        assertEquals("", DuplicateIndex.alphanumeric(null));
+    }
+
+    private static void assertAllFound(DuplicateIndex index) throws IOException {
+        for (int i = 0; i < GROW_CLAIMS; i++) {
+            assertEquals("claim-" + i, index.find(claim("PA-" + i, "03/15/2024", vin(i), null), "refiled"));
+        }
+        assertNull(index.find(claim("PA-" + GROW_CLAIMS, "03/15/2024", vin(GROW_CLAIMS), null), "new"));
+    }
+
+    private static void copyIndexFiles(Path from, Path to) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(from)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals(".lock")) {
+                    Files.copy(file, to.resolve(file.getFileName()));
+                }
+            }
+        }
+    }
+
+    private static String vin(int i) {
+        return String.format("1HGCM8263%08d", i);
+    }
+
+    private static ExtractedFields claim(String policy, String dateOfLoss, String vin, String plate) {
+        ExtractedFields fields = new ExtractedFields();
+        fields.set(FieldId.POLICY_NUMBER, policy);
+        fields.set(FieldId.DATE_OF_LOSS, dateOfLoss);
+        fields.set(FieldId.VIN, vin);
+        fields.set(FieldId.PLATE_NUMBER, plate);
+        return fields;
+    }
+}